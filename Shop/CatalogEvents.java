@@ -0,0 +1,81 @@
+package Shop;
+
+import Shop.persistence.EventType;
+import Shop.persistence.ShopEvent;
+import Shop.products.CatalogUpdate;
+import Shop.products.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Кодирование изменений каталога в события журнала.
+// PRODUCT_PUT: id, название, цена, производитель, категории...; PRODUCT_REMOVED: id.
+// CATALOG_UPDATED - пакет одной записью: "+" id название цена производитель число_категорий категории... | "-" id
+final class CatalogEvents {
+    private static final String PUT = "+";
+    private static final String REMOVE = "-";
+
+    private CatalogEvents() {
+    }
+
+    static ShopEvent put(Product product) {
+        List<String> fields = new ArrayList<>();
+        addProduct(fields, product);
+        fields.addAll(product.getCategories());
+        return new ShopEvent(EventType.PRODUCT_PUT, System.currentTimeMillis(), fields);
+    }
+
+    static ShopEvent update(CatalogUpdate update) {
+        List<String> fields = new ArrayList<>();
+        for (Product product : update.puts()) {
+            fields.add(PUT);
+            addProduct(fields, product);
+            fields.add(String.valueOf(product.getCategories().size()));
+            fields.addAll(product.getCategories());
+        }
+        for (String productId : update.removals()) {
+            fields.add(REMOVE);
+            fields.add(productId);
+        }
+        return new ShopEvent(EventType.CATALOG_UPDATED, System.currentTimeMillis(), fields);
+    }
+
+    static Product product(ShopEvent put) {
+        return new Product(put.field(0), put.field(1), Double.parseDouble(put.field(2)), put.field(3),
+                fields(put, 4, put.fieldCount()));
+    }
+
+    // Раскладывает пакет на отдельные PRODUCT_PUT и PRODUCT_REMOVED в исходном порядке
+    static void expand(ShopEvent update, Consumer<ShopEvent> consumer) {
+        int i = 0;
+        while (i < update.fieldCount()) {
+            if (update.field(i).equals(PUT)) {
+                int end = i + 6 + Integer.parseInt(update.field(i + 5));
+                // Число категорий нужно только внутри пакета
+                List<String> fields = fields(update, i + 1, i + 5);
+                fields.addAll(fields(update, i + 6, end));
+                consumer.accept(new ShopEvent(EventType.PRODUCT_PUT, update.getTimestamp(), fields));
+                i = end;
+            } else {
+                consumer.accept(new ShopEvent(EventType.PRODUCT_REMOVED, update.getTimestamp(), List.of(update.field(i + 1))));
+                i += 2;
+            }
+        }
+    }
+
+    private static void addProduct(List<String> fields, Product product) {
+        fields.add(product.getId());
+        fields.add(product.getName());
+        fields.add(String.valueOf(product.getPrice()));
+        fields.add(product.getManufacturer());
+    }
+
+    private static List<String> fields(ShopEvent event, int from, int to) {
+        List<String> fields = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            fields.add(event.field(i));
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,112 @@
+package Shop;
+
+import Shop.orders.CheckoutResult;
+import Shop.products.Inventory;
+import Shop.products.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// Конвейер оформления заказов для пиковой нагрузки:
+//   заявка -> [incoming] -> резервирование остатков (N потоков) -> [reserved] -> пакетное создание заказов (1 поток)
+// Очереди ограничены: переполненная incoming сразу отклоняет заявку (BUSY), заполненная reserved
+// притормаживает резервирование. Глобальных блокировок нет - остатки резервируются CAS'ом по товарам,
+// а создание заказов одним потоком позволяет записать целый пакет в журнал за один сброс на диск
+class CheckoutPipeline {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BATCH_SIZE = 256;
+
+    // Заявка с зарезервированным содержимым корзины
+    record Checkout(User user, Map<Product, Integer> items, CompletableFuture<CheckoutResult> result) {
+    }
+
+    private record Request(User user, CompletableFuture<CheckoutResult> result) {
+    }
+
+    private final Inventory inventory;
+    private final Consumer<List<Checkout>> committer;
+    private final BlockingQueue<Request> incoming;
+    private final BlockingQueue<Checkout> reserved;
+    private final List<Thread> threads;
+
+    // committer создает заказы пакета и завершает их result; если он упал, резервы возвращаются
+    CheckoutPipeline(Inventory inventory, Consumer<List<Checkout>> committer, int reservers) {
+        this.inventory = inventory;
+        this.committer = committer;
+        this.incoming = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.reserved = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.threads = new ArrayList<>();
+        for (int i = 0; i < reservers; i++) {
+            threads.add(daemon(this::reserveLoop, "checkout-reserve-" + i));
+        }
+        threads.add(daemon(this::commitLoop, "checkout-commit"));
+    }
+
+    void start() {
+        threads.forEach(Thread::start);
+    }
+
+    void shutdown() {
+        threads.forEach(Thread::interrupt);
+    }
+
+    CompletableFuture<CheckoutResult> submit(User user) {
+        CompletableFuture<CheckoutResult> result = new CompletableFuture<>();
+        if (!incoming.offer(new Request(user, result))) {
+            result.complete(CheckoutResult.rejected(CheckoutResult.Status.BUSY));
+        }
+        return result;
+    }
+
+    private void reserveLoop() {
+        try {
+            while (true) {
+                Request request = incoming.take();
+                // Неизменяемый снимок корзины; на этапе создания заказа сверяется, что корзина не менялась
+                Map<Product, Integer> items = request.user().getShoppingCart().getItems();
+                if (items.isEmpty()) {
+                    request.result().complete(CheckoutResult.rejected(CheckoutResult.Status.EMPTY_CART));
+                } else if (!inventory.tryReserve(items)) {
+                    request.result().complete(CheckoutResult.rejected(CheckoutResult.Status.OUT_OF_STOCK));
+                } else {
+                    reserved.put(new Checkout(request.user(), items, request.result()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void commitLoop() {
+        List<Checkout> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(reserved.take());
+                reserved.drainTo(batch, BATCH_SIZE - 1);
+                try {
+                    committer.accept(batch);
+                } catch (RuntimeException e) {
+                    for (Checkout checkout : batch) {
+                        if (checkout.result().completeExceptionally(e)) {
+                            inventory.release(checkout.items());
+                        }
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -1,7 +1,16 @@
-package Shop;
-
-public class Main {
-    public static void main(String[] args) {
-        new ShopApp().run();
-    }
+package Shop;
+
+import Shop.api.ShopHttpServer;
+
+import java.io.IOException;
+
+public class Main {
+    // По умолчанию - HTTP/JSON API (порт -Dshop.http.port, по умолчанию 8080), "console" - консольный интерфейс
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("console")) {
+            new ShopApp().run();
+        } else {
+            ShopHttpServer.main(args);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package Shop;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Пароли хранятся, попадают в журнал и снапшоты только в виде соленого хэша PBKDF2:
+// "pbkdf2$итерации$соль$хэш" (соль и хэш в Base64). Число итераций записано в самом хэше,
+// поэтому его можно менять (-Dshop.password.iterations), не ломая уже сохраненные пароли.
+// Хэш дорогой намеренно: при 100000 итераций это десятки миллисекунд процессора на каждый вход, регистрацию и смену пароля.
+// Одновременно считается не больше shop.password.concurrency хэшей (по умолчанию - по числу ядер); остальные ждут
+// не дольше shop.password.waitMillis и получают RejectedExecutionException - всплеск входов не занимает все потоки
+// обработки запросов и не отнимает процессор у остальных операций
+final class PasswordHasher {
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int ITERATIONS = Integer.getInteger("shop.password.iterations", 100_000);
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Semaphore PERMITS = new Semaphore(
+            Integer.getInteger("shop.password.concurrency", Runtime.getRuntime().availableProcessors()));
+    private static final long WAIT_MILLIS = Long.getLong("shop.password.waitMillis", 500);
+
+    private PasswordHasher() {
+    }
+
+    static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + ITERATIONS + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, ITERATIONS));
+    }
+
+    static boolean verify(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !stored.startsWith(PREFIX)) {
+            return false;
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] expected = base64.decode(parts[3]);
+        // Сравнение за постоянное время - по времени ответа не угадать совпавший префикс
+        return MessageDigest.isEqual(expected, derive(password, base64.decode(parts[2]), Integer.parseInt(parts[1])));
+    }
+
+    // Журналы, записанные до хэширования, хранят пароль открытым текстом - при восстановлении он хэшируется
+    static String upgrade(String stored) {
+        return stored.startsWith(PREFIX) ? stored : hash(stored);
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        try {
+            if (!PERMITS.tryAcquire(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Слишком много одновременных входов, повторите позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Проверка пароля прервана", e);
+        }
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм " + ALGORITHM + " недоступен", e);
+        } finally {
+            spec.clearPassword();
+            PERMITS.release();
+        }
+    }
+}
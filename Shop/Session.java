@@ -0,0 +1,43 @@
+package Shop;
+
+import java.util.UUID;
+
+// Сессия покупателя - заменяет единственного currentUser, чтобы один ShopSystem обслуживал многих пользователей
+public class Session {
+    private final String sessionId;
+    private final User user;
+    private final long createdAt;
+    // Время последнего обращения - по нему сессия истекает при простое (см. SessionRegistry)
+    private volatile long lastAccessedAt;
+
+    public Session(User user) {
+        this(user, System.currentTimeMillis());
+    }
+
+    Session(User user, long now) {
+        this.sessionId = UUID.randomUUID().toString();
+        this.user = user;
+        this.createdAt = now;
+        this.lastAccessedAt = now;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    void touch(long now) {
+        lastAccessedAt = now;
+    }
+}
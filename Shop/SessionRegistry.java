@@ -0,0 +1,99 @@
+package Shop;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Активные сессии: sessionId -> сессия. Сессия истекает после простоя (idle TTL) и в любом случае
+// через maxAge после входа. Истекшая сессия не выдается getSession, а фоновая очистка удаляет сессии,
+// к которым больше не обращаются, чтобы карта не росла бесконечно
+class SessionRegistry {
+    private final Map<String, Session> sessions;
+    private final long idleTimeoutMillis;
+    private final long maxAgeMillis;
+    private final LongSupplier clock;
+    private ScheduledExecutorService evictor;
+
+    SessionRegistry(long idleTimeoutMillis, long maxAgeMillis, LongSupplier clock) {
+        if (idleTimeoutMillis <= 0 || maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("Время жизни сессии должно быть положительным");
+        }
+        this.sessions = new ConcurrentHashMap<>();
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+    }
+
+    // Время жизни в секундах: -Dshop.session.idleTimeout (30 минут) и -Dshop.session.maxAge (сутки)
+    static SessionRegistry fromSystemProperties() {
+        return new SessionRegistry(TimeUnit.SECONDS.toMillis(Long.getLong("shop.session.idleTimeout", 1800)),
+                TimeUnit.SECONDS.toMillis(Long.getLong("shop.session.maxAge", 86400)), System::currentTimeMillis);
+    }
+
+    Session open(User user) {
+        Session session = new Session(user, clock.getAsLong());
+        sessions.put(session.getSessionId(), session);
+        return session;
+    }
+
+    void close(Session session) {
+        sessions.remove(session.getSessionId());
+    }
+
+    // null - сессии нет или она истекла; живая сессия продлевается
+    Session get(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        if (isExpired(session, now)) {
+            sessions.remove(sessionId, session);
+            return null;
+        }
+        session.touch(now);
+        return session;
+    }
+
+    // Удаляет истекшие сессии и возвращает их число
+    int evictExpired() {
+        long now = clock.getAsLong();
+        int evicted = 0;
+        for (Session session : sessions.values()) {
+            if (isExpired(session, now) && sessions.remove(session.getSessionId(), session)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    synchronized void startEviction(long periodSeconds) {
+        if (evictor != null) {
+            return;
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictExpired, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    synchronized void stopEviction() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+    }
+
+    private boolean isExpired(Session session, long now) {
+        return now - session.getLastAccessedAt() >= idleTimeoutMillis || now - session.getCreatedAt() >= maxAgeMillis;
+    }
+}
@@ -1,89 +1,661 @@
-package Shop;
-
-import Shop.orders.Order;
-import Shop.products.Product;
-import Shop.products.ProductCatalog;
-
-import java.util.*;
-import java.util.stream.Collectors;
-
-public class ShopSystem {
-    private final ProductCatalog productCatalog;
-    private final Map<String, User> users;
-    private User currentUser;
-
-    public ShopSystem() {
-        this.productCatalog = new ProductCatalog();
-        this.users = new HashMap<>();
-        initializeShop();
-    }
-
-    private void initializeShop() {
-        // Добавляем каталог
-        productCatalog.addProduct(new Product("1", "Смартфон", 49000, "Tech", Arrays.asList("электроника", "телефоны")));
-        productCatalog.addProduct(new Product("2", "Ноутбук", 139000, "Tech", Arrays.asList("электроника", "компьютеры")));
-        productCatalog.addProduct(new Product("3", "Наушники", 19999, "Audio", Arrays.asList("электроника", "аудио")));
-        productCatalog.addProduct(new Product("4", "Книга", 679, "Book", Arrays.asList("книги", "литература")));
-        productCatalog.addProduct(new Product("5", "Мышь", 5899, "Tech", Arrays.asList("электроника", "компьютеры", "аксессуары")));
-
-        // Создаем администратора
-        User admin = new User("admin", "admin", "admin");
-        users.put(admin.getUserId(), admin);
-    }
-
-    public boolean registerUser(String username, String password) {
-        if (users.values().stream().anyMatch(u -> u.getUsername().equals(username))) {
-            return false;
-        }
-        String userId = "user" + (users.size() + 1);
-        User newUser = new User(userId, username, password);
-        users.put(userId, newUser);
-        return true;
-    }
-
-    public boolean login(String username, String password) {
-        // Используем Optional, так как пользователя может не быть
-        Optional<User> userOpt = users.values().stream()
-                .filter(u -> u.getUsername().equals(username) && u.authenticate(password))
-                .findFirst();
-
-        userOpt.ifPresent(user -> this.currentUser = user);
-        return userOpt.isPresent();
-    }
-
-    public void logout() {
-        this.currentUser = null;
-    }
-
-    public User getCurrentUser() {
-        return currentUser;
-    }
-
-    public ProductCatalog getProductCatalog() {
-        return productCatalog;
-    }
-
-    public void placeOrder() {
-        ShoppingCart cart = currentUser.getShoppingCart();
-        if (cart.getItems().isEmpty()) return;
-
-        String orderId = "order" + System.currentTimeMillis();
-        Order order = new Order(orderId, cart.getItems());
-        currentUser.addOrderToHistory(order);
-        cart.clear();
-    }
-
-    public List<Order> getCurrentUserOrders() {
-        return currentUser.getOrderHistory();
-    }
-
-    public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
-    }
-
-    public List<Order> getAllOrders() {
-        return users.values().stream()
-                .flatMap(user -> user.getOrderHistory().stream())
-                .collect(Collectors.toList());
-    }
+package Shop;
+
+import Shop.ids.BlockIdGenerator;
+import Shop.ids.IdGenerator;
+import Shop.ids.SnowflakeIdGenerator;
+import Shop.metrics.Metrics;
+import Shop.orders.CheckoutResult;
+import Shop.orders.Order;
+import Shop.orders.OrderEventBus;
+import Shop.orders.OrderRepository;
+import Shop.orders.OrderStatus;
+import Shop.persistence.EventType;
+import Shop.persistence.FsyncPolicy;
+import Shop.persistence.Journal;
+import Shop.persistence.ShopEvent;
+import Shop.products.CatalogUpdate;
+import Shop.products.CatalogWriter;
+import Shop.products.Inventory;
+import Shop.products.Product;
+import Shop.products.ProductCatalog;
+import Shop.products.snapshot.CatalogSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class ShopSystem implements AutoCloseable {
+    private final ProductCatalog productCatalog;
+    // Каталог изменяется только через магазин: каждое изменение сначала попадает в журнал
+    private final CatalogWriter catalogWriter;
+    private final Inventory inventory;
+    private final Map<String, User> users;
+    private final OrderRepository orderRepository;
+    // Индекс имен: username -> userId. Через putIfAbsent имя резервируется атомарно
+    private final Map<String, String> usernames;
+    // Активные сессии с ограниченным временем жизни
+    private final SessionRegistry sessions;
+    private final IdGenerator idGenerator;
+    // Журнал событий; null - состояние хранится только в памяти
+    private final Journal journal;
+    private final CheckoutPipeline checkoutPipeline;
+    // Упорядочивает изменения каталога и их события в журнале
+    private final Object catalogLock;
+    // Только на время восстановления: товары, удаленные в журнале, на которые еще ссылаются
+    // более поздние события корзин, заказов и оценок
+    private final Map<String, Product> removedDuringRecovery;
+    // Только на время восстановления: подряд идущие изменения каталога публикуются одной версией,
+    // а не версией на товар - иначе восстановление большого каталога квадратично
+    private CatalogUpdate pendingCatalog;
+    private int skippedOnRecovery;
+    // Только на время восстановления: наибольший числовой ID пользователя или заказа из журнала
+    private long maxRecoveredId = -1;
+    // Фоновые потоки, которые магазин запускает сам и останавливает в close()
+    private OrderEventBus.Subscription metricsSubscription;
+    private Thread journalShutdownHook;
+
+    private static final int DEMO_STOCK = 100;
+    // Права администратора привязаны к ID учетной записи, а не к имени: имя пользователь может сменить.
+    // Зарегистрированные пользователи получают ID вида "user<число>" и совпасть с ним не могут
+    public static final String ADMIN_USER_ID = "admin";
+
+    public ShopSystem() {
+        this(new BlockIdGenerator(SnowflakeIdGenerator.fromSystemProperties(), 64), openJournal());
+    }
+
+    public ShopSystem(IdGenerator idGenerator) {
+        this(idGenerator, null);
+    }
+
+    public ShopSystem(IdGenerator idGenerator, Journal journal) {
+        this.idGenerator = idGenerator;
+        this.journal = journal;
+        this.productCatalog = new ProductCatalog();
+        this.catalogWriter = productCatalog.writer();
+        this.inventory = new Inventory();
+        this.users = new ConcurrentHashMap<>();
+        this.orderRepository = new OrderRepository();
+        this.usernames = new ConcurrentHashMap<>();
+        this.sessions = SessionRegistry.fromSystemProperties();
+        this.catalogLock = new Object();
+        this.removedDuringRecovery = new HashMap<>();
+        sessions.startEviction(Long.getLong("shop.session.evictInterval", 60));
+        initializeShop();
+        this.checkoutPipeline = new CheckoutPipeline(inventory, this::commitCheckouts,
+                Runtime.getRuntime().availableProcessors());
+        checkoutPipeline.start();
+    }
+
+    private void initializeShop() {
+        // Каталог из бинарного снапшота, если он указан: -Dshop.catalog=catalog.bin
+        String snapshotPath = System.getProperty("shop.catalog");
+        if (snapshotPath != null) {
+            try {
+                catalogWriter.loadSnapshot(CatalogSnapshot.open(Path.of(snapshotPath)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось открыть снапшот каталога " + snapshotPath, e);
+            }
+        } else {
+            addDemoProducts();
+        }
+
+        // Создаем администратора
+        User admin = new User(ADMIN_USER_ID, "admin", "admin");
+        users.put(admin.getUserId(), admin);
+        usernames.put(admin.getUsername(), admin.getUserId());
+
+        if (journal != null) {
+            pendingCatalog = new CatalogUpdate();
+            try {
+                journal.recover(this::apply);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось восстановить состояние из журнала", e);
+            }
+            flushCatalog();
+            pendingCatalog = null;
+            removedDuringRecovery.clear();
+            if (maxRecoveredId >= 0) {
+                idGenerator.advancePast(maxRecoveredId);
+            }
+            if (skippedOnRecovery > 0) {
+                System.err.println("При восстановлении пропущено событий с неизвестными пользователями, товарами или заказами: "
+                        + skippedOnRecovery);
+            }
+            journal.startSnapshots(StateCompactor::new, Long.getLong("shop.snapshotInterval", 300));
+            journalShutdownHook = new Thread(journal::close);
+            Runtime.getRuntime().addShutdownHook(journalShutdownHook);
+        }
+
+        // Метрики: JMX всегда, файл в формате Prometheus - если задан -Dshop.metrics.file
+        if (Metrics.ENABLED) {
+            Metrics.gauge("filter_cache_hit_rate", () -> productCatalog.getFilterCacheStats().hitRate());
+            Metrics.gauge("filter_cache_evictions", () -> productCatalog.getFilterCacheStats().evictions());
+            Metrics.gauge("filter_cache_size", () -> productCatalog.getFilterCacheStats().size());
+            Metrics.gauge("search_cache_hit_rate", () -> productCatalog.getSearchCacheStats().hitRate());
+            Metrics.gauge("search_cache_evictions", () -> productCatalog.getSearchCacheStats().evictions());
+            Metrics.gauge("search_cache_size", () -> productCatalog.getSearchCacheStats().size());
+            Metrics.gauge("catalog_version", productCatalog::getVersion);
+            Metrics.gauge("catalog_products", productCatalog::getProductCount);
+            Metrics.gauge("sessions_active", sessions::size);
+            subscribeOrderMetrics();
+            Metrics.registerMBeans();
+            String metricsFile = System.getProperty("shop.metrics.file");
+            if (metricsFile != null) {
+                Metrics.startFileExport(Path.of(metricsFile), Long.getLong("shop.metrics.interval", 15));
+            }
+        }
+    }
+
+    // Переходы статусов считает подписчик шины заказов: смена статуса не ждет обновления метрик
+    private void subscribeOrderMetrics() {
+        Map<OrderStatus, LongAdder> transitions = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            LongAdder counter = new LongAdder();
+            transitions.put(status, counter);
+            Metrics.gauge("order_status_changes_" + status.name().toLowerCase(), counter::sum);
+        }
+        metricsSubscription = orderRepository.getEventBus().subscribe("metrics",
+                changes -> changes.forEach(change -> transitions.get(change.newStatus()).increment()));
+        Metrics.gauge("order_events_dropped", metricsSubscription::getDropped);
+    }
+
+    // Останавливает конвейер оформления, вытеснение сессий, фоновые потоки каталога и закрывает журнал.
+    // Повторный вызов безопасен
+    @Override
+    public void close() {
+        checkoutPipeline.shutdown();
+        sessions.stopEviction();
+        if (metricsSubscription != null) {
+            metricsSubscription.close();
+        }
+        productCatalog.close();
+        if (journal != null) {
+            if (journalShutdownHook != null) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(journalShutdownHook);
+                } catch (IllegalStateException e) {
+                    // JVM уже завершается - хук закроет журнал сам
+                }
+            }
+            journal.close();
+        }
+    }
+
+    // Журнал включается свойством -Dshop.dataDir, политика сброса на диск - -Dshop.fsync
+    private static Journal openJournal() {
+        String dataDir = System.getProperty("shop.dataDir");
+        if (dataDir == null) {
+            return null;
+        }
+        try {
+            return new Journal(Path.of(dataDir), FsyncPolicy.valueOf(System.getProperty("shop.fsync", "EVERY_BATCH")));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал в " + dataDir, e);
+        }
+    }
+
+    private void addDemoProducts() {
+        // Добавляем каталог - одной версией
+        catalogWriter.apply(new CatalogUpdate()
+                .put(new Product("1", "Смартфон", 49000, "Tech", Arrays.asList("электроника", "телефоны")))
+                .put(new Product("2", "Ноутбук", 139000, "Tech", Arrays.asList("электроника", "компьютеры")))
+                .put(new Product("3", "Наушники", 19999, "Audio", Arrays.asList("электроника", "аудио")))
+                .put(new Product("4", "Книга", 679, "Book", Arrays.asList("книги", "литература")))
+                .put(new Product("5", "Мышь", 5899, "Tech", Arrays.asList("электроника", "компьютеры", "аксессуары"))));
+        // Начальные остатки на складе
+        for (Product product : productCatalog.getAllProducts()) {
+            inventory.setStock(product, DEMO_STOCK);
+        }
+    }
+
+    public boolean registerUser(String username, String password) {
+        long start = Metrics.start();
+        String userId = "user" + idGenerator.nextId();
+        // Хэш считается до изменения состояния: он дорогой намеренно и не должен задерживать других
+        String passwordHash = PasswordHasher.hash(password);
+        boolean registered = record(log -> {
+            // Параллельная регистрация того же имени проиграет на putIfAbsent
+            if (usernames.putIfAbsent(username, userId) != null) {
+                return;
+            }
+            // Сначала событие, потом видимость: события нового пользователя не могут оказаться в журнале раньше регистрации
+            log.accept(ShopEvent.of(EventType.USER_REGISTERED, userId, username, passwordHash));
+            users.put(userId, User.withPasswordHash(userId, username, passwordHash));
+        });
+        Metrics.REGISTER.stop(start);
+        return registered;
+    }
+
+    // Используем Optional, так как пользователя может не быть
+    public Optional<Session> login(String username, String password) {
+        long start = Metrics.start();
+        Optional<Session> sessionOpt = Optional.ofNullable(usernames.get(username))
+                .map(users::get)
+                .filter(u -> u.authenticate(password))
+                .map(sessions::open);
+        Metrics.LOGIN.stop(start);
+        return sessionOpt;
+    }
+
+    public void logout(Session session) {
+        sessions.close(session);
+    }
+
+    // Смена имени: новое имя резервируется до переименования, старое освобождается после
+    public boolean changeUsername(Session session, String newUsername) {
+        User user = session.getUser();
+        if (user.getUsername().equals(newUsername)) {
+            return true;
+        }
+        return record(log -> {
+            synchronized (user) {
+                String oldUsername = user.getUsername();
+                if (usernames.putIfAbsent(newUsername, user.getUserId()) != null) {
+                    return;
+                }
+                user.setUsername(newUsername);
+                usernames.remove(oldUsername, user.getUserId());
+                log.accept(ShopEvent.of(EventType.USERNAME_CHANGED, user.getUserId(), newUsername));
+            }
+        });
+    }
+
+    public void changePassword(Session session, String newPassword) {
+        User user = session.getUser();
+        String passwordHash = PasswordHasher.hash(newPassword);
+        record(log -> {
+            synchronized (user) {
+                user.setPasswordHash(passwordHash);
+                log.accept(ShopEvent.of(EventType.PASSWORD_CHANGED, user.getUserId(), passwordHash));
+            }
+        });
+    }
+
+    public boolean isAdmin(Session session) {
+        return ADMIN_USER_ID.equals(session.getUser().getUserId());
+    }
+
+    // null - сессии нет, пользователь вышел или сессия истекла
+    public Session getSession(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public ProductCatalog getProductCatalog() {
+        return productCatalog;
+    }
+
+    // Добавляет товар или заменяет товар с тем же ID и возвращает номер новой версии каталога.
+    // Изменения каталога идут через журнал: иначе после перезапуска корзины, заказы и оценки ссылались бы на неизвестные товары.
+    // Событие пишется до публикации: читатели без блокировок увидят товар только после того, как он попал в журнал,
+    // и их события с этим товаром лягут в журнал после него
+    public long putProduct(Product product) {
+        long[] version = {0};
+        record(log -> {
+            synchronized (catalogLock) {
+                log.accept(CatalogEvents.put(product));
+                catalogWriter.addProduct(product);
+                version[0] = productCatalog.getVersion();
+            }
+        });
+        return version[0];
+    }
+
+    // false - товара с таким ID в каталоге нет
+    public boolean removeProduct(String productId) {
+        return record(log -> {
+            synchronized (catalogLock) {
+                if (productCatalog.getProductById(productId) != null) {
+                    log.accept(ShopEvent.of(EventType.PRODUCT_REMOVED, productId));
+                    catalogWriter.removeProduct(productId);
+                }
+            }
+        });
+    }
+
+    // Пакет изменений каталога (например, выгрузка поставщика): одна запись в журнале и одна новая версия каталога
+    public long applyCatalogUpdate(CatalogUpdate update) {
+        long[] version = {productCatalog.getVersion()};
+        if (update.isEmpty()) {
+            return version[0];
+        }
+        record(log -> {
+            synchronized (catalogLock) {
+                log.accept(CatalogEvents.update(update));
+                version[0] = catalogWriter.apply(update);
+            }
+        });
+        return version[0];
+    }
+
+    public void addToCart(Session session, Product product, int quantity) {
+        User user = session.getUser();
+        ShoppingCart cart = user.getShoppingCart();
+        record(log -> {
+            synchronized (cart) {
+                cart.addProduct(product, quantity);
+                log.accept(ShopEvent.of(EventType.CART_ADDED, user.getUserId(), product.getId(), String.valueOf(quantity)));
+            }
+        });
+    }
+
+    public void removeFromCart(Session session, Product product, int quantity) {
+        User user = session.getUser();
+        ShoppingCart cart = user.getShoppingCart();
+        record(log -> {
+            synchronized (cart) {
+                cart.removeProduct(product, quantity);
+                log.accept(ShopEvent.of(EventType.CART_REMOVED, user.getUserId(), product.getId(), String.valueOf(quantity)));
+            }
+        });
+    }
+
+    // Оценка товара: повторная оценка того же товара заменяет прежнюю, а не добавляет новый голос
+    public void rateProduct(Session session, Product product, double rating) {
+        // Проверяем до изменений: иначе недопустимая оценка успела бы попасть в оценки пользователя
+        Product.validateRating(rating);
+        long start = Metrics.start();
+        User user = session.getUser();
+        // Монитор пользователя упорядочивает его оценки: в журнале они идут в том же порядке, что и в состоянии
+        record(log -> {
+            synchronized (user) {
+                applyRating(user, product, rating);
+                log.accept(ShopEvent.of(EventType.PRODUCT_RATED, user.getUserId(), product.getId(), String.valueOf(rating)));
+            }
+        });
+        Metrics.RATE_PRODUCT.stop(start);
+    }
+
+    private void applyRating(User user, Product product, double rating) {
+        productCatalog.recordInteraction(user, product);
+        Double previous = user.rate(product, rating);
+        if (previous == null) {
+            product.updateRating(rating);
+        } else {
+            product.changeRating(previous, rating);
+        }
+        productCatalog.onRatingChanged(product);
+    }
+
+    // Оформление заказа через конвейер: ждем, пока заказ будет создан и записан в журнал
+    public CheckoutResult placeOrder(Session session) {
+        long start = Metrics.start();
+        CheckoutResult result = submitOrder(session).join();
+        Metrics.PLACE_ORDER.stop(start);
+        return result;
+    }
+
+    // Асинхронное оформление - для массовых распродаж
+    public CompletableFuture<CheckoutResult> submitOrder(Session session) {
+        return checkoutPipeline.submit(session.getUser());
+    }
+
+    // Последний этап конвейера: создает заказы пакета одной записью в журнал.
+    // Результаты отдаются только после записи - заказ не подтверждается раньше, чем станет durable
+    private void commitCheckouts(List<CheckoutPipeline.Checkout> batch) {
+        CheckoutResult[] results = new CheckoutResult[batch.size()];
+        try {
+            record(log -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    CheckoutPipeline.Checkout checkout = batch.get(i);
+                    User user = checkout.user();
+                    ShoppingCart cart = user.getShoppingCart();
+                    synchronized (cart) {
+                        // Корзину изменили после резервирования - резерв ей уже не соответствует
+                        if (cart.getItems() != checkout.items()) {
+                            inventory.release(checkout.items());
+                            results[i] = CheckoutResult.rejected(CheckoutResult.Status.CART_CHANGED);
+                            continue;
+                        }
+                        Map<Product, Integer> items = cart.drain();
+                        Order order = new Order("order" + idGenerator.nextId(), user.getUserId(), items);
+                        orderRepository.save(order);
+                        items.forEach((product, quantity) -> {
+                            productCatalog.recordInteraction(user, product);
+                            productCatalog.recordSale(product, quantity);
+                        });
+                        log.accept(orderPlacedEvent(order));
+                        results[i] = CheckoutResult.placed(order);
+                    }
+                }
+            });
+        } finally {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] != null) {
+                    batch.get(i).result().complete(results[i]);
+                }
+            }
+        }
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    public void setStock(Product product, int quantity) {
+        record(log -> {
+            synchronized (product) {
+                inventory.setStock(product, quantity);
+                log.accept(ShopEvent.of(EventType.STOCK_CHANGED, product.getId(), String.valueOf(quantity)));
+            }
+        });
+    }
+
+    public List<Order> getUserOrders(Session session) {
+        return orderRepository.findByUser(session.getUser().getUserId());
+    }
+
+    public int countUserOrders(User user) {
+        return orderRepository.countByUser(user.getUserId());
+    }
+
+    // false - переход из текущего статуса недопустим
+    public boolean updateOrderStatus(Order order, OrderStatus newStatus) {
+        long start = Metrics.start();
+        boolean changed = record(log -> {
+            synchronized (order) {
+                if (!order.getStatus().canTransitionTo(newStatus)) {
+                    return;
+                }
+                orderRepository.updateStatus(order, newStatus);
+                log.accept(ShopEvent.of(EventType.ORDER_STATUS_CHANGED, order.getOrderId(), newStatus.name()));
+            }
+        });
+        Metrics.ORDER_STATUS.stop(start);
+        return changed;
+    }
+
+    public boolean returnOrder(Order order) {
+        return updateOrderStatus(order, OrderStatus.RETURNED);
+    }
+
+    public OrderRepository getOrderRepository() {
+        return orderRepository;
+    }
+
+    public List<User> getAllUsers() {
+        long start = Metrics.start();
+        List<User> result = new ArrayList<>(users.values());
+        Metrics.ADMIN_USERS.stop(start);
+        return result;
+    }
+
+    public List<Order> getAllOrders() {
+        long start = Metrics.start();
+        List<Order> result = orderRepository.findAll();
+        Metrics.ADMIN_ALL_ORDERS.stop(start);
+        return result;
+    }
+
+    // Изменение состояния с записью события в журнал, если он включен
+    private boolean record(Consumer<Consumer<ShopEvent>> mutation) {
+        if (journal != null) {
+            return journal.record(mutation);
+        }
+        boolean[] changed = {false};
+        mutation.accept(event -> changed[0] = true);
+        return changed[0];
+    }
+
+    private static ShopEvent orderPlacedEvent(Order order) {
+        List<String> fields = new ArrayList<>();
+        fields.add(order.getOrderId());
+        fields.add(order.getUserId());
+        order.getItems().forEach((product, quantity) -> {
+            fields.add(product.getId());
+            fields.add(String.valueOf(quantity));
+        });
+        return new ShopEvent(EventType.ORDER_PLACED, order.getOrderDate().getTime(), fields);
+    }
+
+    // Товар для воспроизводимого события: из каталога или среди удаленных раньше в журнале; null - неизвестен.
+    // Если товар ждет в накопленном пакете, пакет публикуется: событию нужен тот же объект, что окажется в каталоге
+    private Product replayedProduct(String productId) {
+        if (pendingCatalog.contains(productId)) {
+            flushCatalog();
+        }
+        Product product = productCatalog.getProductById(productId);
+        return product != null ? product : removedDuringRecovery.get(productId);
+    }
+
+    // Применение события при восстановлении - напрямую к состоянию, без повторной записи в журнал.
+    // События с неизвестными пользователями, товарами или заказами пропускаются и подсчитываются:
+    // журнал, записанный до того, как в него попали изменения каталога, может ссылаться на такие товары
+    private void apply(ShopEvent event) {
+        switch (event.getType()) {
+            case USER_REGISTERED -> {
+                noteRecoveredId(event.field(0), "user");
+                User previous = users.get(event.field(0));
+                if (previous != null) {
+                    usernames.remove(previous.getUsername(), previous.getUserId());
+                }
+                users.put(event.field(0), User.withPasswordHash(event.field(0), event.field(1),
+                        PasswordHasher.upgrade(event.field(2))));
+                usernames.put(event.field(1), event.field(0));
+            }
+            case USERNAME_CHANGED -> {
+                User user = users.get(event.field(0));
+                if (user == null) {
+                    skippedOnRecovery++;
+                    return;
+                }
+                usernames.remove(user.getUsername(), user.getUserId());
+                user.setUsername(event.field(1));
+                usernames.put(event.field(1), user.getUserId());
+            }
+            case PASSWORD_CHANGED -> {
+                User user = users.get(event.field(0));
+                if (user == null) {
+                    skippedOnRecovery++;
+                    return;
+                }
+                user.setPasswordHash(PasswordHasher.upgrade(event.field(1)));
+            }
+            case CART_ADDED, CART_REMOVED -> {
+                User user = users.get(event.field(0));
+                Product product = replayedProduct(event.field(1));
+                if (user == null || product == null) {
+                    skippedOnRecovery++;
+                    return;
+                }
+                if (event.getType() == EventType.CART_ADDED) {
+                    user.getShoppingCart().addProduct(product, Integer.parseInt(event.field(2)));
+                } else {
+                    user.getShoppingCart().removeProduct(product, Integer.parseInt(event.field(2)));
+                }
+            }
+            case ORDER_PLACED -> {
+                noteRecoveredId(event.field(0), "order");
+                User user = users.get(event.field(1));
+                Map<Product, Integer> items = new HashMap<>();
+                for (int i = 2; i + 1 < event.fieldCount(); i += 2) {
+                    Product product = replayedProduct(event.field(i));
+                    if (product == null) {
+                        skippedOnRecovery++;
+                    } else {
+                        items.put(product, Integer.parseInt(event.field(i + 1)));
+                    }
+                }
+                if (user == null || items.isEmpty()) {
+                    skippedOnRecovery++;
+                    return;
+                }
+                orderRepository.save(new Order(event.field(0), event.field(1), items,
+                        new Date(event.getTimestamp()), OrderStatus.NEW));
+                inventory.take(items);
+                items.forEach((product, quantity) -> {
+                    productCatalog.recordInteraction(user, product);
+                    productCatalog.recordSale(product, quantity);
+                });
+                // Оформление заказа опустошает корзину
+                user.getShoppingCart().clear();
+            }
+            case ORDER_STATUS_CHANGED -> {
+                Order order = orderRepository.findById(event.field(0));
+                if (order == null) {
+                    skippedOnRecovery++;
+                    return;
+                }
+                orderRepository.restoreStatus(order, OrderStatus.valueOf(event.field(1)));
+            }
+            case STOCK_CHANGED -> {
+                Product product = replayedProduct(event.field(0));
+                if (product == null) {
+                    skippedOnRecovery++;
+                    return;
+                }
+                inventory.setStock(product, Integer.parseInt(event.field(1)));
+            }
+            case PRODUCT_RATED -> {
+                User user = users.get(event.field(0));
+                Product product = replayedProduct(event.field(1));
+                if (user == null || product == null) {
+                    skippedOnRecovery++;
+                    return;
+                }
+                applyRating(user, product, Double.parseDouble(event.field(2)));
+            }
+            // Изменения одного товара внутри пакета не сливаются: повторное изменение сначала публикует пакет,
+            // чтобы замена, удаление и повторное добавление шли в том же порядке, что и при работе
+            case PRODUCT_PUT -> {
+                if (pendingCatalog.contains(event.field(0))) {
+                    flushCatalog();
+                }
+                removedDuringRecovery.remove(event.field(0));
+                pendingCatalog.put(CatalogEvents.product(event));
+            }
+            case PRODUCT_REMOVED -> {
+                Product product = replayedProduct(event.field(0));
+                if (product == null || productCatalog.getProductById(product.getId()) == null) {
+                    skippedOnRecovery++;
+                    return;
+                }
+                removedDuringRecovery.put(product.getId(), product);
+                pendingCatalog.remove(product.getId());
+            }
+            case CATALOG_UPDATED -> CatalogEvents.expand(event, this::apply);
+        }
+    }
+
+    // ID вида prefix + число выдал генератор; остальные (например, admin) его не ограничивают
+    private void noteRecoveredId(String id, String prefix) {
+        if (id.startsWith(prefix)) {
+            try {
+                maxRecoveredId = Math.max(maxRecoveredId, Long.parseLong(id, prefix.length(), id.length(), 10));
+            } catch (NumberFormatException e) {
+                // Не число - не наш ID
+            }
+        }
+    }
+
+    private void flushCatalog() {
+        if (!pendingCatalog.isEmpty()) {
+            catalogWriter.apply(pendingCatalog);
+            pendingCatalog = new CatalogUpdate();
+        }
+    }
 }
\ No newline at end of file
@@ -1,43 +1,92 @@
-package Shop;
-
-import Shop.products.Product;
-
-import java.util.HashMap;
-import java.util.Map;
-
-public class ShoppingCart {
-    private final Map<Product, Integer> items;
-
-    public ShoppingCart() {
-        this.items = new HashMap<>();
-    }
-
-    public void addProduct(Product product, int quantity) {
-        items.merge(product, quantity, Integer::sum);
-    }
-
-    public void removeProduct(Product product, int quantity) {
-        if (items.containsKey(product)) {
-            int currentQuantity = items.get(product);
-            if (currentQuantity <= quantity) {
-                items.remove(product);
-            } else {
-                items.put(product, currentQuantity - quantity);
-            }
-        }
-    }
-
-    public void clear() {
-        items.clear();
-    }
-
-    public Map<Product, Integer> getItems() {
-        return new HashMap<>(items);
-    }
-
-    public double getTotalPrice() {
-        return items.entrySet().stream()
-                .mapToDouble(entry -> entry.getKey().getPrice() * entry.getValue())
-                .sum();
-    }
-}
+package Shop;
+
+import Shop.products.Product;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Каждая корзина защищена собственным монитором - блокировки распределены по пользователям, глобальной нет.
+// Содержимое и итог хранятся неизменяемым снимком: изменение корзины публикует новый снимок,
+// а чтение (getItems, getTotalPrice) просто отдает текущий - без копирования и блокировок
+public class ShoppingCart {
+    private static final Cart EMPTY = new Cart(Map.of(), 0);
+
+    private volatile Cart cart;
+
+    public ShoppingCart() {
+        this.cart = EMPTY;
+    }
+
+    // Товары равны по ID, поэтому новая версия товара (с другой ценой) попадает в ту же позицию.
+    // Позиция переходит на переданную версию целиком, итог пересчитывается по ее цене - так же, как его посчитает Order
+    public synchronized void addProduct(Product product, int quantity) {
+        Map<Product, Integer> items = new HashMap<>(cart.items);
+        long totalMinor = cart.totalMinor;
+        Product stored = storedKey(product);
+        int currentQuantity = 0;
+        if (stored != null) {
+            currentQuantity = items.remove(stored);
+            totalMinor -= stored.getPriceMinor() * currentQuantity;
+        }
+        items.put(product, currentQuantity + quantity);
+        cart = new Cart(Map.copyOf(items), totalMinor + product.getPriceMinor() * (currentQuantity + quantity));
+    }
+
+    // Списывается по цене той версии товара, что лежит в корзине, а не переданной
+    public synchronized void removeProduct(Product product, int quantity) {
+        Product stored = storedKey(product);
+        if (stored == null) {
+            return;
+        }
+        int currentQuantity = cart.items.get(stored);
+        Map<Product, Integer> items = new HashMap<>(cart.items);
+        int removed = Math.min(currentQuantity, quantity);
+        if (currentQuantity <= quantity) {
+            items.remove(stored);
+        } else {
+            items.put(stored, currentQuantity - quantity);
+        }
+        cart = new Cart(Map.copyOf(items), cart.totalMinor - stored.getPriceMinor() * removed);
+    }
+
+    // Ключ карты, равный product; корзины небольшие, перебор дешевле отдельного индекса по ID
+    private Product storedKey(Product product) {
+        if (!cart.items.containsKey(product)) {
+            return null;
+        }
+        for (Product key : cart.items.keySet()) {
+            if (key.equals(product)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void clear() {
+        cart = EMPTY;
+    }
+
+    // Возвращает содержимое и очищает корзину одной атомарной операцией
+    public synchronized Map<Product, Integer> drain() {
+        Map<Product, Integer> drained = cart.items;
+        cart = EMPTY;
+        return drained;
+    }
+
+    // Неизменяемый снимок содержимого
+    public Map<Product, Integer> getItems() {
+        return cart.items;
+    }
+
+    // Итог в копейках - без накопления ошибки double
+    public long getTotalPriceMinor() {
+        return cart.totalMinor;
+    }
+
+    public double getTotalPrice() {
+        return cart.totalMinor / 100.0;
+    }
+
+    private record Cart(Map<Product, Integer> items, long totalMinor) {
+    }
+}
@@ -0,0 +1,140 @@
+package Shop;
+
+import Shop.persistence.Compactor;
+import Shop.persistence.EventType;
+import Shop.persistence.ShopEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Сворачивает журнал в снапшот по тем же правилам, по которым ShopSystem.apply применяет события,
+// но по ID, без объектов магазина: снапшот собирается в фоне из файлов и не требует останавливать изменения.
+// Какие товары есть в исходном каталоге, здесь неизвестно, поэтому события с неизвестными товарами не отбрасываются:
+// их, как и в несжатом журнале, пропустит ShopSystem.apply
+final class StateCompactor implements Compactor {
+    // userId -> {имя, хэш пароля}
+    private final Map<String, String[]> users = new LinkedHashMap<>();
+    // userId -> (productId -> оценка)
+    private final Map<String, Map<String, String>> ratings = new HashMap<>();
+    // Изменения каталога и заказы в исходном порядке: итог заказа считается по той версии товара,
+    // что была в каталоге при оформлении. Вытесненные события - null
+    private final List<ShopEvent> timeline = new ArrayList<>();
+    // productId -> позиция последнего PRODUCT_PUT в timeline
+    private final Map<String, Integer> lastPut = new HashMap<>();
+    // Товары, попавшие в заказы после своего последнего PRODUCT_PUT: эту версию вытеснять нельзя
+    private final Set<String> orderedSincePut = new HashSet<>();
+    private final Set<String> orders = new HashSet<>();
+    private final Map<String, String> statuses = new HashMap<>();
+    private final Map<String, Map<String, Integer>> carts = new HashMap<>();
+    // Остатки, заданные в журнале явно. Остальные товары либо не отслеживаются, либо получили остаток
+    // при запуске магазина - для них воспроизведенные заказы спишут остаток так же, как без снапшота
+    private final Map<String, Integer> stock = new LinkedHashMap<>();
+
+    @Override
+    public void accept(ShopEvent event) {
+        switch (event.getType()) {
+            case USER_REGISTERED -> users.put(event.field(0),
+                    new String[]{event.field(1), PasswordHasher.upgrade(event.field(2))});
+            case USERNAME_CHANGED -> {
+                String[] user = users.get(event.field(0));
+                if (user != null) {
+                    user[0] = event.field(1);
+                }
+            }
+            case PASSWORD_CHANGED -> {
+                String[] user = users.get(event.field(0));
+                if (user != null) {
+                    user[1] = PasswordHasher.upgrade(event.field(1));
+                }
+            }
+            case CART_ADDED -> {
+                if (users.containsKey(event.field(0))) {
+                    carts.computeIfAbsent(event.field(0), id -> new LinkedHashMap<>())
+                            .merge(event.field(1), Integer.parseInt(event.field(2)), Integer::sum);
+                }
+            }
+            // Как ShoppingCart.removeProduct: позиция исчезает, если удаляют не меньше, чем лежит
+            case CART_REMOVED -> {
+                Map<String, Integer> cart = carts.get(event.field(0));
+                Integer current = cart == null ? null : cart.get(event.field(1));
+                if (current != null) {
+                    int quantity = Integer.parseInt(event.field(2));
+                    if (current <= quantity) {
+                        cart.remove(event.field(1));
+                    } else {
+                        cart.put(event.field(1), current - quantity);
+                    }
+                }
+            }
+            case ORDER_PLACED -> {
+                if (!users.containsKey(event.field(1))) {
+                    return;
+                }
+                orders.add(event.field(0));
+                timeline.add(event);
+                // Как Inventory.take: списываются только отслеживаемые остатки
+                for (int i = 2; i + 1 < event.fieldCount(); i += 2) {
+                    int quantity = Integer.parseInt(event.field(i + 1));
+                    stock.computeIfPresent(event.field(i), (id, available) -> available - quantity);
+                    orderedSincePut.add(event.field(i));
+                }
+                carts.remove(event.field(1));
+            }
+            case ORDER_STATUS_CHANGED -> {
+                if (orders.contains(event.field(0))) {
+                    statuses.put(event.field(0), event.field(1));
+                }
+            }
+            case STOCK_CHANGED -> stock.put(event.field(0), Integer.parseInt(event.field(1)));
+            case PRODUCT_RATED -> {
+                if (users.containsKey(event.field(0))) {
+                    ratings.computeIfAbsent(event.field(0), id -> new LinkedHashMap<>())
+                            .put(event.field(1), event.field(2));
+                }
+            }
+            // Новая версия вытесняет предыдущую, если та не попала ни в один заказ. Удаление сохраняется на месте:
+            // удаленный товар при восстановлении еще находят корзины и оценки
+            case PRODUCT_PUT -> {
+                Integer previous = lastPut.get(event.field(0));
+                if (previous != null && !orderedSincePut.contains(event.field(0))) {
+                    timeline.set(previous, null);
+                }
+                orderedSincePut.remove(event.field(0));
+                lastPut.put(event.field(0), timeline.size());
+                timeline.add(event);
+            }
+            case PRODUCT_REMOVED -> {
+                lastPut.remove(event.field(0));
+                timeline.add(event);
+            }
+            case CATALOG_UPDATED -> CatalogEvents.expand(event, this::accept);
+        }
+    }
+
+    // Порядок важен для воспроизведения: пользователи, каталог вместе с заказами, оценки и статусы заказов
+    // (им нужны товары и заказы), затем корзины (оформление заказа очищает корзину) и остатки
+    // (воспроизведенные заказы списывают остаток, поэтому итоговые значения идут после них)
+    @Override
+    public List<ShopEvent> compacted() {
+        List<ShopEvent> state = new ArrayList<>();
+        users.forEach((userId, user) -> state.add(ShopEvent.of(EventType.USER_REGISTERED, userId, user[0], user[1])));
+        for (ShopEvent event : timeline) {
+            if (event != null) {
+                state.add(event);
+            }
+        }
+        ratings.forEach((userId, rated) -> rated.forEach((productId, rating) ->
+                state.add(ShopEvent.of(EventType.PRODUCT_RATED, userId, productId, rating))));
+        statuses.forEach((orderId, status) -> state.add(ShopEvent.of(EventType.ORDER_STATUS_CHANGED, orderId, status)));
+        carts.forEach((userId, cart) -> cart.forEach((productId, quantity) ->
+                state.add(ShopEvent.of(EventType.CART_ADDED, userId, productId, String.valueOf(quantity)))));
+        stock.forEach((productId, quantity) ->
+                state.add(ShopEvent.of(EventType.STOCK_CHANGED, productId, String.valueOf(quantity))));
+        return state;
+    }
+}
@@ -1,69 +1,80 @@
-package Shop;
-
-import Shop.orders.Order;
-import Shop.products.Product;
-
-import java.util.ArrayList;
-import java.util.List;
-
-public class User {
-    private final String userId;
-    private String username;
-    private String password;
-    private final List<Order> orderHistory;
-    private final List<Product> ratedProducts;
-    private final ShoppingCart shoppingCart;
-
-    public User(String userId, String username, String password) {
-        this.userId = userId;
-        this.username = username;
-        this.password = password;
-        this.orderHistory = new ArrayList<>();
-        this.ratedProducts = new ArrayList<>();
-        this.shoppingCart = new ShoppingCart();
-    }
-
-    public void addOrderToHistory(Order order) {
-        orderHistory.add(order);
-    }
-
-    public void addRatedProduct(Product product) {
-        if (!ratedProducts.contains(product)) {
-            ratedProducts.add(product);
-        }
-    }
-
-    // Аутентификация - более безопасный вариант, чем доставать пароль через геттер
-    public boolean authenticate(String password) {
-        return this.password.equals(password);
-    }
-
-    public void changePassword(String newPassword) {
-        this.password = newPassword;
-    }
-
-    // Геттеры и сеттеры
-    public String getUserId() {
-        return userId;
-    }
-
-    public String getUsername() {
-        return username;
-    }
-
-    public void setUsername(String username) {
-        this.username = username;
-    }
-
-    public ShoppingCart getShoppingCart() {
-        return shoppingCart;
-    }
-
-    public List<Order> getOrderHistory() {
-        return new ArrayList<>(orderHistory);
-    }
-
-    public List<Product> getRatedProducts() {
-        return new ArrayList<>(ratedProducts);
-    }
+package Shop;
+
+import Shop.products.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class User {
+    private final String userId;
+    private volatile String username;
+    // Соленый хэш пароля (см. PasswordHasher) - сам пароль нигде не хранится
+    private volatile String passwordHash;
+    // Оценки пользователя: товар -> оценка
+    private final Map<Product, Double> ratings;
+    private final ShoppingCart shoppingCart;
+
+    public User(String userId, String username, String password) {
+        this(userId, username, PasswordHasher.hash(password), new ShoppingCart());
+    }
+
+    private User(String userId, String username, String passwordHash, ShoppingCart shoppingCart) {
+        this.userId = userId;
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.ratings = new ConcurrentHashMap<>();
+        this.shoppingCart = shoppingCart;
+    }
+
+    // Пользователь с уже посчитанным хэшем - при регистрации и восстановлении из журнала
+    static User withPasswordHash(String userId, String username, String passwordHash) {
+        return new User(userId, username, passwordHash, new ShoppingCart());
+    }
+
+    // Запоминает оценку и возвращает предыдущую оценку этого товара (null, если товар не оценивался)
+    Double rate(Product product, double rating) {
+        return ratings.put(product, rating);
+    }
+
+    public Double getRating(Product product) {
+        return ratings.get(product);
+    }
+
+    // Аутентификация - более безопасный вариант, чем доставать пароль через геттер
+    public boolean authenticate(String password) {
+        return PasswordHasher.verify(password, passwordHash);
+    }
+
+    // Пароль меняется через ShopSystem.changePassword, чтобы смена попала в журнал
+    void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+
+    // Геттеры и сеттеры
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    // Менять имя можно только через ShopSystem.changeUsername - иначе разойдется индекс имен
+    void setUsername(String username) {
+        this.username = username;
+    }
+
+    public ShoppingCart getShoppingCart() {
+        return shoppingCart;
+    }
+
+    public List<Product> getRatedProducts() {
+        return new ArrayList<>(ratings.keySet());
+    }
+
+    public Map<Product, Double> getRatings() {
+        return Map.copyOf(ratings);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package Shop.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Разбор тела запроса: плоский JSON-объект со строками, числами, true/false/null.
+// Значения возвращаются строками - типы проверяет обработчик
+final class JsonReader {
+    private final String text;
+    private int pos;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    static Map<String, String> parseObject(String text) {
+        JsonReader reader = new JsonReader(text);
+        Map<String, String> result = new HashMap<>();
+        reader.skipWhitespace();
+        if (reader.pos == text.length()) {
+            return result;
+        }
+        reader.expect('{');
+        reader.skipWhitespace();
+        if (reader.peek() == '}') {
+            reader.pos++;
+            return result;
+        }
+        while (true) {
+            reader.skipWhitespace();
+            String name = reader.readString();
+            reader.skipWhitespace();
+            reader.expect(':');
+            reader.skipWhitespace();
+            result.put(name, reader.readValue());
+            reader.skipWhitespace();
+            char c = reader.next();
+            if (c == '}') {
+                return result;
+            }
+            if (c != ',') {
+                throw reader.error("ожидалась ',' или '}'");
+            }
+        }
+    }
+
+    private String readValue() {
+        char c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        int start = pos;
+        while (pos < text.length() && ",} \t\r\n".indexOf(text.charAt(pos)) < 0) {
+            pos++;
+        }
+        String literal = text.substring(start, pos);
+        if (literal.isEmpty() || literal.startsWith("{") || literal.startsWith("[")) {
+            throw error("ожидалось простое значение");
+        }
+        return "null".equals(literal) ? null : literal;
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = next();
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (pos + 4 > text.length()) {
+                        throw error("обрезанная escape-последовательность");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("неверная escape-последовательность");
+                    }
+                    pos += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= text.length()) {
+            throw error("неожиданный конец");
+        }
+        return text.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            throw error("ожидался '" + expected + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Некорректный JSON (позиция " + pos + "): " + message);
+    }
+}
@@ -0,0 +1,137 @@
+package Shop.api;
+
+// Минимальный потоковый JSON-писатель: запятые расставляются сам, значения экранируются
+class JsonWriter {
+    private final StringBuilder out;
+    private boolean needComma;
+
+    JsonWriter() {
+        this.out = new StringBuilder(256);
+    }
+
+    JsonWriter beginObject() {
+        separator();
+        out.append('{');
+        needComma = false;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        out.append('}');
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        separator();
+        out.append('[');
+        needComma = false;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        out.append(']');
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        separator();
+        quote(name);
+        out.append(':');
+        needComma = false;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separator();
+        if (value == null) {
+            out.append("null");
+        } else {
+            quote(value);
+        }
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separator();
+        out.append(value);
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter value(double value) {
+        separator();
+        out.append(value);
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter value(Double value) {
+        return value == null ? nullValue() : value(value.doubleValue());
+    }
+
+    JsonWriter value(boolean value) {
+        separator();
+        out.append(value);
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter nullValue() {
+        separator();
+        out.append("null");
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, long value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, double value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    private void separator() {
+        if (needComma) {
+            out.append(',');
+        }
+    }
+
+    private void quote(String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
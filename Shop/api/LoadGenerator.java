@@ -0,0 +1,154 @@
+package Shop.api;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Нагрузочный генератор для локальных прогонов ShopHttpServer.
+// Каждый виртуальный покупатель регистрируется, входит и в цикле ищет товары, кладет их в корзину и оформляет заказ.
+// Запуск: java Shop.api.LoadGenerator [baseUrl] [покупателей] [секунд]
+public class LoadGenerator {
+    private static final Pattern SESSION_ID = Pattern.compile("\"sessionId\":\"([^\"]+)\"");
+    private static final String[] KEYWORDS = {"смарт", "ноут", "наушн", "книга", "мышь"};
+    private static final String[] PRODUCT_IDS = {"1", "2", "3", "4", "5"};
+    // Латентности храним в кольцевом буфере на покупателя, чтобы не расти без предела
+    private static final int LATENCY_SAMPLES = 4096;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final LongAdder requests;
+    private final LongAdder errors;
+    private final LongAdder orders;
+
+    public LoadGenerator(String baseUrl) {
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        this.baseUrl = baseUrl;
+        this.requests = new LongAdder();
+        this.errors = new LongAdder();
+        this.orders = new LongAdder();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int shoppers = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        new LoadGenerator(baseUrl).run(shoppers, seconds);
+    }
+
+    public void run(int shoppers, int seconds) throws InterruptedException {
+        ExecutorService executor = RequestExecutors.perRequest(shoppers);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<long[]> latencies = new ArrayList<>(shoppers);
+        for (int i = 0; i < shoppers; i++) {
+            long[] samples = new long[LATENCY_SAMPLES + 1];
+            latencies.add(samples);
+            String username = "load-" + runId + "-" + i;
+            executor.execute(() -> shop(username, deadline, samples));
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        report(seconds, latencies);
+    }
+
+    private void shop(String username, long deadline, long[] samples) {
+        try {
+            send("POST", "/api/register", null, credentials(username), samples);
+            String login = send("POST", "/api/login", null, credentials(username), samples);
+            Matcher matcher = SESSION_ID.matcher(login == null ? "" : login);
+            if (!matcher.find()) {
+                return;
+            }
+            String session = matcher.group(1);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                String keyword = KEYWORDS[random.nextInt(KEYWORDS.length)];
+                send("GET", "/api/products?keyword=" + URLEncoder.encode(keyword, StandardCharsets.UTF_8),
+                        session, null, samples);
+                String productId = PRODUCT_IDS[random.nextInt(PRODUCT_IDS.length)];
+                send("POST", "/api/cart", session,
+                        "{\"productId\":\"" + productId + "\",\"quantity\":" + (1 + random.nextInt(3)) + "}", samples);
+                if (random.nextInt(4) == 0 && send("POST", "/api/checkout", session, null, samples) != null) {
+                    orders.increment();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Тело ответа или null, если статус не 2xx
+    private String send(String method, String path, String session, String body, long[] samples) throws InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (session != null) {
+            request.header("X-Session-Id", session);
+        }
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            record(samples, System.nanoTime() - start);
+            if (response.statusCode() / 100 != 2) {
+                errors.increment();
+                return null;
+            }
+            return response.body();
+        } catch (IOException e) {
+            errors.increment();
+            return null;
+        }
+    }
+
+    // samples[LATENCY_SAMPLES] - счетчик записей
+    private void record(long[] samples, long nanos) {
+        requests.increment();
+        int count = (int) samples[LATENCY_SAMPLES];
+        samples[count % LATENCY_SAMPLES] = nanos;
+        samples[LATENCY_SAMPLES] = count + 1;
+    }
+
+    private void report(int seconds, List<long[]> latencies) {
+        long total = 0;
+        for (long[] samples : latencies) {
+            total += Math.min(samples[LATENCY_SAMPLES], LATENCY_SAMPLES);
+        }
+        long[] all = new long[(int) total];
+        int pos = 0;
+        for (long[] samples : latencies) {
+            int count = (int) Math.min(samples[LATENCY_SAMPLES], LATENCY_SAMPLES);
+            System.arraycopy(samples, 0, all, pos, count);
+            pos += count;
+        }
+        Arrays.sort(all);
+
+        System.out.printf("Запросов: %d (%.0f/с), ошибок: %d, заказов: %d%n",
+                requests.sum(), requests.sum() / (double) seconds, errors.sum(), orders.sum());
+        if (all.length > 0) {
+            System.out.printf("Латентность, мс: p50=%.2f p90=%.2f p99=%.2f max=%.2f%n",
+                    percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), all[all.length - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+
+    private static String credentials(String username) {
+        return "{\"username\":\"" + username + "\",\"password\":\"load\"}";
+    }
+}
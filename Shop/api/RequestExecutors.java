@@ -0,0 +1,28 @@
+package Shop.api;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Исполнитель "поток на запрос". На JDK 21+ - виртуальные потоки (ищем фабрику рефлексией,
+// чтобы код собирался и на 17), иначе - пул платформенных потоков ограниченного размера.
+// На 17 пул - жесткий предел параллельности: запросы, ждущие fsync группового коммита, занимают поток,
+// и при fallbackThreads таких запросах остальные ждут в очереди
+final class RequestExecutors {
+
+    private RequestExecutors() {
+    }
+
+    static ExecutorService perRequest(int fallbackThreads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(fallbackThreads, r -> {
+                Thread thread = new Thread(r, "http-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package Shop.api;
+
+import Shop.Session;
+import Shop.ShopSystem;
+import Shop.User;
+import Shop.metrics.Metrics;
+import Shop.orders.CheckoutResult;
+import Shop.orders.Order;
+import Shop.orders.OrderStatus;
+import Shop.products.*;
+import Shop.products.cache.CacheStats;
+import Shop.products.filters.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+// HTTP/JSON API поверх ShopSystem на встроенном в JDK HttpServer.
+// Соединения принимает селектор HttpServer. На JDK 21+ каждый запрос выполняется в своем виртуальном потоке,
+// на 17 - в пуле из -Dshop.http.threads (256) платформенных потоков (см. RequestExecutors).
+// Состояния между запросами нет: пользователь определяется по заголовку X-Session-Id
+public class ShopHttpServer {
+    private static final String SESSION_HEADER = "X-Session-Id";
+    private static final int ORDERS_PAGE_SIZE = 20;
+    private static final int TOP_PRODUCTS_LIMIT = 10;
+    private static final int PRODUCTS_PAGE_SIZE = 50;
+    private static final int MAX_PRODUCTS_PAGE_SIZE = 1000;
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+
+    private final ShopSystem shopSystem;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public ShopHttpServer(ShopSystem shopSystem, int port, int backlog) throws IOException {
+        this.shopSystem = shopSystem;
+        this.server = HttpServer.create(new InetSocketAddress(port), backlog);
+        this.executor = RequestExecutors.perRequest(Integer.getInteger("shop.http.threads", 256));
+        server.createContext("/api/", this::handle);
+        server.createContext("/metrics", ShopHttpServer::metrics);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Запуск: java -Dshop.http.port=8080 Shop.api.ShopHttpServer
+    public static void main(String[] args) throws IOException {
+        ShopHttpServer server = new ShopHttpServer(new ShopSystem(),
+                Integer.getInteger("shop.http.port", 8080), Integer.getInteger("shop.http.backlog", 4096));
+        server.start();
+        System.out.println("Магазин слушает порт " + server.getPort());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int status = 200;
+            String body;
+            try {
+                body = route(exchange);
+            } catch (ApiException e) {
+                status = e.status;
+                body = error(e.getMessage());
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (RejectedExecutionException e) {
+                // Перегрузка (например, предел одновременных проверок пароля) - клиенту стоит повторить позже
+                status = 503;
+                body = error(e.getMessage());
+            } catch (RuntimeException e) {
+                status = 500;
+                body = error("Внутренняя ошибка: " + e.getMessage());
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    // Метрики операций в текстовом формате Prometheus
+    private static void metrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] bytes = Metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private String route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        switch (path[0]) {
+            case "register" -> {
+                requireMethod(method, "POST");
+                Map<String, String> body = readBody(exchange);
+                if (!shopSystem.registerUser(required(body, "username"), required(body, "password"))) {
+                    throw new ApiException(409, "Пользователь уже существует");
+                }
+                return ok();
+            }
+            case "login" -> {
+                requireMethod(method, "POST");
+                Map<String, String> body = readBody(exchange);
+                Session session = shopSystem.login(required(body, "username"), required(body, "password"))
+                        .orElseThrow(() -> new ApiException(401, "Неверный логин или пароль"));
+                return new JsonWriter().beginObject().field("sessionId", session.getSessionId()).endObject().toString();
+            }
+            case "logout" -> {
+                requireMethod(method, "POST");
+                shopSystem.logout(session(exchange));
+                return ok();
+            }
+            case "products" -> {
+                return products(exchange, method, path, query);
+            }
+            case "top" -> {
+                requireMethod(method, "GET");
+                return productList(topProducts(query.getOrDefault("by", "rating"), query.get("category")));
+            }
+            case "recommendations" -> {
+                requireMethod(method, "GET");
+                return productList(shopSystem.getProductCatalog().getRecommendedProducts(session(exchange).getUser()));
+            }
+            case "cart" -> {
+                return cart(exchange, method);
+            }
+            case "checkout" -> {
+                requireMethod(method, "POST");
+                CheckoutResult result = shopSystem.placeOrder(session(exchange));
+                if (result.status() != CheckoutResult.Status.PLACED) {
+                    throw new ApiException(result.status() == CheckoutResult.Status.BUSY ? 503 : 409,
+                            result.status().name());
+                }
+                JsonWriter json = new JsonWriter();
+                writeOrder(json, result.order());
+                return json.toString();
+            }
+            case "orders" -> {
+                return orders(exchange, method, path);
+            }
+            case "admin" -> {
+                return admin(exchange, method, path, query);
+            }
+            default -> throw new ApiException(404, "Неизвестный ресурс");
+        }
+    }
+
+    // GET /api/products?keyword=&manufacturer=&category=&minPrice=&maxPrice=&sort=catalog|price_asc|price_desc&limit=&cursor=&facets=true
+    // Ответ постраничный: next - курсор следующей страницы. Фасеты считаются по всему результату, а не по странице,
+    // поэтому отдаются только по явному facets=true - обычно один раз, вместе с первой страницей
+    // GET /api/products/{id}, POST /api/products/{id}/rating {"rating": 5}
+    private String products(HttpExchange exchange, String method, String[] path, Map<String, String> query) throws IOException {
+        if (path.length == 1) {
+            requireMethod(method, "GET");
+            ProductCatalog catalog = shopSystem.getProductCatalog();
+            ProductFilter filter = buildFilter(query);
+            SortOrder order = parseSortOrder(query.getOrDefault("sort", "catalog"));
+            int limit = query.containsKey("limit") ? parseInt(query.get("limit"), "limit") : PRODUCTS_PAGE_SIZE;
+            if (limit <= 0 || limit > MAX_PRODUCTS_PAGE_SIZE) {
+                throw new IllegalArgumentException("Поле limit должно быть от 1 до " + MAX_PRODUCTS_PAGE_SIZE);
+            }
+            String cursor = query.get("cursor");
+            boolean facets = parseBoolean(query.getOrDefault("facets", "false"), "facets");
+            Page page = catalog.search(filter, order, limit, cursor);
+            JsonWriter json = new JsonWriter().beginObject().name("products").beginArray();
+            for (Product product : page.getItems()) {
+                writeProduct(json, product);
+            }
+            json.endArray().field("next", page.getNextToken());
+            if (facets) {
+                SearchResult result = catalog.searchWithFacets(filter);
+                writeCounts(json.name("categories"), result.getCategoryCounts());
+                writeCounts(json.name("manufacturers"), result.getManufacturerCounts());
+            }
+            return json.endObject().toString();
+        }
+        Product product = product(path[1]);
+        if (path.length == 2) {
+            requireMethod(method, "GET");
+            JsonWriter json = new JsonWriter();
+            writeProduct(json, product);
+            return json.toString();
+        }
+        if (path.length == 3 && path[2].equals("rating")) {
+            requireMethod(method, "POST");
+            // Диапазон оценки проверяет ShopSystem (Product.MIN_RATING..MAX_RATING)
+            double rating = parseDouble(required(readBody(exchange), "rating"), "rating");
+            shopSystem.rateProduct(session(exchange), product, rating);
+            return ok();
+        }
+        throw new ApiException(404, "Неизвестный ресурс");
+    }
+
+    // GET /api/cart, POST /api/cart {"productId": "1", "quantity": 2}, DELETE /api/cart {"productId": "1", "quantity": 1}
+    private String cart(HttpExchange exchange, String method) throws IOException {
+        Session session = session(exchange);
+        switch (method) {
+            case "GET" -> {
+                return cartJson(session.getUser());
+            }
+            case "POST", "DELETE" -> {
+                Map<String, String> body = readBody(exchange);
+                Product product = product(required(body, "productId"));
+                int quantity = parseInt(required(body, "quantity"), "quantity");
+                if (quantity <= 0) {
+                    throw new IllegalArgumentException("Количество должно быть положительным");
+                }
+                if (method.equals("POST")) {
+                    shopSystem.addToCart(session, product, quantity);
+                } else {
+                    shopSystem.removeFromCart(session, product, quantity);
+                }
+                return cartJson(session.getUser());
+            }
+            default -> throw new ApiException(405, "Метод не поддерживается");
+        }
+    }
+
+    // GET /api/orders, POST /api/orders/{id}/return
+    private String orders(HttpExchange exchange, String method, String[] path) {
+        Session session = session(exchange);
+        if (path.length == 1) {
+            requireMethod(method, "GET");
+            return orderList(shopSystem.getUserOrders(session));
+        }
+        Order order = shopSystem.getOrderRepository().findById(path[1]);
+        // Чужой заказ для покупателя не существует
+        if (order == null || !order.getUserId().equals(session.getUser().getUserId())) {
+            throw new ApiException(404, "Заказ не найден");
+        }
+        if (path.length == 3 && path[2].equals("return")) {
+            requireMethod(method, "POST");
+            if (!shopSystem.returnOrder(order)) {
+                throw new ApiException(409, "Заказ в статусе " + order.getStatus() + " нельзя вернуть");
+            }
+            JsonWriter json = new JsonWriter();
+            writeOrder(json, order);
+            return json.toString();
+        }
+        throw new ApiException(404, "Неизвестный ресурс");
+    }
+
+    // GET /api/admin/orders?status=&after=, POST /api/admin/orders/{id}/status {"status": "SHIPPED"},
+    // GET /api/admin/users, GET /api/admin/cache, GET /api/admin/stock, POST /api/admin/stock/{productId} {"quantity": 10}
+    // POST /api/admin/products {"id": "6", "name": "...", "price": 100, "manufacturer": "...", "categories": "a|b"},
+    // DELETE /api/admin/products/{id}
+    private String admin(HttpExchange exchange, String method, String[] path, Map<String, String> query) throws IOException {
+        Session session = session(exchange);
+        if (!shopSystem.isAdmin(session)) {
+            throw new ApiException(403, "Доступ запрещен");
+        }
+        String resource = path.length > 1 ? path[1] : "";
+        switch (resource) {
+            case "orders" -> {
+                if (path.length == 2) {
+                    requireMethod(method, "GET");
+                    OrderStatus status = query.containsKey("status") ? OrderStatus.valueOf(query.get("status").toUpperCase()) : null;
+                    // after - id последнего заказа предыдущей страницы; страницы идут от новых заказов к старым
+                    Order after = null;
+                    if (query.containsKey("after")) {
+                        after = shopSystem.getOrderRepository().findById(query.get("after"));
+                        if (after == null) {
+                            throw new IllegalArgumentException("Неизвестный заказ в поле after: " + query.get("after"));
+                        }
+                    }
+                    return orderList(shopSystem.getOrderRepository().find(status, null, null, after, ORDERS_PAGE_SIZE));
+                }
+                Order order = shopSystem.getOrderRepository().findById(path[2]);
+                if (order == null) {
+                    throw new ApiException(404, "Заказ не найден");
+                }
+                if (path.length == 4 && path[3].equals("status")) {
+                    requireMethod(method, "POST");
+                    OrderStatus newStatus = OrderStatus.valueOf(required(readBody(exchange), "status").toUpperCase());
+                    if (!shopSystem.updateOrderStatus(order, newStatus)) {
+                        throw new ApiException(409, "Недопустимый переход: " + order.getStatus() + " -> " + newStatus);
+                    }
+                    JsonWriter json = new JsonWriter();
+                    writeOrder(json, order);
+                    return json.toString();
+                }
+            }
+            case "users" -> {
+                requireMethod(method, "GET");
+                JsonWriter json = new JsonWriter().beginArray();
+                for (User user : shopSystem.getAllUsers()) {
+                    json.beginObject()
+                            .field("userId", user.getUserId())
+                            .field("username", user.getUsername())
+                            .field("orders", shopSystem.countUserOrders(user))
+                            .endObject();
+                }
+                return json.endArray().toString();
+            }
+            case "cache" -> {
+                requireMethod(method, "GET");
+                JsonWriter json = new JsonWriter().beginObject();
+                writeCacheStats(json.name("filter"), shopSystem.getProductCatalog().getFilterCacheStats());
+                writeCacheStats(json.name("search"), shopSystem.getProductCatalog().getSearchCacheStats());
+                return json.endObject().toString();
+            }
+            case "stock" -> {
+                if (path.length == 2) {
+                    requireMethod(method, "GET");
+                    JsonWriter json = new JsonWriter().beginObject();
+                    shopSystem.getInventory().getAll().forEach((productId, quantity) -> json.field(productId, quantity));
+                    return json.endObject().toString();
+                }
+                requireMethod(method, "POST");
+                Product product = product(path[2]);
+                int quantity = parseInt(required(readBody(exchange), "quantity"), "quantity");
+                shopSystem.setStock(product, quantity);
+                return ok();
+            }
+            case "products" -> {
+                // Через ShopSystem, а не напрямую в каталог: изменения должны попасть в журнал
+                if (path.length == 2) {
+                    requireMethod(method, "POST");
+                    Map<String, String> body = readBody(exchange);
+                    String categories = body.getOrDefault("categories", "");
+                    long version = shopSystem.putProduct(new Product(required(body, "id"), required(body, "name"),
+                            parseDouble(required(body, "price"), "price"), required(body, "manufacturer"),
+                            categories.isBlank() ? List.of() : List.of(categories.split("\\|"))));
+                    return new JsonWriter().beginObject().field("version", version).endObject().toString();
+                }
+                requireMethod(method, "DELETE");
+                if (!shopSystem.removeProduct(path[2])) {
+                    throw new ApiException(404, "Товар не найден");
+                }
+                return ok();
+            }
+            default -> {
+            }
+        }
+        throw new ApiException(404, "Неизвестный ресурс");
+    }
+
+    private List<Product> topProducts(String by, String category) {
+        ProductCatalog catalog = shopSystem.getProductCatalog();
+        return switch (by) {
+            case "rating" -> catalog.getTopRated(category, TOP_PRODUCTS_LIMIT);
+            case "price" -> catalog.getCheapest(category, TOP_PRODUCTS_LIMIT);
+            case "sales" -> catalog.getBestsellers(category, TOP_PRODUCTS_LIMIT);
+            default -> throw new IllegalArgumentException("Неизвестная сортировка: " + by);
+        };
+    }
+
+    private static SortOrder parseSortOrder(String value) {
+        try {
+            return SortOrder.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестный порядок сортировки: " + value);
+        }
+    }
+
+    // Те же фильтры, что и в консольном поиске; без параметров - весь каталог
+    private static ProductFilter buildFilter(Map<String, String> query) {
+        double minPrice = query.containsKey("minPrice") ? parseDouble(query.get("minPrice"), "minPrice") : 0;
+        double maxPrice = query.containsKey("maxPrice") ? parseDouble(query.get("maxPrice"), "maxPrice") : Double.MAX_VALUE;
+        ProductFilter filter = new PriceRangeFilter(minPrice, maxPrice);
+        if (query.containsKey("keyword")) {
+            filter = filter.and(new KeywordFilter(query.get("keyword")));
+        }
+        if (query.containsKey("manufacturer")) {
+            filter = filter.and(new ManufacturerFilter(query.get("manufacturer")));
+        }
+        if (query.containsKey("category")) {
+            filter = filter.and(new CategoryFilter(query.get("category")));
+        }
+        return filter;
+    }
+
+    private Session session(HttpExchange exchange) {
+        String sessionId = exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+        Session session = sessionId == null ? null : shopSystem.getSession(sessionId);
+        if (session == null) {
+            throw new ApiException(401, "Требуется вход: заголовок " + SESSION_HEADER);
+        }
+        return session;
+    }
+
+    private Product product(String productId) {
+        Product product = shopSystem.getProductCatalog().getProductById(productId);
+        if (product == null) {
+            throw new ApiException(404, "Товар не найден");
+        }
+        return product;
+    }
+
+    private String cartJson(User user) {
+        Map<Product, Integer> items = user.getShoppingCart().getItems();
+        JsonWriter json = new JsonWriter().beginObject().name("items").beginArray();
+        items.forEach((product, quantity) -> writeItem(json, product, quantity));
+        return json.endArray().field("total", user.getShoppingCart().getTotalPrice()).endObject().toString();
+    }
+
+    private String productList(List<Product> products) {
+        JsonWriter json = new JsonWriter().beginArray();
+        for (Product product : products) {
+            writeProduct(json, product);
+        }
+        return json.endArray().toString();
+    }
+
+    private String orderList(List<Order> orders) {
+        JsonWriter json = new JsonWriter().beginArray();
+        for (Order order : orders) {
+            writeOrder(json, order);
+        }
+        return json.endArray().toString();
+    }
+
+    private void writeProduct(JsonWriter json, Product product) {
+        json.beginObject()
+                .field("id", product.getId())
+                .field("name", product.getName())
+                .field("price", product.getPrice())
+                .field("manufacturer", product.getManufacturer())
+                .name("categories").beginArray();
+        for (String category : product.getCategories()) {
+            json.value(category);
+        }
+        json.endArray()
+                .name("rating").value(product.getRating())
+                .field("ratingCount", product.getRatingCount())
+                .field("stock", shopSystem.getInventory().getStock(product))
+                .endObject();
+    }
+
+    private static void writeOrder(JsonWriter json, Order order) {
+        json.beginObject()
+                .field("orderId", order.getOrderId())
+                .field("userId", order.getUserId())
+                .field("status", order.getStatus().name())
+                .field("date", order.getOrderDate().getTime())
+                .name("items").beginArray();
+        order.getItems().forEach((product, quantity) -> writeItem(json, product, quantity));
+        json.endArray().field("total", order.getTotalPrice()).endObject();
+    }
+
+    private static void writeItem(JsonWriter json, Product product, int quantity) {
+        json.beginObject()
+                .field("productId", product.getId())
+                .field("name", product.getName())
+                .field("price", product.getPrice())
+                .field("quantity", quantity)
+                .endObject();
+    }
+
+    private static void writeCacheStats(JsonWriter json, CacheStats stats) {
+        json.beginObject()
+                .field("hits", stats.hits())
+                .field("misses", stats.misses())
+                .field("hitRate", stats.hitRate())
+                .field("evictions", stats.evictions())
+                .field("invalidations", stats.invalidations())
+                .field("size", stats.size())
+                .field("weight", stats.weight())
+                .endObject();
+    }
+
+    private static void writeCounts(JsonWriter json, Map<String, Integer> counts) {
+        json.beginObject();
+        counts.forEach((name, count) -> json.field(name, count));
+        json.endObject();
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_SIZE + 1);
+            if (bytes.length > MAX_BODY_SIZE) {
+                throw new ApiException(413, "Слишком большое тело запроса");
+            }
+            return JsonReader.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if (!value.isEmpty()) {
+                query.put(name, value);
+            }
+        }
+        return query;
+    }
+
+    private static String required(Map<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Не указано поле " + name);
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Поле " + name + " должно быть целым числом");
+        }
+    }
+
+    private static double parseDouble(String value, String name) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Поле " + name + " должно быть числом");
+        }
+    }
+
+    private static boolean parseBoolean(String value, String name) {
+        return switch (value) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException("Поле " + name + " должно быть true или false");
+        };
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, "Ожидался метод " + expected);
+        }
+    }
+
+    private static String ok() {
+        return "{\"ok\":true}";
+    }
+
+    private static String error(String message) {
+        return new JsonWriter().beginObject().field("error", message).endObject().toString();
+    }
+
+    // Ошибка с HTTP-статусом
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
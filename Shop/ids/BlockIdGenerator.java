@@ -0,0 +1,39 @@
+package Shop.ids;
+
+// Выдача идентификаторов блоками на поток: общий CAS выполняется один раз на blockSize идентификаторов,
+// остальные берутся из локального для потока диапазона без какой-либо синхронизации
+public class BlockIdGenerator implements IdGenerator {
+    private final SnowflakeIdGenerator delegate;
+    private final int blockSize;
+    // [следующее значение, конец блока)
+    private final ThreadLocal<long[]> blocks;
+    // Блоки, зарезервированные до advancePast, начинаются ниже этой границы и выбрасываются
+    private volatile long floor;
+
+    public BlockIdGenerator(SnowflakeIdGenerator delegate, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Размер блока должен быть положительным");
+        }
+        this.delegate = delegate;
+        this.blockSize = blockSize;
+        this.blocks = ThreadLocal.withInitial(() -> new long[2]);
+    }
+
+    @Override
+    public long nextId() {
+        long[] block = blocks.get();
+        if (block[0] == block[1] || block[0] < floor) {
+            block[0] = delegate.reserve(blockSize);
+            block[1] = block[0] + blockSize;
+        }
+        return delegate.toId(block[0]++);
+    }
+
+    @Override
+    public void advancePast(long id) {
+        delegate.advancePast(id);
+        synchronized (this) {
+            floor = Math.max(floor, delegate.toState(id) + 1);
+        }
+    }
+}
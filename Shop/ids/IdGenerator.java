@@ -0,0 +1,10 @@
+package Shop.ids;
+
+// Источник уникальных идентификаторов - реализация подменяется без изменения ShopSystem
+public interface IdGenerator {
+    long nextId();
+
+    // Все следующие ID будут больше id: так генератор не повторит ID, восстановленные из журнала,
+    // даже если часы после перезапуска отстают от тех, что их выдали
+    void advancePast(long id);
+}
@@ -0,0 +1,65 @@
+package Shop.ids;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Идентификаторы в стиле Snowflake: 41 бит времени (мс от EPOCH) | 10 бит узла | 12 бит последовательности.
+// Состояние (время и последовательность) упаковано в один AtomicLong и меняется через CAS без блокировок.
+// Если за миллисекунду последовательность исчерпана, она переносится в следующую миллисекунду
+// вместо ожидания часов - идентификаторы остаются уникальными и примерно упорядоченными по времени
+public class SnowflakeIdGenerator implements IdGenerator {
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private final long nodeId;
+    // (мс от EPOCH) << SEQUENCE_BITS | последовательность - следующее свободное значение
+    private final AtomicLong state;
+
+    public SnowflakeIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Номер узла должен быть от 0 до " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.state = new AtomicLong();
+    }
+
+    // Номер узла из системного свойства -Dshop.nodeId, чтобы несколько экземпляров работали рядом
+    public static SnowflakeIdGenerator fromSystemProperties() {
+        return new SnowflakeIdGenerator(Integer.getInteger("shop.nodeId", 0));
+    }
+
+    @Override
+    public long nextId() {
+        return toId(reserve(1));
+    }
+
+    @Override
+    public void advancePast(long id) {
+        state.accumulateAndGet(toState(id) + 1, Math::max);
+    }
+
+    // Резервирует count значений подряд и возвращает первое из них (в пространстве состояний)
+    long reserve(int count) {
+        while (true) {
+            long current = state.get();
+            long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+            long start = Math.max(current, now);
+            if (state.compareAndSet(current, start + count)) {
+                return start;
+            }
+        }
+    }
+
+    // Обратно к (мс от EPOCH) << SEQUENCE_BITS | последовательность; номер узла отбрасывается,
+    // так что ID любого узла с тем же временем и последовательностью тоже остается позади
+    long toState(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS | (id & SEQUENCE_MASK);
+    }
+
+    long toId(long stateValue) {
+        long timestamp = stateValue >>> SEQUENCE_BITS;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (stateValue & SEQUENCE_MASK);
+    }
+}
@@ -0,0 +1,69 @@
+package Shop.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Гистограмма латентностей в духе HDR: логарифмические корзины по степеням двойки, каждая поделена
+// на 16 линейных подкорзин - относительная погрешность не больше 1/16 при фиксированном объеме памяти.
+// Запись идет в полосу (stripe), выбранную по потоку: потоки почти не делят ячейки, блокировок нет.
+// Чтение суммирует полосы - это редкая операция (экспорт, JMX)
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+    // Значения выше 2^43 нс (~2.4 часа) попадают в последнюю корзину
+    private static final int MAX_MSB = 42;
+    static final int BUCKETS = (MAX_MSB - SUB_BITS + 2) * HALF + HALF;
+    private static final int SUM_SLOT = BUCKETS;
+
+    private final AtomicLongArray[] stripes;
+    private final int mask;
+
+    public LatencyHistogram() {
+        int stripeCount = Integer.highestOneBit(Math.min(32, Runtime.getRuntime().availableProcessors() * 2) - 1) << 1;
+        this.stripes = new AtomicLongArray[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 1);
+        }
+        this.mask = stripes.length - 1;
+    }
+
+    public void record(long nanos) {
+        AtomicLongArray stripe = stripes[stripeIndex()];
+        stripe.getAndIncrement(bucketOf(nanos));
+        stripe.getAndAdd(SUM_SLOT, nanos);
+    }
+
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(SUM_SLOT);
+        }
+        return new HistogramSnapshot(counts, sum);
+    }
+
+    private int stripeIndex() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    static int bucketOf(long value) {
+        if (value <= 0) {
+            return 0;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        if (msb > MAX_MSB) {
+            return BUCKETS - 1;
+        }
+        int shift = Math.max(0, msb - SUB_BITS + 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    // Середина корзины - оценка любого попавшего в нее значения
+    static long valueOf(int bucket) {
+        int shift = Math.max(0, bucket / HALF - 1);
+        return ((long) (bucket - shift * HALF) << shift) + ((1L << shift) >>> 1);
+    }
+}
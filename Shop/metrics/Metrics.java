@@ -0,0 +1,159 @@
+package Shop.metrics;
+
+import Shop.products.filters.ProductFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Реестр метрик операций магазина.
+// ENABLED - static final: при -Dshop.metrics=false JIT выбрасывает проверки вместе с замером времени,
+// включенные метрики стоят два вызова nanoTime и две атомарные операции без конкуренции
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("shop.metrics", "true"));
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    // Текущие значения, которые считываются только при экспорте (размеры, счетчики кэшей и т.п.)
+    private static final Map<String, DoubleSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    public static final Timer LOGIN = timer("login");
+    public static final Timer REGISTER = timer("register");
+    public static final Timer PLACE_ORDER = timer("place_order");
+    public static final Timer RATE_PRODUCT = timer("rate_product");
+    public static final Timer ORDER_STATUS = timer("order_status");
+    public static final Timer ADMIN_ORDERS = timer("admin_orders");
+    public static final Timer ADMIN_USERS = timer("admin_users");
+    public static final Timer ADMIN_ALL_ORDERS = timer("admin_all_orders");
+
+    // Поиск - отдельный таймер на каждый тип фильтра: search_keyword, search_and, ...
+    private static final ClassValue<Timer> SEARCH_TIMERS = new ClassValue<>() {
+        @Override
+        protected Timer computeValue(Class<?> type) {
+            String name = type.getPackage() == ProductFilter.class.getPackage()
+                    ? type.getSimpleName().replace("Filter", "").toLowerCase()
+                    : "other";
+            return timer("search_" + name);
+        }
+    };
+
+    private static volatile boolean mbeansRegistered;
+    private static ScheduledExecutorService fileExporter;
+
+    private Metrics() {
+    }
+
+    public static Timer timer(String name) {
+        Timer timer = TIMERS.get(name);
+        if (timer != null) {
+            return timer;
+        }
+        return TIMERS.computeIfAbsent(name, n -> {
+            Timer created = new Timer(n);
+            if (mbeansRegistered) {
+                register(ManagementFactory.getPlatformMBeanServer(), created);
+            }
+            return created;
+        });
+    }
+
+    // Повторная регистрация с тем же именем заменяет источник значения
+    public static void gauge(String name, DoubleSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    public static Timer search(ProductFilter filter) {
+        return SEARCH_TIMERS.get(filter.getClass());
+    }
+
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static Collection<Timer> timers() {
+        List<Timer> timers = new ArrayList<>(TIMERS.values());
+        timers.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return timers;
+    }
+
+    // Текстовый формат Prometheus (0.0.4): summary с квантилями на каждую операцию, в секундах
+    public static String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP shop_operation_seconds Latency of shop operations\n");
+        out.append("# TYPE shop_operation_seconds summary\n");
+        for (Timer timer : timers()) {
+            HistogramSnapshot snapshot = timer.snapshot();
+            String labels = "operation=\"" + timer.getName() + "\"";
+            for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                out.append("shop_operation_seconds{").append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(snapshot.getValueAtQuantile(quantile) / 1e9).append('\n');
+            }
+            out.append("shop_operation_seconds_sum{").append(labels).append("} ").append(snapshot.getSum() / 1e9).append('\n');
+            out.append("shop_operation_seconds_count{").append(labels).append("} ").append(snapshot.getCount()).append('\n');
+        }
+        new TreeMap<>(GAUGES).forEach((name, value) -> {
+            out.append("# TYPE shop_").append(name).append(" gauge\n");
+            out.append("shop_").append(name).append(' ').append(value.getAsDouble()).append('\n');
+        });
+        return out.toString();
+    }
+
+    // Регистрирует таймеры в платформенном MBeanServer; таймеры, созданные позже, регистрируются сразу при создании
+    public static synchronized void registerMBeans() {
+        if (mbeansRegistered) {
+            return;
+        }
+        mbeansRegistered = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Timer timer : timers()) {
+            register(server, timer);
+        }
+    }
+
+    private static void register(MBeanServer server, Timer timer) {
+        try {
+            ObjectName name = new ObjectName("Shop:type=Timer,name=" + timer.getName());
+            if (!server.isRegistered(name)) {
+                server.registerMBean(timer, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Не удалось зарегистрировать метрику " + timer.getName() + " в JMX: " + e.getMessage());
+        }
+    }
+
+    // Периодическая выгрузка в файл для textfile-коллектора node_exporter; запись атомарная через временный файл
+    public static synchronized void startFileExport(Path file, long intervalSeconds) {
+        if (fileExporter != null) {
+            return;
+        }
+        fileExporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fileExporter.scheduleWithFixedDelay(() -> {
+            try {
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.writeString(temp, toPrometheus(), StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("Не удалось выгрузить метрики: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,70 @@
+package Shop.metrics;
+
+// Счетчик и гистограмма латентности одной операции.
+// Использование: long start = Metrics.start(); ... timer.stop(start);
+// При выключенных метриках оба вызова сворачиваются JIT'ом в ничто
+public class Timer implements TimerMXBean {
+    private final String name;
+    private final LatencyHistogram histogram;
+
+    Timer(String name) {
+        this.name = name;
+        this.histogram = new LatencyHistogram();
+    }
+
+    public void stop(long startNanos) {
+        if (Metrics.ENABLED) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void record(long nanos) {
+        if (Metrics.ENABLED) {
+            histogram.record(nanos);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public HistogramSnapshot snapshot() {
+        return histogram.snapshot();
+    }
+
+    // Атрибуты JMX - в микросекундах
+    @Override
+    public long getCount() {
+        return snapshot().getCount();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return snapshot().getMean() / 1000;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return snapshot().getValueAtQuantile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return snapshot().getValueAtQuantile(0.9) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return snapshot().getValueAtQuantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return snapshot().getValueAtQuantile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return snapshot().getMax() / 1000.0;
+    }
+}
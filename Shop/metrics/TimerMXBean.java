@@ -0,0 +1,18 @@
+package Shop.metrics;
+
+// Представление Timer в JMX: Shop:type=Timer,name=<операция>
+public interface TimerMXBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,17 @@
+package Shop.orders;
+
+// Итог оформления заказа; order заполнен только для PLACED
+public record CheckoutResult(Status status, Order order) {
+
+    public enum Status {
+        PLACED, EMPTY_CART, OUT_OF_STOCK, CART_CHANGED, BUSY
+    }
+
+    public static CheckoutResult placed(Order order) {
+        return new CheckoutResult(Status.PLACED, order);
+    }
+
+    public static CheckoutResult rejected(Status status) {
+        return new CheckoutResult(status, null);
+    }
+}
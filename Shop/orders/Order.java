@@ -1,53 +1,75 @@
-package Shop.orders;
-
-import Shop.products.Product;
-
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-
-public class Order {
-    private final String orderId;
-    private final Map<Product, Integer> items;
-    private final Date orderDate;
-    private OrderStatus status;
-
-    public Order(String orderId, Map<Product, Integer> items) {
-        this.orderId = orderId;
-        this.items = new HashMap<>(items);
-        this.orderDate = new Date();
-        this.status = OrderStatus.NEW;
-    }
-
-    public void updateStatus(OrderStatus newStatus) {
-        this.status = newStatus;
-    }
-
-    public double getTotalPrice() {
-        return items.entrySet().stream()
-                .mapToDouble(entry -> entry.getKey().getPrice() * entry.getValue())
-                .sum();
-    }
-
-    public void returnOrder() {
-        this.status = OrderStatus.RETURNED;
-        System.out.println("Заказ успешно возвращен");
-    }
-
-    // Геттеры
-    public String getOrderId() {
-        return orderId;
-    }
-
-    public Map<Product, Integer> getItems() {
-        return new HashMap<>(items);
-    }
-
-    public Date getOrderDate() {
-        return orderDate;
-    }
-
-    public OrderStatus getStatus() {
-        return status;
-    }
+package Shop.orders;
+
+import Shop.products.Product;
+
+import java.util.Date;
+import java.util.Map;
+
+public class Order {
+    private final String orderId;
+    private final String userId;
+    private final Map<Product, Integer> items;
+    // Итог в копейках фиксируется при создании заказа
+    private final long totalMinor;
+    private final Date orderDate;
+    private volatile OrderStatus status;
+
+    public Order(String orderId, String userId, Map<Product, Integer> items) {
+        this(orderId, userId, items, new Date(), OrderStatus.NEW);
+    }
+
+    // Восстановление заказа из журнала с исходными датой и статусом
+    public Order(String orderId, String userId, Map<Product, Integer> items, Date orderDate, OrderStatus status) {
+        this.orderId = orderId;
+        this.userId = userId;
+        this.items = Map.copyOf(items);
+        this.totalMinor = items.entrySet().stream()
+                .mapToLong(entry -> entry.getKey().getPriceMinor() * entry.getValue())
+                .sum();
+        this.orderDate = orderDate;
+        this.status = status;
+    }
+
+    // Статус меняется только через OrderRepository, чтобы не разошлись индексы
+    void updateStatus(OrderStatus newStatus) {
+        if (!status.canTransitionTo(newStatus)) {
+            throw new IllegalArgumentException("Недопустимый переход статуса заказа: " + status + " -> " + newStatus);
+        }
+        this.status = newStatus;
+    }
+
+    // Восстановление из журнала - переход уже был проверен при записи
+    void restoreStatus(OrderStatus status) {
+        this.status = status;
+    }
+
+    public double getTotalPrice() {
+        return totalMinor / 100.0;
+    }
+
+    public long getTotalPriceMinor() {
+        return totalMinor;
+    }
+
+    // Геттеры
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    // Неизменяемая карта - копировать не нужно
+    public Map<Product, Integer> getItems() {
+        return items;
+    }
+
+    public Date getOrderDate() {
+        return orderDate;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package Shop.orders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// Асинхронная шина событий смены статуса. У каждого подписчика своя ограниченная очередь и свой поток доставки:
+// публикация - неблокирующий offer, медленный подписчик не тормозит ни updateStatus, ни других подписчиков.
+// Переполненная очередь отбрасывает новые события и считает их (getDropped) - это и есть обратное давление
+public class OrderEventBus {
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 256;
+
+    private final List<Subscription> subscriptions;
+
+    public OrderEventBus() {
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    public Subscription subscribe(String name, OrderStatusListener listener) {
+        return subscribe(name, listener, DEFAULT_CAPACITY);
+    }
+
+    public Subscription subscribe(String name, OrderStatusListener listener, int capacity) {
+        Subscription subscription = new Subscription(name, listener, capacity);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public void publish(OrderStatusChange change) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(change);
+        }
+    }
+
+    public class Subscription implements AutoCloseable {
+        private final OrderStatusListener listener;
+        private final BlockingQueue<OrderStatusChange> queue;
+        private final LongAdder dropped;
+        private final Thread thread;
+
+        private Subscription(String name, OrderStatusListener listener, int capacity) {
+            this.listener = listener;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.dropped = new LongAdder();
+            this.thread = new Thread(this::deliver, "order-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        private void offer(OrderStatusChange change) {
+            if (!queue.offer(change)) {
+                dropped.increment();
+            }
+        }
+
+        private void deliver() {
+            List<OrderStatusChange> batch = new ArrayList<>(BATCH_SIZE);
+            try {
+                while (true) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    try {
+                        listener.onStatusChanges(List.copyOf(batch));
+                    } catch (RuntimeException e) {
+                        System.err.println("Ошибка обработчика событий заказов: " + e.getMessage());
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // События, не попавшие в очередь из-за переполнения
+        public long getDropped() {
+            return dropped.sum();
+        }
+
+        public int getPending() {
+            return queue.size();
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+            thread.interrupt();
+        }
+    }
+}
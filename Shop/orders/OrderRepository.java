@@ -0,0 +1,137 @@
+package Shop.orders;
+
+import Shop.metrics.Metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Центральное хранилище заказов: заказы по id и вторичные индексы по статусу, пользователю и дате.
+// Индексы - отсортированные по (дата, id) skip list'ы, поэтому диапазон дат - это подкарта, а не перебор
+public class OrderRepository {
+    private final Map<String, Order> ordersById;
+    private final ConcurrentSkipListMap<OrderKey, Order> ordersByDate;
+    private final Map<OrderStatus, ConcurrentSkipListMap<OrderKey, Order>> ordersByStatus;
+    private final Map<String, ConcurrentSkipListMap<OrderKey, Order>> ordersByUser;
+    private final OrderEventBus eventBus;
+
+    public OrderRepository() {
+        this.ordersById = new ConcurrentHashMap<>();
+        this.ordersByDate = new ConcurrentSkipListMap<>();
+        this.ordersByStatus = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            ordersByStatus.put(status, new ConcurrentSkipListMap<>());
+        }
+        this.ordersByUser = new ConcurrentHashMap<>();
+        this.eventBus = new OrderEventBus();
+    }
+
+    public void save(Order order) {
+        OrderKey key = OrderKey.of(order);
+        synchronized (order) {
+            ordersById.put(order.getOrderId(), order);
+            ordersByDate.put(key, order);
+            ordersByStatus.get(order.getStatus()).put(key, order);
+        }
+        ordersByUser.computeIfAbsent(order.getUserId(), id -> new ConcurrentSkipListMap<>()).put(key, order);
+    }
+
+    // Смена статуса переносит заказ между индексами статусов под монитором заказа
+    // Недопустимый переход - IllegalArgumentException. Подписчики шины получают событие асинхронно;
+    // публикация под монитором заказа сохраняет порядок изменений одного заказа
+    public void updateStatus(Order order, OrderStatus newStatus) {
+        OrderKey key = OrderKey.of(order);
+        synchronized (order) {
+            OrderStatus oldStatus = order.getStatus();
+            order.updateStatus(newStatus);
+            ordersByStatus.get(oldStatus).remove(key);
+            ordersByStatus.get(newStatus).put(key, order);
+            eventBus.publish(new OrderStatusChange(order, oldStatus, newStatus, System.currentTimeMillis()));
+        }
+    }
+
+    // Восстановление статуса из журнала: без проверки перехода и без публикации события
+    public void restoreStatus(Order order, OrderStatus status) {
+        OrderKey key = OrderKey.of(order);
+        synchronized (order) {
+            ordersByStatus.get(order.getStatus()).remove(key);
+            order.restoreStatus(status);
+            ordersByStatus.get(status).put(key, order);
+        }
+    }
+
+    public OrderEventBus getEventBus() {
+        return eventBus;
+    }
+
+    public Order findById(String orderId) {
+        return ordersById.get(orderId);
+    }
+
+    // Заказы пользователя от старых к новым
+    public List<Order> findByUser(String userId) {
+        ConcurrentSkipListMap<OrderKey, Order> orders = ordersByUser.get(userId);
+        return orders == null ? List.of() : List.copyOf(orders.values());
+    }
+
+    public int countByUser(String userId) {
+        ConcurrentSkipListMap<OrderKey, Order> orders = ordersByUser.get(userId);
+        return orders == null ? 0 : orders.size();
+    }
+
+    // Страница заказов (от новых к старым) с необязательными фильтрами: status == null - любой статус,
+    // from/to == null - без ограничения по дате. after - последний заказ предыдущей страницы, null - первая страница.
+    // Продолжение ищется по ключу (дата, id) в индексе, поэтому любая страница стоит O(log n + pageSize),
+    // а заказы, добавленные между запросами страниц, не сдвигают выдачу
+    public List<Order> find(OrderStatus status, Date from, Date to, Order after, int pageSize) {
+        long start = Metrics.start();
+        ConcurrentNavigableMap<OrderKey, Order> index = status == null ? ordersByDate : ordersByStatus.get(status);
+        if (from != null) {
+            index = index.tailMap(OrderKey.lowest(from.getTime()), true);
+        }
+        if (to != null) {
+            index = index.headMap(OrderKey.lowest(to.getTime() + 1), false);
+        }
+        ConcurrentNavigableMap<OrderKey, Order> newestFirst = index.descendingMap();
+        if (after != null) {
+            newestFirst = newestFirst.tailMap(OrderKey.of(after), false);
+        }
+
+        List<Order> result = new ArrayList<>(pageSize);
+        for (Order order : newestFirst.values()) {
+            if (result.size() == pageSize) {
+                break;
+            }
+            result.add(order);
+        }
+        Metrics.ADMIN_ORDERS.stop(start);
+        return result;
+    }
+
+    public List<Order> findAll() {
+        return List.copyOf(ordersByDate.values());
+    }
+
+    public int size() {
+        return ordersById.size();
+    }
+
+    // Ключ индексов: сначала дата, затем id - заказы в одну миллисекунду не перетирают друг друга
+    private record OrderKey(long time, String orderId) implements Comparable<OrderKey> {
+        static OrderKey of(Order order) {
+            return new OrderKey(order.getOrderDate().getTime(), order.getOrderId());
+        }
+
+        // Ключ меньше любого заказа с этим временем
+        static OrderKey lowest(long time) {
+            return new OrderKey(time, "");
+        }
+
+        @Override
+        public int compareTo(OrderKey other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : orderId.compareTo(other.orderId);
+        }
+    }
+}
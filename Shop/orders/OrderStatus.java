@@ -1,5 +1,33 @@
-package Shop.orders;
-
-public enum OrderStatus {
-    NEW, SHIPPED, DELIVERED, CANCELLED, RETURNED
+package Shop.orders;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+public enum OrderStatus {
+    NEW, SHIPPED, DELIVERED, CANCELLED, RETURNED;
+
+    // Таблица допустимых переходов; CANCELLED и RETURNED - конечные статусы
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        TRANSITIONS.put(NEW, EnumSet.of(SHIPPED, CANCELLED));
+        TRANSITIONS.put(SHIPPED, EnumSet.of(DELIVERED, CANCELLED));
+        TRANSITIONS.put(DELIVERED, EnumSet.of(RETURNED));
+        TRANSITIONS.put(CANCELLED, EnumSet.noneOf(OrderStatus.class));
+        TRANSITIONS.put(RETURNED, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    public boolean canTransitionTo(OrderStatus next) {
+        return TRANSITIONS.get(this).contains(next);
+    }
+
+    public Set<OrderStatus> nextStatuses() {
+        return EnumSet.copyOf(TRANSITIONS.get(this));
+    }
+
+    public boolean isFinal() {
+        return TRANSITIONS.get(this).isEmpty();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,5 @@
+package Shop.orders;
+
+// Событие смены статуса заказа для подписчиков OrderEventBus
+public record OrderStatusChange(Order order, OrderStatus oldStatus, OrderStatus newStatus, long timestamp) {
+}
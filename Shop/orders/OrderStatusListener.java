@@ -0,0 +1,9 @@
+package Shop.orders;
+
+import java.util.List;
+
+// Подписчик получает изменения пачками, в порядке публикации
+@FunctionalInterface
+public interface OrderStatusListener {
+    void onStatusChanges(List<OrderStatusChange> changes);
+}
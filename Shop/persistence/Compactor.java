@@ -0,0 +1,11 @@
+package Shop.persistence;
+
+import java.util.List;
+
+// Сворачивает события журнала в состояние для снапшота. Получает события предыдущего снапшота и закрытых
+// сегментов по порядку и возвращает набор событий, воспроизведение которого дает то же состояние
+public interface Compactor {
+    void accept(ShopEvent event);
+
+    List<ShopEvent> compacted();
+}
@@ -0,0 +1,278 @@
+package Shop.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Журнал событий только на дозапись, разбитый на сегменты events-<номер>.log.
+// Писатели лишь кладут закодированные записи в ограниченную очередь; отдельный поток забирает их пачками
+// и пишет одной операцией FileChannel.write с одним fsync на пачку (group commit)
+public class EventLog implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int MAX_BATCH = 4_096;
+    private static final long FSYNC_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final BlockingQueue<Pending> queue;
+    private final Object appendLock;
+    private final Object durableMonitor;
+    private final Thread writer;
+
+    private long lastSequence;
+    private long durableSequence;
+    private volatile IOException failure;
+    private volatile boolean running;
+
+    private FileChannel channel;
+    private long segment;
+
+    public EventLog(Path directory, FsyncPolicy fsyncPolicy) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.fsyncPolicy = fsyncPolicy;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.appendLock = new Object();
+        this.durableMonitor = new Object();
+        this.writer = new Thread(this::writeLoop, "event-log-writer");
+        this.writer.setDaemon(true);
+        // Новый сегмент при каждом запуске - никогда не дописываем после возможно оборванного хвоста
+        this.segment = segments().stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        this.channel = openSegment(segment);
+    }
+
+    public void start() {
+        running = true;
+        writer.start();
+    }
+
+    // Ставит событие в очередь и возвращает его номер. При заполненной очереди вызывающий ждет (backpressure)
+    public long append(ShopEvent event) {
+        return enqueue(new Pending(event.encode(), -1));
+    }
+
+    // Ждет, пока событие с номером sequence окажется на диске - только для политики EVERY_BATCH
+    public void awaitDurable(long sequence) {
+        if (fsyncPolicy != FsyncPolicy.EVERY_BATCH) {
+            return;
+        }
+        awaitWritten(sequence);
+    }
+
+    // Закрывает текущий сегмент и начинает следующий; возвращает номер нового сегмента, когда старый уже на диске.
+    // Писателей останавливать не нужно: событие, поставленное в очередь до смены, остается в старом сегменте, после - в новом
+    public long rotate() {
+        long next;
+        synchronized (appendLock) {
+            next = segment + 1;
+        }
+        awaitWritten(enqueue(new Pending(null, next)));
+        return next;
+    }
+
+    // Последовательно читает все записи закрытых сегментов с номером >= fromSegment
+    public void replay(long fromSegment, Consumer<ShopEvent> consumer) throws IOException {
+        long current;
+        synchronized (appendLock) {
+            current = segment;
+        }
+        replay(fromSegment, current, consumer);
+    }
+
+    // То же для сегментов из [fromSegment, toSegment)
+    public void replay(long fromSegment, long toSegment, Consumer<ShopEvent> consumer) throws IOException {
+        for (long index : segments()) {
+            if (index >= fromSegment && index < toSegment) {
+                readAll(segmentPath(index), consumer);
+            }
+        }
+    }
+
+    public void deleteSegmentsBefore(long index) throws IOException {
+        for (long existing : segments()) {
+            if (existing < index) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Писатель мог и не запускаться - тогда его finally не сработал
+        terminate("Журнал событий закрыт");
+        channel.force(true);
+        channel.close();
+    }
+
+    static void readAll(Path path, Consumer<ShopEvent> consumer) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            ShopEvent event;
+            while ((event = ShopEvent.decode(buffer)) != null) {
+                consumer.accept(event);
+            }
+        }
+    }
+
+    private long enqueue(Pending pending) {
+        checkFailure();
+        synchronized (appendLock) {
+            pending.sequence = ++lastSequence;
+            if (pending.rotateTo > 0) {
+                segment = pending.rotateTo;
+            }
+            try {
+                // Ждем места в очереди, но не дольше, чем жив писатель: иначе после его остановки ждали бы вечно
+                while (!queue.offer(pending, 10, TimeUnit.MILLISECONDS)) {
+                    checkFailure();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Запись в журнал прервана", e);
+            }
+            return pending.sequence;
+        }
+    }
+
+    private void awaitWritten(long sequence) {
+        synchronized (durableMonitor) {
+            while (durableSequence < sequence) {
+                checkFailure();
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ожидание записи журнала прервано", e);
+                }
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long lastFsync = System.nanoTime();
+        boolean dirty = false;
+        try {
+            while (running || !queue.isEmpty()) {
+                Pending first = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    for (Pending pending : batch) {
+                        if (pending.rotateTo > 0) {
+                            buffer = flush(buffer);
+                            channel.force(true);
+                            channel.close();
+                            channel = openSegment(pending.rotateTo);
+                        } else {
+                            if (buffer.remaining() < pending.record.length) {
+                                buffer = flush(buffer);
+                                if (buffer.capacity() < pending.record.length) {
+                                    buffer = ByteBuffer.allocateDirect(pending.record.length);
+                                }
+                            }
+                            buffer.put(pending.record);
+                        }
+                    }
+                    buffer = flush(buffer);
+                    dirty = true;
+                }
+
+                if (dirty && (fsyncPolicy == FsyncPolicy.EVERY_BATCH
+                        || (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastFsync >= FSYNC_INTERVAL_NANOS))) {
+                    channel.force(false);
+                    lastFsync = System.nanoTime();
+                    dirty = false;
+                }
+
+                if (!batch.isEmpty()) {
+                    synchronized (durableMonitor) {
+                        durableSequence = batch.get(batch.size() - 1).sequence;
+                        durableMonitor.notifyAll();
+                    }
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            terminate(running ? "Поток записи журнала прерван" : "Журнал событий закрыт");
+        }
+    }
+
+    private ByteBuffer flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return buffer.clear();
+    }
+
+    // Писателя больше нет: все, кто ждет записи или пишет после закрытия, должны получить ошибку, а не висеть
+    private void terminate(String reason) {
+        synchronized (durableMonitor) {
+            if (failure == null) {
+                failure = new IOException(reason);
+            }
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Журнал событий недоступен", failure);
+        }
+    }
+
+    private FileChannel openSegment(long index) throws IOException {
+        return FileChannel.open(segmentPath(index), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("events-%010d.log", index));
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("events-") && name.endsWith(".log"))
+                    .map(name -> Long.parseLong(name.substring(7, name.length() - 4)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Запись в очереди: закодированное событие либо команда смены сегмента
+    private static class Pending {
+        private final byte[] record;
+        private final long rotateTo;
+        private long sequence;
+
+        Pending(byte[] record, long rotateTo) {
+            this.record = record;
+            this.rotateTo = rotateTo;
+        }
+    }
+}
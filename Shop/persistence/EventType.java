@@ -0,0 +1,7 @@
+package Shop.persistence;
+
+public enum EventType {
+    USER_REGISTERED, USERNAME_CHANGED, PASSWORD_CHANGED, CART_ADDED, CART_REMOVED, ORDER_PLACED, ORDER_STATUS_CHANGED, PRODUCT_RATED, STOCK_CHANGED,
+    // Новые типы - только в конец: в файлах журнала тип хранится порядковым номером
+    PRODUCT_PUT, PRODUCT_REMOVED, CATALOG_UPDATED
+}
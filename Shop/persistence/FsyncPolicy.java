@@ -0,0 +1,11 @@
+package Shop.persistence;
+
+// Когда данные журнала сбрасываются на диск
+public enum FsyncPolicy {
+    // fsync после каждой пачки, append ждет сброса - ни одно подтвержденное событие не теряется
+    EVERY_BATCH,
+    // fsync не чаще раза в интервал, append не ждет - при сбое теряется не больше интервала
+    INTERVAL,
+    // сброс остается операционной системе
+    NEVER
+}
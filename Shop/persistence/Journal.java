@@ -0,0 +1,90 @@
+package Shop.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Журнал + периодические снапшоты. Снапшот не читает живое состояние и не останавливает изменения:
+// он закрывает текущий сегмент и в фоне сворачивает предыдущий снапшот и закрытые сегменты (см. Compactor).
+// Время восстановления ограничено объемом событий за один интервал снапшотов
+public class Journal implements AutoCloseable {
+    private final EventLog eventLog;
+    private final SnapshotStore snapshotStore;
+    private final ScheduledExecutorService scheduler;
+
+    public Journal(Path directory, FsyncPolicy fsyncPolicy) throws IOException {
+        this.eventLog = new EventLog(directory, fsyncPolicy);
+        this.snapshotStore = new SnapshotStore(directory);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Воспроизводит последний снапшот и все события после него, затем начинает прием новых событий
+    public void recover(Consumer<ShopEvent> applier) throws IOException {
+        OptionalLong snapshot = snapshotStore.latest();
+        long fromSegment = 0;
+        if (snapshot.isPresent()) {
+            fromSegment = snapshot.getAsLong();
+            snapshotStore.read(fromSegment, applier);
+        }
+        eventLog.replay(fromSegment, applier);
+        eventLog.start();
+    }
+
+    public void startSnapshots(Supplier<Compactor> compactors, long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(compactors);
+            } catch (IOException e) {
+                System.err.println("Не удалось сохранить снапшот: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // Снапшот - это префикс журнала до новой границы сегментов: события, попавшие в очередь после смены сегмента,
+    // останутся в новом сегменте и будут воспроизведены поверх снапшота. Записи в журнал все это время идут
+    public synchronized void snapshot(Supplier<Compactor> compactors) throws IOException {
+        OptionalLong previous = snapshotStore.latest();
+        long fromSegment = previous.orElse(0);
+        long segment = eventLog.rotate();
+        Compactor compactor = compactors.get();
+        if (previous.isPresent()) {
+            snapshotStore.read(fromSegment, compactor::accept);
+        }
+        eventLog.replay(fromSegment, segment, compactor::accept);
+        snapshotStore.write(segment, compactor.compacted());
+        eventLog.deleteSegmentsBefore(segment);
+    }
+
+    // Выполняет изменение состояния; mutation передает событие в журнал, пока еще держит свои блокировки,
+    // поэтому порядок событий в журнале совпадает с порядком изменений. fsync ждем уже вне блокировок.
+    // Возвращает true, если событие было записано
+    public boolean record(Consumer<Consumer<ShopEvent>> mutation) {
+        long[] sequence = {-1};
+        mutation.accept(event -> sequence[0] = eventLog.append(event));
+        if (sequence[0] < 0) {
+            return false;
+        }
+        eventLog.awaitDurable(sequence[0]);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            eventLog.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
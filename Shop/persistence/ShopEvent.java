@@ -0,0 +1,96 @@
+package Shop.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Событие журнала: тип, время и строковые поля (id пользователей, заказов, товаров и т.д.).
+// Запись на диске: длина | CRC32 | тип | время | число полей | поля (длина + UTF-8)
+public class ShopEvent {
+    private static final int HEADER_SIZE = 8;
+
+    private final EventType type;
+    private final long timestamp;
+    private final List<String> fields;
+
+    public ShopEvent(EventType type, long timestamp, List<String> fields) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.fields = List.copyOf(fields);
+    }
+
+    public static ShopEvent of(EventType type, String... fields) {
+        return new ShopEvent(type, System.currentTimeMillis(), List.of(fields));
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String field(int index) {
+        return fields.get(index);
+    }
+
+    public int fieldCount() {
+        return fields.size();
+    }
+
+    public byte[] encode() {
+        byte[][] encoded = new byte[fields.size()][];
+        int payloadSize = 1 + 8 + 4;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = fields.get(i).getBytes(StandardCharsets.UTF_8);
+            payloadSize += 4 + encoded[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+        buffer.putInt(payloadSize);
+        buffer.putInt(0); // CRC заполняется ниже
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(timestamp);
+        buffer.putInt(encoded.length);
+        for (byte[] field : encoded) {
+            buffer.putInt(field.length);
+            buffer.put(field);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, payloadSize);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    // Читает следующую запись; null - если запись оборвана или повреждена (недописанный хвост после сбоя)
+    public static ShopEvent decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int start = buffer.position();
+        int payloadSize = buffer.getInt(start);
+        int checksum = buffer.getInt(start + 4);
+        if (payloadSize < 13 || payloadSize > buffer.remaining() - HEADER_SIZE) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(start + HEADER_SIZE, payloadSize));
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        buffer.position(start + HEADER_SIZE);
+        EventType type = EventType.values()[buffer.get()];
+        long timestamp = buffer.getLong();
+        String[] fields = new String[buffer.getInt()];
+        for (int i = 0; i < fields.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            fields[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new ShopEvent(type, timestamp, List.of(fields));
+    }
+}
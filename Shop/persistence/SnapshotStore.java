@@ -0,0 +1,68 @@
+package Shop.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Снапшоты состояния snapshot-<номер>.dat: состояние магазина, записанное как набор событий,
+// которое было актуально перед началом сегмента журнала с тем же номером
+public class SnapshotStore {
+    private final Path directory;
+
+    public SnapshotStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    // Пишем во временный файл и атомарно переименовываем - недописанный снапшот никогда не станет последним
+    public void write(long segment, List<ShopEvent> state) throws IOException {
+        Path temporary = directory.resolve("snapshot.tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+            for (ShopEvent event : state) {
+                out.write(event.encode());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, snapshotPath(segment), StandardCopyOption.ATOMIC_MOVE);
+
+        for (long existing : snapshots()) {
+            if (existing < segment) {
+                Files.deleteIfExists(snapshotPath(existing));
+            }
+        }
+    }
+
+    // Номер сегмента последнего снапшота, с которого нужно продолжать воспроизведение журнала
+    public OptionalLong latest() throws IOException {
+        List<Long> snapshots = snapshots();
+        return snapshots.isEmpty() ? OptionalLong.empty() : OptionalLong.of(snapshots.get(snapshots.size() - 1));
+    }
+
+    public void read(long segment, Consumer<ShopEvent> consumer) throws IOException {
+        EventLog.readAll(snapshotPath(segment), consumer);
+    }
+
+    private Path snapshotPath(long segment) {
+        return directory.resolve(String.format("snapshot-%010d.dat", segment));
+    }
+
+    private List<Long> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("snapshot-") && name.endsWith(".dat"))
+                    .map(name -> Long.parseLong(name.substring(9, name.length() - 4)))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
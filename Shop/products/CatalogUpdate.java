@@ -0,0 +1,54 @@
+package Shop.products;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Пакет изменений каталога - например, ночная выгрузка поставщика. Применяется целиком одной новой версией:
+// читатели видят либо каталог до пакета, либо после, но никогда не половину пакета
+public class CatalogUpdate {
+    private final Map<String, Product> puts;
+    private final Set<String> removals;
+
+    public CatalogUpdate() {
+        this.puts = new LinkedHashMap<>();
+        this.removals = new LinkedHashSet<>();
+    }
+
+    // Новый товар или новая версия товара с тем же ID; в пределах пакета побеждает последнее изменение
+    public CatalogUpdate put(Product product) {
+        removals.remove(product.getId());
+        puts.put(product.getId(), product);
+        return this;
+    }
+
+    public CatalogUpdate remove(String productId) {
+        puts.remove(productId);
+        removals.add(productId);
+        return this;
+    }
+
+    public int size() {
+        return puts.size() + removals.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Товар затронут пакетом - добавлен, заменен или удален
+    public boolean contains(String productId) {
+        return puts.containsKey(productId) || removals.contains(productId);
+    }
+
+    public List<Product> puts() {
+        return new ArrayList<>(puts.values());
+    }
+
+    public List<String> removals() {
+        return new ArrayList<>(removals);
+    }
+}
@@ -0,0 +1,518 @@
+package Shop.products;
+
+import Shop.products.filters.ProductFilter;
+import Shop.products.index.DictionaryIndex;
+import Shop.products.index.HeapRows;
+import Shop.products.index.IntList;
+import Shop.products.index.KeywordIndex;
+import Shop.products.index.Postings;
+import Shop.products.index.PriceIndex;
+import Shop.products.index.ProductColumns;
+import Shop.products.index.QueryPlanner;
+import Shop.products.index.RatingColumns;
+import Shop.products.index.RoaringBitmap;
+import Shop.products.index.StringDictionary;
+import Shop.products.snapshot.CatalogSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Неизменяемая версия каталога: товары по порядковым номерам и все индексы над ними.
+// Запрос берет текущую версию одним volatile-чтением и работает с ней до конца без блокировок.
+// Версия, замененная новой, остается целой, пока на нее ссылается хоть один незавершенный запрос, потом ее собирает GC.
+// Каталог из снапшота - два слоя: строки отображенного файла (номера 0..B-1) и слой изменений в куче.
+// Товары слоя изменений лежат в своих строках (slot); без снапшота строка и номер совпадают
+final class CatalogVersion {
+    final long number;
+    final int liveCount;
+    // Число выданных номеров, включая удаленные товары
+    private final int size;
+    // null - каталог собран только в куче
+    private final SnapshotRows base;
+    private final QueryPlanner basePlanner;
+    // Слой изменений. На месте удаленного товара null: строка за ним остается
+    private final List<Product> products;
+    private final ProductColumns columns;
+    private final KeywordIndex keywordIndex;
+    private final PriceIndex priceIndex;
+    private final DictionaryIndex manufacturerIndex;
+    private final DictionaryIndex categoryIndex;
+    // Выбирает порядок обхода индексов для составных фильтров
+    private final QueryPlanner queryPlanner;
+    // Номер товара каждой строки и строки, упорядоченные по номеру; null без снапшота
+    private final int[] slotOrdinals;
+    private final int[] sortedOrdinals;
+    private final int[] sortedSlots;
+    private final RatingColumns ratings;
+
+    private CatalogVersion(long number, int liveCount, int size, SnapshotRows base, List<Product> products,
+                           ProductColumns columns, KeywordIndex keywordIndex, PriceIndex priceIndex,
+                           DictionaryIndex manufacturerIndex, DictionaryIndex categoryIndex,
+                           int[] slotOrdinals, RatingColumns ratings) {
+        this.number = number;
+        this.liveCount = liveCount;
+        this.size = size;
+        this.base = base;
+        this.basePlanner = base == null ? null : new QueryPlanner(base);
+        this.products = products;
+        this.columns = columns;
+        this.keywordIndex = keywordIndex;
+        this.priceIndex = priceIndex;
+        this.manufacturerIndex = manufacturerIndex;
+        this.categoryIndex = categoryIndex;
+        this.queryPlanner = new QueryPlanner(new HeapRows(products, columns, keywordIndex, priceIndex,
+                manufacturerIndex, categoryIndex));
+        this.slotOrdinals = slotOrdinals;
+        this.ratings = ratings;
+        if (slotOrdinals == null) {
+            this.sortedOrdinals = null;
+            this.sortedSlots = null;
+        } else {
+            long[] pairs = new long[slotOrdinals.length];
+            for (int slot = 0; slot < slotOrdinals.length; slot++) {
+                pairs[slot] = (long) slotOrdinals[slot] << 32 | slot;
+            }
+            Arrays.sort(pairs);
+            this.sortedOrdinals = new int[pairs.length];
+            this.sortedSlots = new int[pairs.length];
+            for (int i = 0; i < pairs.length; i++) {
+                sortedOrdinals[i] = (int) (pairs[i] >>> 32);
+                sortedSlots[i] = (int) pairs[i];
+            }
+        }
+    }
+
+    static CatalogVersion empty(RatingColumns ratings) {
+        ProductColumns columns = new ProductColumns();
+        return new CatalogVersion(0, 0, 0, null, Collections.emptyList(), columns, new KeywordIndex(),
+                new PriceIndex(), new DictionaryIndex(columns.getManufacturers()),
+                new DictionaryIndex(columns.getCategories()), null, ratings);
+    }
+
+    // Версия, все товары которой лежат в снапшоте. Словари слоя изменений начинаются с копий словарей снапшота,
+    // поэтому id категорий и производителей у обоих слоев общие
+    static CatalogVersion fromSnapshot(long number, CatalogSnapshot snapshot, RatingColumns ratings) {
+        int count = snapshot.getProductCount();
+        if (count > 0) {
+            ratings.ensureCapacity(count - 1);
+        }
+        ProductColumns columns = new ProductColumns(snapshot.getManufacturers().copy(), snapshot.getCategories().copy());
+        return new CatalogVersion(number, count, count, new SnapshotRows(snapshot, new BitSet(), ratings),
+                Collections.emptyList(), columns, new KeywordIndex(), new PriceIndex(),
+                new DictionaryIndex(columns.getManufacturers()), new DictionaryIndex(columns.getCategories()),
+                new int[0], ratings);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Строка снапшота с этим ID; -1 - нет снапшота или такого товара в нем
+    int baseRow(String productId) {
+        return base == null ? -1 : base.snapshot().findRow(productId);
+    }
+
+    // Строка слоя изменений для номера; -1 - товар с этим номером в куче не лежит
+    private int slot(int ordinal) {
+        if (slotOrdinals == null) {
+            return ordinal < products.size() ? ordinal : -1;
+        }
+        int index = Arrays.binarySearch(sortedOrdinals, ordinal);
+        return index < 0 ? -1 : sortedSlots[index];
+    }
+
+    private int ordinal(int slot) {
+        return slotOrdinals == null ? slot : slotOrdinals[slot];
+    }
+
+    private boolean inBase(int ordinal) {
+        return base != null && ordinal < base.size();
+    }
+
+    // null - номера нет в этой версии или товар удален
+    Product product(int ordinal) {
+        int slot = slot(ordinal);
+        if (slot >= 0) {
+            return products.get(slot);
+        }
+        return inBase(ordinal) ? base.product(ordinal) : null;
+    }
+
+    boolean isLive(int ordinal) {
+        int slot = slot(ordinal);
+        if (slot >= 0) {
+            return products.get(slot) != null;
+        }
+        return inBase(ordinal) && base.isLive(ordinal);
+    }
+
+    double price(int ordinal) {
+        int slot = slot(ordinal);
+        return slot >= 0 ? columns.price(slot) : base.price(ordinal);
+    }
+
+    int[] categoryIds(int ordinal) {
+        int slot = slot(ordinal);
+        if (slot >= 0) {
+            int[] ids = new int[columns.categoryCount(slot)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = columns.categoryId(slot, i);
+            }
+            return ids;
+        }
+        CatalogSnapshot snapshot = base.snapshot();
+        int[] ids = new int[snapshot.categoryCount(ordinal)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = snapshot.foldedCategoryId(ordinal, i);
+        }
+        return ids;
+    }
+
+    // id свернутой категории; -1 - такой категории в каталоге нет
+    int categoryId(String foldedCategory) {
+        return columns.getCategories().lookup(foldedCategory);
+    }
+
+    // Отсортированные номера товаров, подходящих под фильтр. Слои не пересекаются: товар из кучи затеняет строку снапшота
+    int[] evaluate(ProductFilter filter) {
+        int[] delta = toOrdinals(queryPlanner.evaluate(filter));
+        return base == null ? delta : Postings.union(basePlanner.evaluate(filter), delta);
+    }
+
+    int estimate(ProductFilter filter) {
+        int estimate = queryPlanner.estimate(filter);
+        return base == null ? estimate : estimate + basePlanner.estimate(filter);
+    }
+
+    boolean isIndexed(ProductFilter filter) {
+        return queryPlanner.isIndexed(filter);
+    }
+
+    private boolean matches(ProductFilter filter, int slot, int row) {
+        return filter == null || (slot >= 0 ? queryPlanner.matches(filter, slot) : basePlanner.matches(filter, row));
+    }
+
+    private int[] toOrdinals(int[] slots) {
+        if (slotOrdinals == null) {
+            return slots;
+        }
+        int[] ordinals = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            ordinals[i] = slotOrdinals[slots[i]];
+        }
+        Arrays.sort(ordinals);
+        return ordinals;
+    }
+
+    // Номера товаров с ценой в [minPrice, maxPrice] по возрастанию цены; при равной цене снапшот идет раньше кучи
+    int[] priceRange(double minPrice, double maxPrice) {
+        int[] delta = priceIndex.range(minPrice, maxPrice);
+        if (base == null) {
+            return delta;
+        }
+        int[] out = new int[base.priceCount(minPrice, maxPrice) + delta.length];
+        int found = pageByPrice(null, minPrice, maxPrice, null, true, out);
+        return found == out.length ? out : Arrays.copyOf(out, found);
+    }
+
+    // Фасеты по категориям и производителям для отсортированных номеров. Без снапшота - по bitmap-индексам,
+    // со снапшотом - подсчетом по строкам обоих слоев в общих id словарей
+    Map<String, Integer> categoryFacets(int[] sortedOrdinals) {
+        if (base == null) {
+            return categoryIndex.facetCounts(RoaringBitmap.of(sortedOrdinals));
+        }
+        StringDictionary dictionary = columns.getCategories();
+        int[] counts = new int[dictionary.size()];
+        CatalogSnapshot snapshot = base.snapshot();
+        for (int ordinal : sortedOrdinals) {
+            int slot = slot(ordinal);
+            if (slot >= 0) {
+                for (int c = 0; c < columns.categoryCount(slot); c++) {
+                    counts[columns.categoryId(slot, c)]++;
+                }
+            } else {
+                for (int c = 0; c < snapshot.categoryCount(ordinal); c++) {
+                    counts[snapshot.foldedCategoryId(ordinal, c)]++;
+                }
+            }
+        }
+        return facets(dictionary, counts);
+    }
+
+    Map<String, Integer> manufacturerFacets(int[] sortedOrdinals) {
+        if (base == null) {
+            return manufacturerIndex.facetCounts(RoaringBitmap.of(sortedOrdinals));
+        }
+        StringDictionary dictionary = columns.getManufacturers();
+        int[] counts = new int[dictionary.size()];
+        CatalogSnapshot snapshot = base.snapshot();
+        for (int ordinal : sortedOrdinals) {
+            int slot = slot(ordinal);
+            counts[slot >= 0 ? columns.manufacturerId(slot) : snapshot.foldedManufacturerId(ordinal)]++;
+        }
+        return facets(dictionary, counts);
+    }
+
+    // Тот же порядок, что у DictionaryIndex.facetCounts: по убыванию числа товаров, при равенстве - по id значения
+    private static Map<String, Integer> facets(StringDictionary dictionary, int[] counts) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] > 0) {
+                entries.add(Map.entry(dictionary.decode(id), counts[id]));
+            }
+        }
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        Map<String, Integer> facets = new LinkedHashMap<>();
+        entries.forEach(entry -> facets.put(entry.getKey(), entry.getValue()));
+        return facets;
+    }
+
+    // Первые out.length подходящих номеров >= from в порядке номеров. Селективный индексный фильтр дешевле
+    // вычислить целиком и продолжить с позиции from; иначе идем по номерам и проверяем фильтр до заполнения страницы
+    int pageByOrdinal(ProductFilter filter, int from, int[] out, int indexSelectivity) {
+        int remaining = size - from;
+        if (filter != null && isIndexed(filter) && estimate(filter) <= remaining / indexSelectivity) {
+            int[] matched = evaluate(filter);
+            int position = Arrays.binarySearch(matched, from);
+            position = position < 0 ? -position - 1 : position;
+            int found = Math.min(out.length, matched.length - position);
+            System.arraycopy(matched, position, out, 0, found);
+            return found;
+        }
+        if (base == null) {
+            if (filter != null) {
+                return queryPlanner.scanFrom(filter, from, out);
+            }
+            int found = 0;
+            for (int ordinal = from; ordinal < size && found < out.length; ordinal++) {
+                if (queryPlanner.isLive(ordinal)) {
+                    out[found++] = ordinal;
+                }
+            }
+            return found;
+        }
+        // Строки снапшота идут подряд, строки кучи - по возрастанию номера; сливаем два упорядоченных потока
+        int[] baseOut = new int[out.length];
+        int baseFound = 0;
+        if (from < base.size()) {
+            if (filter != null) {
+                baseFound = basePlanner.scanFrom(filter, from, baseOut);
+            } else {
+                for (int row = from; row < base.size() && baseFound < baseOut.length; row++) {
+                    if (base.isLive(row)) {
+                        baseOut[baseFound++] = row;
+                    }
+                }
+            }
+        }
+        int[] deltaOut = new int[out.length];
+        int deltaFound = 0;
+        int index = Arrays.binarySearch(sortedOrdinals, from);
+        for (index = index < 0 ? -index - 1 : index; index < sortedOrdinals.length && deltaFound < deltaOut.length; index++) {
+            int slot = sortedSlots[index];
+            if (products.get(slot) != null && matches(filter, slot, -1)) {
+                deltaOut[deltaFound++] = sortedOrdinals[index];
+            }
+        }
+        int found = 0;
+        for (int i = 0, j = 0; found < out.length && (i < baseFound || j < deltaFound); ) {
+            out[found++] = j >= deltaFound || (i < baseFound && baseOut[i] < deltaOut[j]) ? baseOut[i++] : deltaOut[j++];
+        }
+        return found;
+    }
+
+    // Обход индексов цен от курсора (цена и номер последнего выданного товара). Порядок по возрастанию -
+    // (цена, слой: снапшот раньше кучи, строка в слое); по убыванию - точное обращение этого порядка.
+    // Ценовые границы сужают обход до диапазона
+    int pageByPrice(ProductFilter filter, double minPrice, double maxPrice, ContinuationToken cursor,
+                    boolean ascending, int[] out) {
+        // Слой курсора: товар, лежащий в куче, - строка кучи, иначе строка снапшота
+        int cursorSlot = cursor == null ? -1 : slot(cursor.ordinal());
+        boolean cursorInDelta = cursorSlot >= 0;
+        CatalogSnapshot snapshot = base == null ? null : base.snapshot();
+
+        int deltaPosition;
+        int deltaEnd;
+        int basePosition = 0;
+        int baseEnd = 0;
+        if (ascending) {
+            deltaPosition = priceIndex.lowerBound(minPrice);
+            deltaEnd = priceIndex.upperBound(maxPrice);
+            if (cursor != null) {
+                deltaPosition = Math.max(deltaPosition, cursorInDelta
+                        ? priceIndex.positionAfter(cursor.price(), cursorSlot)
+                        : priceIndex.lowerBound(cursor.price()));
+            }
+            if (snapshot != null) {
+                basePosition = snapshot.lowerBound(minPrice);
+                baseEnd = snapshot.upperBound(maxPrice);
+                if (cursor != null) {
+                    basePosition = Math.max(basePosition, cursorInDelta
+                            ? snapshot.upperBound(cursor.price())
+                            : snapshot.positionAfter(cursor.price(), cursor.ordinal(), true));
+                }
+            }
+        } else {
+            // Позиции идут вниз: обходим [end, position) с конца
+            deltaPosition = priceIndex.upperBound(maxPrice);
+            deltaEnd = priceIndex.lowerBound(minPrice);
+            if (cursor != null) {
+                deltaPosition = Math.min(deltaPosition, cursorInDelta
+                        ? priceIndex.positionOf(cursor.price(), cursorSlot)
+                        : priceIndex.lowerBound(cursor.price()));
+            }
+            if (snapshot != null) {
+                basePosition = snapshot.upperBound(maxPrice);
+                baseEnd = snapshot.lowerBound(minPrice);
+                if (cursor != null) {
+                    basePosition = Math.min(basePosition, cursorInDelta
+                            ? snapshot.upperBound(cursor.price())
+                            : snapshot.positionAfter(cursor.price(), cursor.ordinal(), false));
+                }
+            }
+        }
+
+        int found = 0;
+        while (found < out.length) {
+            boolean hasDelta = ascending ? deltaPosition < deltaEnd : deltaPosition > deltaEnd;
+            boolean hasBase = ascending ? basePosition < baseEnd : basePosition > baseEnd;
+            if (!hasDelta && !hasBase) {
+                break;
+            }
+            boolean takeBase;
+            if (!hasDelta || !hasBase) {
+                takeBase = hasBase;
+            } else {
+                double deltaPrice = priceIndex.priceAt(ascending ? deltaPosition : deltaPosition - 1);
+                double basePrice = snapshot.price(snapshot.priceOrderAt(ascending ? basePosition : basePosition - 1));
+                takeBase = ascending ? basePrice <= deltaPrice : basePrice > deltaPrice;
+            }
+            if (takeBase) {
+                int row = snapshot.priceOrderAt(ascending ? basePosition++ : --basePosition);
+                if (base.isLive(row) && matches(filter, -1, row)) {
+                    out[found++] = row;
+                }
+            } else {
+                int slot = priceIndex.ordinalAt(ascending ? deltaPosition++ : --deltaPosition);
+                if (matches(filter, slot, -1)) {
+                    out[found++] = ordinal(slot);
+                }
+            }
+        }
+        return found;
+    }
+
+    // Самые дешевые живые строки снапшота в категории (categoryId < 0 - во всем снапшоте) по возрастанию цены
+    int[] cheapestInBase(int categoryId, int limit) {
+        if (base == null) {
+            return new int[0];
+        }
+        CatalogSnapshot snapshot = base.snapshot();
+        IntList rows = new IntList();
+        for (int position = 0; position < base.size() && rows.size() < limit; position++) {
+            int row = snapshot.priceOrderAt(position);
+            if (base.isLive(row) && (categoryId < 0 || snapshot.hasCategory(row, categoryId))) {
+                rows.add(row);
+            }
+        }
+        return rows.toArray();
+    }
+
+    // Собирает следующую версию, не трогая текущую. puts.get(i) ложится на номер putOrdinals[i]: номер товара,
+    // который уже был в каталоге или в снапшоте, либо новый - новые идут подряд от size() в порядке puts.
+    // В версию попадают копии товаров, привязанные к своей строке ratings
+    CatalogVersion next(List<Product> puts, int[] putOrdinals, int[] removals) {
+        List<Product> nextProducts = new ArrayList<>(products.size() + puts.size());
+        nextProducts.addAll(products);
+        ProductColumns nextColumns = columns.copy();
+        KeywordIndex.Editor keywords = keywordIndex.edit();
+        PriceIndex.Editor prices = priceIndex.edit();
+        DictionaryIndex.Editor manufacturers = manufacturerIndex.edit(nextColumns.getManufacturers());
+        DictionaryIndex.Editor categories = categoryIndex.edit(nextColumns.getCategories());
+        int[] nextSlotOrdinals = slotOrdinals == null ? null : Arrays.copyOf(slotOrdinals, slotOrdinals.length + puts.size());
+        // Затенение копируется, только если пакет трогает строки снапшота
+        BitSet shadowed = base == null ? null : base.shadowed();
+        int nextLiveCount = liveCount;
+        int nextSize = size;
+
+        for (int ordinal : removals) {
+            int slot = slot(ordinal);
+            if (slot >= 0) {
+                keywords.remove(slot);
+                unindex(slot, prices, manufacturers, categories);
+                nextProducts.set(slot, null);
+            } else {
+                shadowed = shadow(shadowed, ordinal);
+            }
+            nextLiveCount--;
+        }
+        for (int i = 0; i < puts.size(); i++) {
+            int ordinal = putOrdinals[i];
+            ratings.ensureCapacity(ordinal);
+            Product product = new Product(puts.get(i), ratings, ordinal);
+            int slot = slot(ordinal);
+            if (slot >= 0) {
+                if (products.get(slot) != null) {
+                    unindex(slot, prices, manufacturers, categories);
+                } else {
+                    nextLiveCount++;
+                }
+                nextProducts.set(slot, product);
+                nextColumns.set(slot, product);
+            } else {
+                slot = nextProducts.size();
+                nextProducts.add(product);
+                nextColumns.append(product);
+                if (nextSlotOrdinals != null) {
+                    nextSlotOrdinals[slot] = ordinal;
+                }
+                if (inBase(ordinal)) {
+                    // Строка снапшота уходит в тень; если ее удалили раньше, товар возвращается в каталог
+                    if (!base.isLive(ordinal)) {
+                        nextLiveCount++;
+                    }
+                    shadowed = shadow(shadowed, ordinal);
+                } else {
+                    nextLiveCount++;
+                    nextSize = Math.max(nextSize, ordinal + 1);
+                }
+            }
+            keywords.put(slot, product);
+            manufacturers.add(slot, nextColumns.manufacturerId(slot));
+            for (int c = 0; c < nextColumns.categoryCount(slot); c++) {
+                categories.add(slot, nextColumns.categoryId(slot, c));
+            }
+            prices.add(slot, product.getPrice());
+        }
+
+        SnapshotRows nextBase = base == null || shadowed == base.shadowed()
+                ? base : new SnapshotRows(base.snapshot(), shadowed, ratings);
+        if (nextSlotOrdinals != null) {
+            nextSlotOrdinals = Arrays.copyOf(nextSlotOrdinals, nextProducts.size());
+        }
+        return new CatalogVersion(number + 1, nextLiveCount, nextSize, nextBase,
+                Collections.unmodifiableList(nextProducts), nextColumns, keywords.build(), prices.build(),
+                manufacturers.build(), categories.build(), nextSlotOrdinals, ratings);
+    }
+
+    private BitSet shadow(BitSet shadowed, int row) {
+        BitSet result = shadowed == base.shadowed() ? (BitSet) shadowed.clone() : shadowed;
+        result.set(row);
+        return result;
+    }
+
+    // Снимает прежние значения строки с индексов; значения берутся из колонок текущей версии
+    private void unindex(int slot, PriceIndex.Editor prices,
+                         DictionaryIndex.Editor manufacturers, DictionaryIndex.Editor categories) {
+        prices.remove(slot);
+        manufacturers.remove(slot, columns.manufacturerId(slot));
+        for (int c = 0; c < columns.categoryCount(slot); c++) {
+            categories.remove(slot, columns.categoryId(slot, c));
+        }
+    }
+}
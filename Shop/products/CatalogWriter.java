@@ -0,0 +1,46 @@
+package Shop.products;
+
+import Shop.products.snapshot.CatalogSnapshot;
+
+import java.util.concurrent.CompletableFuture;
+
+// Право изменять каталог. Читают каталог все, а изменяет только владелец writer'а: в магазине это ShopSystem,
+// который сначала пишет изменение в журнал, иначе после перезапуска оно бы потерялось
+public final class CatalogWriter {
+    private final ProductCatalog catalog;
+
+    CatalogWriter(ProductCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    public ProductCatalog catalog() {
+        return catalog;
+    }
+
+    // Добавляет товар или заменяет товар с тем же ID
+    public void addProduct(Product product) {
+        catalog.addProduct(product);
+    }
+
+    // false - товара с таким ID в каталоге нет
+    public boolean updateProduct(Product product) {
+        return catalog.updateProduct(product);
+    }
+
+    public boolean removeProduct(String productId) {
+        return catalog.removeProduct(productId);
+    }
+
+    // Пакет изменений одной новой версией; возвращает ее номер
+    public long apply(CatalogUpdate update) {
+        return catalog.apply(update);
+    }
+
+    public CompletableFuture<Long> applyAsync(CatalogUpdate update) {
+        return catalog.applyAsync(update);
+    }
+
+    public void loadSnapshot(CatalogSnapshot snapshot) {
+        catalog.loadSnapshot(snapshot);
+    }
+}
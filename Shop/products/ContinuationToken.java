@@ -0,0 +1,61 @@
+package Shop.products;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+// Курсор постраничного поиска: ключ последнего выданного товара (цена, номер) + порядок и хэш фильтра.
+// Указывает на значение ключа, а не на позицию, поэтому параллельные добавления товаров не сдвигают выдачу:
+// уже показанные товары не повторятся, еще не показанные не пропадут
+final class ContinuationToken {
+    private static final byte FORMAT = 1;
+    private static final int LENGTH = 1 + 1 + Double.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private final SortOrder order;
+    private final double price;
+    private final int ordinal;
+    private final int filterHash;
+
+    ContinuationToken(SortOrder order, double price, int ordinal, int filterHash) {
+        this.order = order;
+        this.price = price;
+        this.ordinal = ordinal;
+        this.filterHash = filterHash;
+    }
+
+    String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH)
+                .put(FORMAT)
+                .put((byte) order.ordinal())
+                .putDouble(price)
+                .putInt(ordinal)
+                .putInt(filterHash);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    // Токен от другого запроса или другого порядка сортировки не принимается
+    static ContinuationToken decode(String token, SortOrder expectedOrder, int expectedFilterHash) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный токен продолжения");
+        }
+        if (bytes.length != LENGTH || bytes[0] != FORMAT) {
+            throw new IllegalArgumentException("Некорректный токен продолжения");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, LENGTH - 2);
+        ContinuationToken cursor = new ContinuationToken(expectedOrder, buffer.getDouble(), buffer.getInt(), buffer.getInt());
+        if (bytes[1] != expectedOrder.ordinal() || cursor.filterHash != expectedFilterHash) {
+            throw new IllegalArgumentException("Токен продолжения относится к другому запросу");
+        }
+        return cursor;
+    }
+
+    double price() {
+        return price;
+    }
+
+    int ordinal() {
+        return ordinal;
+    }
+}
@@ -0,0 +1,94 @@
+package Shop.products;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Складские остатки. У каждого товара свой атомарный счетчик - резервирование разных товаров
+// не конкурирует, а один товар резервируется CAS'ом без блокировок.
+// Товар без заведенного остатка считается доступным без ограничений
+public class Inventory {
+    private final Map<String, AtomicInteger> stock;
+
+    public Inventory() {
+        this.stock = new ConcurrentHashMap<>();
+    }
+
+    public void setStock(Product product, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Остаток не может быть отрицательным: " + quantity);
+        }
+        stock.computeIfAbsent(product.getId(), id -> new AtomicInteger()).set(quantity);
+    }
+
+    // -1 - остаток не отслеживается
+    public int getStock(Product product) {
+        AtomicInteger counter = stock.get(product.getId());
+        return counter == null ? -1 : counter.get();
+    }
+
+    public boolean isTracked(Product product) {
+        return stock.containsKey(product.getId());
+    }
+
+    // Резервирует все позиции или ни одной: при нехватке хотя бы одного товара уже списанное возвращается
+    public boolean tryReserve(Map<Product, Integer> items) {
+        List<Map.Entry<Product, Integer>> reserved = new ArrayList<>(items.size());
+        for (Map.Entry<Product, Integer> item : items.entrySet()) {
+            AtomicInteger counter = stock.get(item.getKey().getId());
+            if (counter == null) {
+                continue;
+            }
+            if (!tryTake(counter, item.getValue())) {
+                for (Map.Entry<Product, Integer> taken : reserved) {
+                    stock.get(taken.getKey().getId()).addAndGet(taken.getValue());
+                }
+                return false;
+            }
+            reserved.add(item);
+        }
+        return true;
+    }
+
+    // Возврат резерва, если заказ так и не был создан
+    public void release(Map<Product, Integer> items) {
+        items.forEach((product, quantity) -> {
+            AtomicInteger counter = stock.get(product.getId());
+            if (counter != null) {
+                counter.addAndGet(quantity);
+            }
+        });
+    }
+
+    // Списание без проверки - при восстановлении заказа из журнала
+    public void take(Map<Product, Integer> items) {
+        items.forEach((product, quantity) -> {
+            AtomicInteger counter = stock.get(product.getId());
+            if (counter != null) {
+                counter.addAndGet(-quantity);
+            }
+        });
+    }
+
+    // Снимок остатков: productId -> количество
+    public Map<String, Integer> getAll() {
+        Map<String, Integer> result = new HashMap<>();
+        stock.forEach((id, counter) -> result.put(id, counter.get()));
+        return result;
+    }
+
+    private static boolean tryTake(AtomicInteger counter, int quantity) {
+        while (true) {
+            int available = counter.get();
+            if (available < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(available, available - quantity)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package Shop.products;
+
+import java.util.List;
+
+// Страница результатов поиска и непрозрачный токен следующей страницы (null - страниц больше нет)
+public class Page {
+    private final List<Product> items;
+    private final String nextToken;
+
+    public Page(List<Product> items, String nextToken) {
+        this.items = items;
+        this.nextToken = nextToken;
+    }
+
+    public List<Product> getItems() {
+        return items;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -1,60 +1,168 @@
-package Shop.products;
-
-import java.util.ArrayList;
-import java.util.List;
-
-public class Product {
-    private final String id;
-    private final String name;
-    private final double price;
-    private final String manufacturer;
-    private Double rating;
-    private final List<String> categories;
-
-    // Избегание магических чисел - вводим константы
-    private static final double MIN_RATING = 0.0;
-    private static final double MAX_RATING = 5.0;
-
-    public Product(String id, String name, double price, String manufacturer, List<String> categories) {
-        this.id = id;
-        this.name = name;
-        this.price = price;
-        this.manufacturer = manufacturer;
-        this.categories = categories;
-        this.rating = null; // Рейтинг по умолчанию
-    }
-
-    // Принцип открытости/закрытости
-    // Открыт для расширения (можно наследовать и изменять логику расчета рейтинга), но закрыт для модификации
-    public void updateRating(Double newRating) {
-        if (newRating < MIN_RATING || newRating > MAX_RATING) {
-            throw new IllegalArgumentException("Рейтинг должен быть от " + MIN_RATING + " до " + MAX_RATING);
-        }
-        this.rating = newRating; // Конечно, тут можно сложить текущую оценку с новой оценкой и поделить на количество оценок в боевом варианте
-    }
-
-    // Геттеры
-    public String getId() {
-        return id;
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    public double getPrice() {
-        return price;
-    }
-
-    public String getManufacturer() {
-        return manufacturer;
-    }
-
-    public Double getRating() {
-        return rating;
-    }
-
-    public List<String> getCategories() {
-        return new ArrayList<>(categories);
-    }
-}
+package Shop.products;
+
+import Shop.products.index.RatingColumns;
+import Shop.products.text.SearchText;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Product {
+    private final String id;
+    private final String name;
+    private final double price;
+    private final String manufacturer;
+    private final String[] categories;
+    // Нормализованные поля для поиска: считаются один раз, а не на каждый запрос.
+    // У товара, собранного из строки снапшота, - при первом обращении: каталог сам ищет по индексам снапшота
+    private SearchText searchText;
+    // Оценки хранятся не в товаре, а в колонках каталога под его порядковым номером: все версии товара
+    // пишут в одну строку, а на товар остается ссылка и номер вместо пары счетчиков.
+    // У товара, еще не попавшего в каталог, оценок нет
+    private final RatingColumns ratings;
+    private final int ordinal;
+
+    // Избегание магических чисел - вводим константы. Диапазон общий для консоли, HTTP API и журнала
+    public static final double MIN_RATING = 1.0;
+    public static final double MAX_RATING = 5.0;
+
+    public Product(String id, String name, double price, String manufacturer, List<String> categories) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        // Производителей и категорий немного на весь каталог: одна копия строки на значение, а не на товар.
+        // Названия почти все уникальны - их интернирование памяти не сэкономит
+        this.manufacturer = manufacturer.intern();
+        this.categories = internAll(categories);
+        this.searchText = SearchText.of(name, this.manufacturer, Arrays.asList(this.categories));
+        this.ratings = null;
+        this.ordinal = -1;
+    }
+
+    // Товар в том виде, в каком его публикует каталог: поля из source, оценки - в строке ordinal колонок ratings
+    Product(Product source, RatingColumns ratings, int ordinal) {
+        this.id = source.id;
+        this.name = source.name;
+        this.price = source.price;
+        this.manufacturer = source.manufacturer;
+        this.categories = source.categories;
+        this.searchText = source.searchText;
+        this.ratings = ratings;
+        this.ordinal = ordinal;
+    }
+
+    // Строка снапшота: производитель и категории уже взяты из словарей снапшота, по одной копии на значение
+    Product(String id, String name, double price, String manufacturer, String[] categories, RatingColumns ratings, int ordinal) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.manufacturer = manufacturer;
+        this.categories = categories;
+        this.ratings = ratings;
+        this.ordinal = ordinal;
+    }
+
+    private static String[] internAll(List<String> values) {
+        String[] interned = new String[values.size()];
+        for (int i = 0; i < interned.length; i++) {
+            interned[i] = values.get(i).intern();
+        }
+        return interned;
+    }
+
+    // Принцип открытости/закрытости
+    // Открыт для расширения (можно наследовать и изменять логику расчета рейтинга), но закрыт для модификации
+    public void updateRating(Double newRating) {
+        validateRating(newRating);
+        ratedColumns().add(ordinal, newRating);
+    }
+
+    // Пользователь изменил свою оценку - количество оценок не меняется
+    public void changeRating(double oldRating, double newRating) {
+        validateRating(newRating);
+        ratedColumns().change(ordinal, oldRating, newRating);
+    }
+
+    private RatingColumns ratedColumns() {
+        if (ratings == null) {
+            throw new IllegalStateException("Оценить можно только товар из каталога: " + id);
+        }
+        return ratings;
+    }
+
+    public static void validateRating(double rating) {
+        if (rating < MIN_RATING || rating > MAX_RATING) {
+            throw new IllegalArgumentException("Рейтинг должен быть от " + MIN_RATING + " до " + MAX_RATING);
+        }
+    }
+
+    // Среднее по всем оценкам, 0 - если оценок нет
+    public double getAverageRating() {
+        long count = getRatingCount();
+        return count == 0 ? 0 : ratings.sum(ordinal) / count;
+    }
+
+    // Байесовское среднее: оценка сглаживается к priorMean с весом priorWeight "виртуальных" оценок,
+    // чтобы товар с одной пятеркой не обгонял товар с сотней оценок 4.8
+    public double getBayesianRating(double priorMean, long priorWeight) {
+        long count = getRatingCount();
+        double sum = count == 0 ? 0 : ratings.sum(ordinal);
+        return (priorMean * priorWeight + sum) / (priorWeight + count);
+    }
+
+    public long getRatingCount() {
+        return ratings == null ? 0 : ratings.count(ordinal);
+    }
+
+    // Геттеры
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    // Цена в копейках - для точных итогов корзин и заказов; считается на лету, чтобы не хранить в каждом товаре
+    public long getPriceMinor() {
+        return Math.round(price * 100);
+    }
+
+    public String getManufacturer() {
+        return manufacturer;
+    }
+
+    // Средняя оценка или null, если товар еще не оценивали
+    public Double getRating() {
+        return getRatingCount() == 0 ? null : getAverageRating();
+    }
+
+    public List<String> getCategories() {
+        return new ArrayList<>(Arrays.asList(categories));
+    }
+
+    public SearchText getSearchText() {
+        // Гонка безопасна: SearchText неизменяем, в худшем случае его посчитают дважды
+        SearchText text = searchText;
+        if (text == null) {
+            text = SearchText.of(name, manufacturer, Arrays.asList(categories));
+            searchText = text;
+        }
+        return text;
+    }
+
+    // Товар определяется ID: прежняя и обновленная версии одного товара в корзине или оценках - одна позиция
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Product other && id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+}
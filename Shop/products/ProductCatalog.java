@@ -1,48 +1,547 @@
-package Shop.products;
-
-import Shop.User;
-import Shop.products.filters.ProductFilter;
-
-import java.util.*;
-
-public class ProductCatalog {
-    private final List<Product> products;
-    // Для быстрого поиска по ID
-    private final Map<String, Product> productIdCache;
-
-    public ProductCatalog() {
-        this.products = new ArrayList<>();
-        this.productIdCache = new HashMap<>();
-    }
-
-    public void addProduct(Product product) {
-        products.add(product);
-        productIdCache.put(product.getId(), product);
-    }
-
-    // Принцип Лисков и Принцип инверсии зависимостей
-    // Метод работает с базовым ProductFilter, но может принимать любые его подтипы
-    // Зависим от абстракции ProductFilter, а не от конкретной реализации
-    public List<Product> filterProducts(ProductFilter filter) {
-        return products.stream()
-                .filter(filter::matches)
-                .toList();
-    }
-
-    // Возвращаем неизменяемую копию
-    public List<Product> getAllProducts() {
-        return List.copyOf(products);
-    }
-
-    // Поиск по ID через кэш
-    public Product getProductById(String productId) {
-        return productIdCache.get(productId);
-    }
-
-    // Отдаем список рекомендованных (оцененных) товаров (отсортированы по оценке)
-    public List<Product> getRecommendedProducts(User user) {
-        return user.getRatedProducts().stream()
-                .sorted(Comparator.comparingDouble(Product::getRating).reversed())
-                .toList();
-    }
+package Shop.products;
+
+import Shop.User;
+import Shop.metrics.Metrics;
+import Shop.products.cache.CacheStats;
+import Shop.products.cache.QueryCache;
+import Shop.products.filters.*;
+import Shop.products.index.IntList;
+import Shop.products.index.RankingIndex;
+import Shop.products.index.RatingColumns;
+import Shop.products.recommendations.RecommendationEngine;
+import Shop.products.snapshot.CatalogSnapshot;
+import Shop.products.text.TextNormalizer;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class ProductCatalog implements AutoCloseable {
+    private static final int RECOMMENDATIONS_LIMIT = 10;
+    // Байесовское сглаживание для рейтинга "лучшие по оценке"
+    private static final double RATING_PRIOR_MEAN = 3.0;
+    private static final long RATING_PRIOR_WEIGHT = 5;
+    // Кэши результатов поиска: число запросов и суммарное число товаров во всех результатах
+    private static final int SEARCH_CACHE_MAX_ENTRIES = 10_000;
+    private static final long SEARCH_CACHE_MAX_WEIGHT = 5_000_000;
+    // Постраничный поиск идет через индекс, если тот отсекает хотя бы 15/16 оставшегося каталога
+    private static final int PAGE_INDEX_SELECTIVITY = 16;
+    // Размер страницы, которыми ленивый поток подгружает товары
+    private static final int STREAM_PAGE_SIZE = 256;
+    // Пакет больше этого снимает кэш поиска целиком, меньший - только запросы, под которые попали измененные товары
+    private static final int SELECTIVE_INVALIDATION_LIMIT = 64;
+
+    // Текущая версия каталога - товары и индексы. Читатели берут ее одним volatile-чтением,
+    // писатель собирает следующую версию сбоку и подменяет ссылку
+    private volatile CatalogVersion current;
+    // Порядковый номер по ID - общий для всех версий: номер закрепляется за ID навсегда и служит ключом
+    // для рейтингов и рекомендаций. Номер, которого еще нет в версии, для нее не существует.
+    // Товарам из снапшота номер - строка файла, их здесь нет: ID ищется по хэш-таблице снапшота
+    private final Map<String, Integer> productOrdinals;
+    // Оценки по тем же номерам - общие для всех версий, поэтому публикация их не копирует
+    private final RatingColumns ratings;
+    // Версии собираются строго по одной; чтения их не ждут
+    private final ReentrantLock writeLock;
+    // Фоновая сборка версий для applyAsync
+    private final ExecutorService loader;
+    private final RecommendationEngine recommendationEngine;
+    // Поддерживаемые top-K: лучшие по оценке, самые дешевые, хиты продаж
+    private final RankingIndex ratingRanking;
+    private final RankingIndex priceRanking;
+    private final RankingIndex salesRanking;
+    // Повторяющиеся запросы отдаются из кэша; небольшое изменение каталога снимает только результаты фильтров,
+    // под которые попали измененные товары
+    private final QueryCache<ProductFilter, List<Product>> filterCache;
+    private final QueryCache<ProductFilter, SearchResult> searchCache;
+    // Изменять каталог может только тот, кто первым получил writer(): у магазина изменения идут через журнал
+    private CatalogWriter writer;
+
+    public ProductCatalog() {
+        this.productOrdinals = new ConcurrentHashMap<>();
+        this.ratings = new RatingColumns();
+        this.current = CatalogVersion.empty(ratings);
+        this.writeLock = new ReentrantLock();
+        this.loader = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "catalog-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.recommendationEngine = new RecommendationEngine();
+        this.ratingRanking = new RankingIndex(true);
+        this.priceRanking = new RankingIndex(false);
+        this.salesRanking = new RankingIndex(true);
+        this.filterCache = new QueryCache<>(SEARCH_CACHE_MAX_ENTRIES, SEARCH_CACHE_MAX_WEIGHT, List::size);
+        this.searchCache = new QueryCache<>(SEARCH_CACHE_MAX_ENTRIES, SEARCH_CACHE_MAX_WEIGHT, SearchResult::weight);
+    }
+
+    // Добавляет товар или заменяет товар с тем же ID. Каждый вызов публикует новую версию и копирует колонки
+    // каталога, поэтому массовые изменения выгоднее собирать в один CatalogUpdate
+    void addProduct(Product product) {
+        publish(List.of(product), List.of());
+    }
+
+    // false - товара с таким ID в каталоге нет
+    boolean updateProduct(Product product) {
+        writeLock.lock();
+        try {
+            if (getProductById(product.getId()) == null) {
+                return false;
+            }
+            publish(List.of(product), List.of());
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    boolean removeProduct(String productId) {
+        writeLock.lock();
+        try {
+            if (getProductById(productId) == null) {
+                return false;
+            }
+            publish(List.of(), List.of(productId));
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Применяет пакет одной новой версией и возвращает ее номер
+    long apply(CatalogUpdate update) {
+        return publish(update.puts(), update.removals());
+    }
+
+    // То же в фоновом потоке: поиски все это время работают с текущей версией
+    CompletableFuture<Long> applyAsync(CatalogUpdate update) {
+        List<Product> puts = update.puts();
+        List<String> removals = update.removals();
+        return CompletableFuture.supplyAsync(() -> publish(puts, removals), loader);
+    }
+
+    // Снапшот становится нижним слоем каталога: товары, индексы и фасеты читаются прямо из отображенного файла,
+    // в куче копятся только последующие изменения. Загружается только в пустой каталог
+    void loadSnapshot(CatalogSnapshot snapshot) {
+        writeLock.lock();
+        try {
+            CatalogVersion previous = current;
+            if (previous.size() > 0) {
+                throw new IllegalStateException("Снапшот загружается только в пустой каталог");
+            }
+            current = CatalogVersion.fromSnapshot(previous.number + 1, snapshot, ratings);
+            filterCache.invalidateAll();
+            searchCache.invalidateAll();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Единственный способ изменить каталог извне пакета. Выдается один раз - владельцу каталога
+    public synchronized CatalogWriter writer() {
+        if (writer != null) {
+            throw new IllegalStateException("Каталог уже изменяется через другого владельца");
+        }
+        writer = new CatalogWriter(this);
+        return writer;
+    }
+
+    public long getVersion() {
+        return current.number;
+    }
+
+    public int getProductCount() {
+        return current.liveCount;
+    }
+
+    // Собирает следующую версию из текущей и атомарно публикует ее. Новым ID номера выдаются заранее,
+    // но пока версия не опубликована, они указывают за ее пределы и читателям не видны
+    private long publish(List<Product> puts, Collection<String> removals) {
+        writeLock.lock();
+        try {
+            CatalogVersion previous = current;
+            int[] putOrdinals = new int[puts.size()];
+            IntList removed = new IntList();
+            try {
+                BitSet touched = new BitSet();
+                int nextOrdinal = previous.size();
+                for (int i = 0; i < puts.size(); i++) {
+                    String productId = puts.get(i).getId();
+                    int ordinal = ordinalOf(previous, productId);
+                    if (ordinal < 0) {
+                        ordinal = nextOrdinal++;
+                        productOrdinals.put(productId, ordinal);
+                    }
+                    if (touched.get(ordinal)) {
+                        throw new IllegalArgumentException("Товар " + productId + " встречается в пакете дважды");
+                    }
+                    touched.set(ordinal);
+                    putOrdinals[i] = ordinal;
+                }
+                for (String productId : removals) {
+                    int ordinal = ordinalOf(previous, productId);
+                    if (ordinal >= 0 && previous.isLive(ordinal) && !touched.get(ordinal)) {
+                        touched.set(ordinal);
+                        removed.add(ordinal);
+                    }
+                }
+                current = previous.next(puts, putOrdinals, removed.toArray());
+            } catch (RuntimeException | Error e) {
+                // Версия не собралась - забираем выданные номера обратно
+                productOrdinals.values().removeIf(ordinal -> ordinal >= previous.size());
+                throw e;
+            }
+            afterPublish(previous, current, puts, putOrdinals, removed.toArray());
+            return current.number;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Рейтинги и кэш живут поверх версий - приводим их в соответствие с опубликованной
+    private void afterPublish(CatalogVersion previous, CatalogVersion next, List<Product> puts, int[] putOrdinals, int[] removed) {
+        boolean selective = puts.size() + removed.length <= SELECTIVE_INVALIDATION_LIMIT;
+        List<Product> changed = new ArrayList<>();
+        for (int ordinal : removed) {
+            ratingRanking.remove(ordinal);
+            priceRanking.remove(ordinal);
+            salesRanking.remove(ordinal);
+            if (selective) {
+                changed.add(previous.product(ordinal));
+            }
+        }
+        for (int ordinal : putOrdinals) {
+            int[] categoryIds = next.categoryIds(ordinal);
+            priceRanking.set(ordinal, categoryIds, next.price(ordinal));
+            boolean existed = previous.isLive(ordinal);
+            if (existed) {
+                ratingRanking.recategorize(ordinal, categoryIds);
+                salesRanking.recategorize(ordinal, categoryIds);
+            }
+            if (selective) {
+                if (existed) {
+                    changed.add(previous.product(ordinal));
+                }
+                changed.add(next.product(ordinal));
+            }
+        }
+        if (selective) {
+            Predicate<ProductFilter> affected = filter -> changed.stream().anyMatch(filter::matches);
+            filterCache.invalidateIf(affected);
+            searchCache.invalidateIf(affected);
+        } else {
+            filterCache.invalidateAll();
+            searchCache.invalidateAll();
+        }
+    }
+
+    // Принцип Лисков и Принцип инверсии зависимостей
+    // Метод работает с базовым ProductFilter, но может принимать любые его подтипы
+    // Зависим от абстракции ProductFilter, а не от конкретной реализации
+    public List<Product> filterProducts(ProductFilter filter) {
+        long start = Metrics.start();
+        try {
+            boolean cacheable = isCacheable(filter);
+            List<Product> cached = cacheable ? filterCache.get(filter) : null;
+            if (cached != null) {
+                return cached;
+            }
+            // Версия кэша читается раньше версии каталога: результат по версии, которую успели заменить,
+            // в кэш уже не попадет
+            long version = filterCache.version();
+            CatalogVersion catalog = current;
+            List<Product> result;
+            // Результат поиска по цене сразу упорядочен по возрастанию цены
+            if (filter instanceof PriceRangeFilter priceFilter) {
+                result = toProducts(catalog, catalog.priceRange(priceFilter.getMinPrice(), priceFilter.getMaxPrice()));
+            } else {
+                // Для фильтров, за которыми стоят индексы, обходимся без полного перебора
+                result = toProducts(catalog, catalog.evaluate(filter));
+            }
+            if (cacheable) {
+                filterCache.put(filter, result, version);
+            }
+            return result;
+        } finally {
+            Metrics.search(filter).stop(start);
+        }
+    }
+
+    // Поиск с фасетными счетчиками по категориям и производителям
+    public SearchResult searchWithFacets(ProductFilter filter) {
+        long start = Metrics.start();
+        try {
+            boolean cacheable = isCacheable(filter);
+            SearchResult cached = cacheable ? searchCache.get(filter) : null;
+            if (cached != null) {
+                return cached;
+            }
+            long version = searchCache.version();
+            CatalogVersion catalog = current;
+            int[] ordinals;
+            if (filter instanceof PriceRangeFilter priceFilter) {
+                ordinals = catalog.priceRange(priceFilter.getMinPrice(), priceFilter.getMaxPrice());
+            } else {
+                ordinals = catalog.evaluate(filter);
+            }
+            int[] sorted = ordinals.clone();
+            Arrays.sort(sorted);
+            SearchResult result = new SearchResult(toProducts(catalog, ordinals),
+                    catalog.categoryFacets(sorted), catalog.manufacturerFacets(sorted));
+            if (cacheable) {
+                searchCache.put(filter, result, version);
+            }
+            return result;
+        } finally {
+            Metrics.search(filter).stop(start);
+        }
+    }
+
+    // Одна страница поиска в заданном порядке. filter == null - весь каталог, token == null - первая страница.
+    // Фильтры проверяются только до заполнения страницы, токен продолжения стоек к добавлению товаров
+    public Page search(ProductFilter filter, SortOrder order, int pageSize, String token) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        int filterHash = filter == null ? 0 : filter.hashCode();
+        ContinuationToken cursor = token == null ? null : ContinuationToken.decode(token, order, filterHash);
+        long start = Metrics.start();
+        try {
+            CatalogVersion catalog = current;
+            // Берем на один товар больше страницы, чтобы знать, есть ли продолжение
+            int[] ordinals = new int[pageSize + 1];
+            // Ценовая часть фильтра сужает обход индекса цен до диапазона
+            double[] bounds = priceBounds(filter);
+            int found = switch (order) {
+                case CATALOG -> catalog.pageByOrdinal(filter, cursor == null ? 0 : cursor.ordinal() + 1, ordinals,
+                        PAGE_INDEX_SELECTIVITY);
+                case PRICE_ASC -> catalog.pageByPrice(filter, bounds[0], bounds[1], cursor, true, ordinals);
+                case PRICE_DESC -> catalog.pageByPrice(filter, bounds[0], bounds[1], cursor, false, ordinals);
+            };
+            int size = Math.min(found, pageSize);
+            List<Product> items = toProducts(catalog, Arrays.copyOf(ordinals, size));
+            String nextToken = null;
+            if (found > pageSize) {
+                int last = ordinals[size - 1];
+                nextToken = new ContinuationToken(order, catalog.price(last), last, filterHash).encode();
+            }
+            return new Page(items, nextToken);
+        } finally {
+            if (filter != null) {
+                Metrics.search(filter).stop(start);
+            }
+        }
+    }
+
+    // Ленивый поток результатов: товары подгружаются страницами по мере потребления,
+    // так что findFirst или limit не проверяют фильтр на всем каталоге
+    public Stream<Product> stream(ProductFilter filter, SortOrder order) {
+        return StreamSupport.stream(new PageSpliterator(filter, order), false);
+    }
+
+    private class PageSpliterator extends Spliterators.AbstractSpliterator<Product> {
+        private final ProductFilter filter;
+        private final SortOrder order;
+        private Iterator<Product> current = Collections.emptyIterator();
+        private String token;
+        private boolean exhausted;
+
+        PageSpliterator(ProductFilter filter, SortOrder order) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.filter = filter;
+            this.order = order;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Product> action) {
+            // Каждая страница берет текущую версию каталога: курсор указывает на ключ, а не на позицию,
+            // поэтому смена версии между страницами выдачу не ломает
+            while (!current.hasNext()) {
+                if (exhausted) {
+                    return false;
+                }
+                Page page = search(filter, order, STREAM_PAGE_SIZE, token);
+                current = page.getItems().iterator();
+                token = page.getNextToken();
+                exhausted = !page.hasNext();
+            }
+            action.accept(current.next());
+            return true;
+        }
+    }
+
+    // Диапазон цен, вне которого фильтр заведомо ничего не пропустит
+    private static double[] priceBounds(ProductFilter filter) {
+        double[] bounds = {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        if (filter instanceof PriceRangeFilter priceFilter) {
+            bounds[0] = priceFilter.getMinPrice();
+            bounds[1] = priceFilter.getMaxPrice();
+        } else if (filter instanceof AndFilter andFilter) {
+            for (ProductFilter child : andFilter.getFilters()) {
+                if (child instanceof PriceRangeFilter priceFilter) {
+                    bounds[0] = Math.max(bounds[0], priceFilter.getMinPrice());
+                    bounds[1] = Math.min(bounds[1], priceFilter.getMaxPrice());
+                }
+            }
+        }
+        return bounds;
+    }
+
+    // Встроенные фильтры зависят только от полей товара, поэтому их результаты меняют лишь изменения каталога.
+    // Произвольный фильтр может смотреть, например, на рейтинг - такие не кэшируем
+    private static boolean isCacheable(ProductFilter filter) {
+        if (filter instanceof AndFilter andFilter) {
+            return andFilter.getFilters().stream().allMatch(ProductCatalog::isCacheable);
+        }
+        if (filter instanceof OrFilter orFilter) {
+            return orFilter.getFilters().stream().allMatch(ProductCatalog::isCacheable);
+        }
+        if (filter instanceof NotFilter notFilter) {
+            return isCacheable(notFilter.getFilter());
+        }
+        return filter instanceof KeywordFilter || filter instanceof PriceRangeFilter
+                || filter instanceof ManufacturerFilter || filter instanceof CategoryFilter;
+    }
+
+    public CacheStats getFilterCacheStats() {
+        return filterCache.stats();
+    }
+
+    public CacheStats getSearchCacheStats() {
+        return searchCache.stats();
+    }
+
+    // Рейтинги и рекомендации могут ненадолго ссылаться на только что удаленный товар - такие пропускаем
+    private static List<Product> toProducts(CatalogVersion catalog, int[] ordinals) {
+        List<Product> result = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            Product product = catalog.product(ordinal);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // Возвращаем неизменяемую копию
+    public List<Product> getAllProducts() {
+        CatalogVersion catalog = current;
+        List<Product> result = new ArrayList<>(catalog.liveCount);
+        for (int ordinal = 0; ordinal < catalog.size(); ordinal++) {
+            Product product = catalog.product(ordinal);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // Поиск по ID: номер из общей таблицы или снапшота, товар - из текущей версии
+    public Product getProductById(String productId) {
+        CatalogVersion catalog = current;
+        int ordinal = ordinalOf(catalog, productId);
+        return ordinal < 0 ? null : catalog.product(ordinal);
+    }
+
+    // -1 - номер за ID еще не закреплен
+    private int ordinalOf(CatalogVersion catalog, String productId) {
+        Integer ordinal = productOrdinals.get(productId);
+        return ordinal != null ? ordinal : catalog.baseRow(productId);
+    }
+
+    // Оценка товара изменилась - переставляем его в рейтинге
+    public void onRatingChanged(Product product) {
+        Integer ordinal = ordinalOf(product);
+        if (ordinal != null) {
+            ratingRanking.set(ordinal, categoryIds(ordinal), () -> product.getBayesianRating(RATING_PRIOR_MEAN, RATING_PRIOR_WEIGHT));
+        }
+    }
+
+    public void recordSale(Product product, int quantity) {
+        Integer ordinal = ordinalOf(product);
+        if (ordinal != null) {
+            salesRanking.increment(ordinal, categoryIds(ordinal), quantity);
+        }
+    }
+
+    // category == null - по всему каталогу
+    public List<Product> getTopRated(String category, int limit) {
+        return top(ratingRanking, category, limit);
+    }
+
+    // Рейтинг цен поддерживается только для изменений в куче, строки снапшота уже упорядочены по цене в файле -
+    // сливаем оба списка
+    public List<Product> getCheapest(String category, int limit) {
+        CatalogVersion catalog = current;
+        int categoryId = category == null ? -1 : catalog.categoryId(TextNormalizer.fold(category));
+        if (category != null && categoryId < 0) {
+            return List.of();
+        }
+        int[] heap = categoryId < 0 ? priceRanking.top(limit) : priceRanking.top(categoryId, limit);
+        int[] base = catalog.cheapestInBase(categoryId, limit);
+        if (base.length == 0) {
+            return toProducts(catalog, heap);
+        }
+        int[] merged = new int[Math.min(limit, heap.length + base.length)];
+        for (int k = 0, i = 0, j = 0; k < merged.length; k++) {
+            merged[k] = j >= heap.length || (i < base.length && catalog.price(base[i]) <= catalog.price(heap[j]))
+                    ? base[i++] : heap[j++];
+        }
+        return toProducts(catalog, merged);
+    }
+
+    public List<Product> getBestsellers(String category, int limit) {
+        return top(salesRanking, category, limit);
+    }
+
+    private List<Product> top(RankingIndex ranking, String category, int limit) {
+        CatalogVersion catalog = current;
+        if (category == null) {
+            return toProducts(catalog, ranking.top(limit));
+        }
+        int categoryId = catalog.categoryId(TextNormalizer.fold(category));
+        return categoryId < 0 ? List.of() : toProducts(catalog, ranking.top(categoryId, limit));
+    }
+
+    // null - товара нет в текущей версии каталога
+    private Integer ordinalOf(Product product) {
+        CatalogVersion catalog = current;
+        int ordinal = ordinalOf(catalog, product.getId());
+        return ordinal < 0 || !catalog.isLive(ordinal) ? null : ordinal;
+    }
+
+    private int[] categoryIds(int ordinal) {
+        return current.categoryIds(ordinal);
+    }
+
+    // Пользователь оценил или купил товар - учитываем в коллаборативной фильтрации
+    public void recordInteraction(User user, Product product) {
+        Integer ordinal = ordinalOf(product);
+        if (ordinal != null) {
+            recommendationEngine.recordInteraction(user.getUserId(), ordinal);
+        }
+    }
+
+    // Рекомендации на основе товаров, которые оценили и купили похожие пользователи
+    public List<Product> getRecommendedProducts(User user) {
+        int[] ordinals = recommendationEngine.recommend(user.getUserId(), RECOMMENDATIONS_LIMIT);
+        return toProducts(current, ordinals);
+    }
+
+    public RecommendationEngine getRecommendationEngine() {
+        return recommendationEngine;
+    }
+
+    // Уже принятые applyAsync доработают, новые будут отклонены
+    @Override
+    public void close() {
+        loader.shutdown();
+        recommendationEngine.close();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package Shop.products;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Результат поиска вместе с фасетами: сколько найденных товаров в каждой категории и у каждого производителя
+public class SearchResult {
+    private final List<Product> products;
+    private final Map<String, Integer> categoryCounts;
+    private final Map<String, Integer> manufacturerCounts;
+
+    public SearchResult(List<Product> products, Map<String, Integer> categoryCounts, Map<String, Integer> manufacturerCounts) {
+        this.products = products;
+        // Результат может лежать в кэше и отдаваться многим покупателям - наружу только неизменяемые представления
+        this.categoryCounts = Collections.unmodifiableMap(categoryCounts);
+        this.manufacturerCounts = Collections.unmodifiableMap(manufacturerCounts);
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryCounts;
+    }
+
+    public Map<String, Integer> getManufacturerCounts() {
+        return manufacturerCounts;
+    }
+
+    // Вес для кэша результатов
+    public int weight() {
+        return products.size() + categoryCounts.size() + manufacturerCounts.size();
+    }
+}
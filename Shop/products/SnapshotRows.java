@@ -0,0 +1,151 @@
+package Shop.products;
+
+import Shop.products.index.IndexedRows;
+import Shop.products.index.Postings;
+import Shop.products.index.RatingColumns;
+import Shop.products.index.StringDictionary;
+import Shop.products.snapshot.CatalogSnapshot;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Нижний слой версии каталога - строки отображенного снапшота. Товар, который изменили или удалили после загрузки,
+// затенен: его строка в снапшоте больше не живая, а актуальная версия (если есть) лежит в слое изменений в куче.
+// Номер строки снапшота - порядковый номер товара в каталоге
+final class SnapshotRows implements IndexedRows {
+    private final CatalogSnapshot snapshot;
+    // Общий с предыдущей версией, пока изменения не затрагивают строки снапшота; сам не меняется
+    private final BitSet shadowed;
+    private final RatingColumns ratings;
+
+    SnapshotRows(CatalogSnapshot snapshot, BitSet shadowed, RatingColumns ratings) {
+        this.snapshot = snapshot;
+        this.shadowed = shadowed;
+        this.ratings = ratings;
+    }
+
+    CatalogSnapshot snapshot() {
+        return snapshot;
+    }
+
+    BitSet shadowed() {
+        return shadowed;
+    }
+
+    @Override
+    public int size() {
+        return snapshot.getProductCount();
+    }
+
+    @Override
+    public boolean isLive(int row) {
+        return !shadowed.get(row);
+    }
+
+    // Товар собирается в куче на каждый запрос: снапшот отдает наружу только то, что у него спросили
+    @Override
+    public Product product(int row) {
+        if (shadowed.get(row)) {
+            return null;
+        }
+        return new Product(snapshot.id(row), snapshot.name(row), snapshot.price(row), snapshot.manufacturer(row),
+                snapshot.categoryNames(row), ratings, row);
+    }
+
+    @Override
+    public double price(int row) {
+        return snapshot.price(row);
+    }
+
+    @Override
+    public boolean manufacturerContains(int row, String substring) {
+        return snapshot.getManufacturers().decode(snapshot.foldedManufacturerId(row)).contains(substring);
+    }
+
+    @Override
+    public boolean hasCategory(int row, String category) {
+        int categoryId = snapshot.getCategories().lookup(category);
+        return categoryId >= 0 && snapshot.hasCategory(row, categoryId);
+    }
+
+    @Override
+    public int[] keywordSearch(String[] terms) {
+        return live(snapshot.keywordSearch(terms));
+    }
+
+    @Override
+    public int keywordEstimate(String[] terms) {
+        return snapshot.keywordEstimate(terms);
+    }
+
+    @Override
+    public int[] manufacturerSearch(String substring) {
+        StringDictionary manufacturers = snapshot.getManufacturers();
+        int[] result = new int[0];
+        for (int id = 0; id < manufacturers.size(); id++) {
+            if (manufacturers.decode(id).contains(substring)) {
+                int[] rows = snapshot.manufacturerPostings(id);
+                result = result.length == 0 ? rows : Postings.union(result, rows);
+            }
+        }
+        return live(result);
+    }
+
+    @Override
+    public int manufacturerCount(String substring) {
+        StringDictionary manufacturers = snapshot.getManufacturers();
+        int count = 0;
+        for (int id = 0; id < manufacturers.size(); id++) {
+            if (manufacturers.decode(id).contains(substring)) {
+                count += snapshot.manufacturerPostingsCount(id);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int[] categorySearch(String category) {
+        int id = snapshot.getCategories().lookup(category);
+        return id < 0 ? new int[0] : live(snapshot.categoryPostings(id));
+    }
+
+    @Override
+    public int categoryCount(String category) {
+        int id = snapshot.getCategories().lookup(category);
+        return id < 0 ? 0 : snapshot.categoryPostingsCount(id);
+    }
+
+    @Override
+    public int[] priceRange(double minPrice, double maxPrice) {
+        int from = snapshot.lowerBound(minPrice);
+        int to = snapshot.upperBound(maxPrice);
+        int[] rows = new int[Math.max(0, to - from)];
+        int size = 0;
+        for (int position = from; position < to; position++) {
+            int row = snapshot.priceOrderAt(position);
+            if (!shadowed.get(row)) {
+                rows[size++] = row;
+            }
+        }
+        return size == rows.length ? rows : Arrays.copyOf(rows, size);
+    }
+
+    @Override
+    public int priceCount(double minPrice, double maxPrice) {
+        return Math.max(0, snapshot.upperBound(maxPrice) - snapshot.lowerBound(minPrice));
+    }
+
+    // Индексы снапшота неизменны и знают про все его строки - затененные отбрасываем на выходе
+    private int[] live(int[] rows) {
+        if (shadowed.isEmpty()) {
+            return rows;
+        }
+        int size = 0;
+        for (int row : rows) {
+            if (!shadowed.get(row)) {
+                rows[size++] = row;
+            }
+        }
+        return size == rows.length ? rows : Arrays.copyOf(rows, size);
+    }
+}
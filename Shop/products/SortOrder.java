@@ -0,0 +1,7 @@
+package Shop.products;
+
+// Порядок выдачи постраничного поиска. Порядок полный: при равной цене товары идут по порядку добавления
+// (в PRICE_DESC - в обратном), поэтому курсор однозначно указывает место в выдаче
+public enum SortOrder {
+    CATALOG, PRICE_ASC, PRICE_DESC
+}
@@ -0,0 +1,10 @@
+package Shop.products.cache;
+
+// Счетчики кэша с момента создания
+public record CacheStats(long hits, long misses, long evictions, long invalidations, int size, long weight) {
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,311 @@
+package Shop.products.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+// Кэш результатов запросов, ограниченный числом записей и суммарным весом (например, числом товаров в результатах).
+// Вытеснение - W-TinyLFU: новые записи попадают в маленькое LRU-окно, вытесненные из окна проходят в основную
+// область (SLRU: probation + protected), только если по частотному скетчу они популярнее кандидата на вытеснение.
+// Так разовый запрос не выдавливает постоянно повторяющиеся.
+// Чтение - без блокировок (ConcurrentHashMap); порядок LRU обновляется под tryLock и при конкуренции пропускается.
+// Согласованность - через версию: put с версией, снятой до вычисления, отбрасывается, если кэш успели инвалидировать
+public class QueryCache<K, V> {
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+    private static final byte REMOVED = 3;
+
+    private final Map<K, Node<K, V>> data;
+    private final ToLongFunction<V> weigher;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final FrequencySketch sketch;
+    private final ReentrantLock policyLock;
+    private final AccessList<K, V> window;
+    private final AccessList<K, V> probation;
+    private final AccessList<K, V> protectedList;
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+    private volatile long version;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder invalidations;
+
+    public QueryCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным");
+        }
+        this.data = new ConcurrentHashMap<>();
+        this.weigher = weigher;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.windowMaxWeight = Math.max(1, (long) (maxWeight * WINDOW_RATIO));
+        this.protectedMaxWeight = (long) ((maxWeight - windowMaxWeight) * PROTECTED_RATIO);
+        this.sketch = new FrequencySketch(maxEntries);
+        this.policyLock = new ReentrantLock();
+        this.window = new AccessList<>();
+        this.probation = new AccessList<>();
+        this.protectedList = new AccessList<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+    }
+
+    // null - промах
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        if (policyLock.tryLock()) {
+            try {
+                sketch.increment(key);
+                if (node != null) {
+                    onHit(node);
+                }
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return node == null ? null : node.value;
+    }
+
+    // Версию нужно снять до вычисления значения и передать в put
+    public long version() {
+        return version;
+    }
+
+    public void put(K key, V value, long expectedVersion) {
+        long weight = Math.max(1, weigher.applyAsLong(value));
+        if (weight > maxWeight) {
+            return;
+        }
+        policyLock.lock();
+        try {
+            if (expectedVersion != version) {
+                return;
+            }
+            Node<K, V> existing = data.get(key);
+            if (existing != null) {
+                unlink(existing);
+                data.remove(key, existing);
+            }
+            Node<K, V> node = new Node<>(key, value, weight);
+            data.put(key, node);
+            node.queue = WINDOW;
+            window.addLast(node);
+            windowWeight += weight;
+            totalWeight += weight;
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Удаляет записи, ключи которых подходят под условие (например, фильтры, под которые попадает новый товар)
+    public void invalidateIf(Predicate<? super K> stale) {
+        policyLock.lock();
+        try {
+            version++;
+            List<Node<K, V>> removed = new ArrayList<>();
+            for (Node<K, V> node : data.values()) {
+                if (stale.test(node.key)) {
+                    removed.add(node);
+                }
+            }
+            for (Node<K, V> node : removed) {
+                unlink(node);
+                data.remove(node.key, node);
+            }
+            invalidations.add(removed.size());
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        policyLock.lock();
+        try {
+            version++;
+            invalidations.add(data.size());
+            for (Node<K, V> node : data.values()) {
+                node.queue = REMOVED;
+            }
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedList.clear();
+            windowWeight = 0;
+            protectedWeight = 0;
+            totalWeight = 0;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public CacheStats stats() {
+        long weight;
+        policyLock.lock();
+        try {
+            weight = totalWeight;
+        } finally {
+            policyLock.unlock();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), data.size(), weight);
+    }
+
+    private void onHit(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToEnd(node);
+            case PROTECTED -> protectedList.moveToEnd(node);
+            case PROBATION -> {
+                // Повторное обращение - запись заслужила защищенную область
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedList.addLast(node);
+                protectedWeight += node.weight;
+                while (protectedWeight > protectedMaxWeight && protectedList.first() != node) {
+                    Node<K, V> demoted = protectedList.first();
+                    protectedList.remove(demoted);
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            default -> {
+                // Запись уже вытеснена - порядок обновлять не нужно
+            }
+        }
+    }
+
+    private void evict() {
+        // Переполненное окно отдает самые старые записи в probation - там они соревнуются за место
+        while (windowWeight > windowMaxWeight && !window.isEmpty()) {
+            Node<K, V> candidate = window.first();
+            window.remove(candidate);
+            windowWeight -= candidate.weight;
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+        }
+        while (totalWeight > maxWeight || data.size() > maxEntries) {
+            Node<K, V> victim = probation.first();
+            Node<K, V> candidate = probation.last();
+            if (victim == null) {
+                victim = protectedList.isEmpty() ? window.first() : protectedList.first();
+            } else if (victim == candidate || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                // Кандидат не популярнее старейшей записи probation - не допускаем его
+                victim = candidate;
+            }
+            unlink(victim);
+            data.remove(victim.key, victim);
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> {
+                protectedList.remove(node);
+                protectedWeight -= node.weight;
+            }
+            default -> {
+                return;
+            }
+        }
+        totalWeight -= node.weight;
+        node.queue = REMOVED;
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final long weight;
+        private byte queue;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    // Двусвязный список в порядке обращений: first - самая давняя запись
+    private static final class AccessList<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+
+        boolean isEmpty() {
+            return head == null;
+        }
+
+        Node<K, V> first() {
+            return head;
+        }
+
+        Node<K, V> last() {
+            return tail;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToEnd(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
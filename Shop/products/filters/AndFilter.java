@@ -0,0 +1,50 @@
+package Shop.products.filters;
+
+import Shop.products.Product;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class AndFilter implements ProductFilter {
+    private final List<ProductFilter> filters;
+    // Каноническая форма для equals/hashCode: вложенные AndFilter раскрыты, порядок и повторы не важны -
+    // (a И b) И c, c И (b И a) дают один и тот же ключ кэша и один и тот же набор товаров
+    private final Set<ProductFilter> operands;
+
+    public AndFilter(List<ProductFilter> filters) {
+        this.filters = List.copyOf(filters);
+        this.operands = new HashSet<>();
+        for (ProductFilter filter : this.filters) {
+            if (filter instanceof AndFilter nested) {
+                operands.addAll(nested.operands);
+            } else {
+                operands.add(filter);
+            }
+        }
+    }
+
+    @Override
+    public boolean matches(Product product) {
+        for (ProductFilter filter : filters) {
+            if (!filter.matches(product)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<ProductFilter> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AndFilter other && operands.equals(other.operands);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * "and".hashCode() + operands.hashCode();
+    }
+}
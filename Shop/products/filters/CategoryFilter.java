@@ -0,0 +1,31 @@
+package Shop.products.filters;
+
+import Shop.products.Product;
+import Shop.products.text.TextNormalizer;
+
+public class CategoryFilter implements ProductFilter {
+    private final String category;
+
+    public CategoryFilter(String category) {
+        this.category = TextNormalizer.fold(category);
+    }
+
+    @Override
+    public boolean matches(Product product) {
+        return product.getSearchText().hasCategory(category);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CategoryFilter other && category.equals(other.category);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * "category".hashCode() + category.hashCode();
+    }
+}
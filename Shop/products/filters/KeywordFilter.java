@@ -1,18 +1,43 @@
-package Shop.products.filters;
-
-import Shop.products.Product;
-
-public class KeywordFilter implements ProductFilter {
-    private final String keyword;
-
-    public KeywordFilter(String keyword) {
-        this.keyword = keyword.toLowerCase();
-    }
-
-    @Override
-    public boolean matches(Product product) {
-        return product.getName().toLowerCase().contains(keyword) ||
-                product.getManufacturer().toLowerCase().contains(keyword) ||
-                product.getCategories().stream().anyMatch(c -> c.toLowerCase().contains(keyword));
-    }
+package Shop.products.filters;
+
+import Shop.products.Product;
+import Shop.products.text.TextNormalizer;
+
+// Запрос разбирается на термы один раз здесь; товар подходит, если в его полях есть каждый терм.
+// Запрос без термов (пустой или из одних знаков препинания) подходит любому товару каталога
+public class KeywordFilter implements ProductFilter {
+    private final String keyword;
+    private final String[] terms;
+
+    public KeywordFilter(String keyword) {
+        this.terms = TextNormalizer.terms(keyword);
+        this.keyword = String.join(" ", terms);
+    }
+
+    @Override
+    public boolean matches(Product product) {
+        return product.getSearchText().containsAll(terms);
+    }
+
+    // Нормализованный запрос: термы через пробел
+    public String getKeyword() {
+        return keyword;
+    }
+
+    // Общий массив без копии - только для чтения
+    public String[] getTerms() {
+        return terms;
+    }
+
+    // Равенство по нормализованному значению - ключ кэша результатов поиска.
+    // hashCode не зависит от запуска JVM: он же входит в токен продолжения постраничного поиска
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof KeywordFilter other && keyword.equals(other.keyword);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * "keyword".hashCode() + keyword.hashCode();
+    }
 }
\ No newline at end of file
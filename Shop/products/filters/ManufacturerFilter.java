@@ -1,16 +1,31 @@
-package Shop.products.filters;
-
-import Shop.products.Product;
-
-public class ManufacturerFilter implements ProductFilter {
-    private final String manufacturer;
-
-    public ManufacturerFilter(String manufacturer) {
-        this.manufacturer = manufacturer.toLowerCase();
-    }
-
-    @Override
-    public boolean matches(Product product) {
-        return product.getManufacturer().toLowerCase().contains(manufacturer);
-    }
+package Shop.products.filters;
+
+import Shop.products.Product;
+import Shop.products.text.TextNormalizer;
+
+public class ManufacturerFilter implements ProductFilter {
+    private final String manufacturer;
+
+    public ManufacturerFilter(String manufacturer) {
+        this.manufacturer = TextNormalizer.fold(manufacturer);
+    }
+
+    @Override
+    public boolean matches(Product product) {
+        return product.getSearchText().manufacturer().contains(manufacturer);
+    }
+
+    public String getManufacturer() {
+        return manufacturer;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ManufacturerFilter other && manufacturer.equals(other.manufacturer);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * "manufacturer".hashCode() + manufacturer.hashCode();
+    }
 }
\ No newline at end of file
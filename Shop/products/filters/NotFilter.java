@@ -0,0 +1,30 @@
+package Shop.products.filters;
+
+import Shop.products.Product;
+
+public class NotFilter implements ProductFilter {
+    private final ProductFilter filter;
+
+    public NotFilter(ProductFilter filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean matches(Product product) {
+        return !filter.matches(product);
+    }
+
+    public ProductFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NotFilter other && filter.equals(other.filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return ~filter.hashCode();
+    }
+}
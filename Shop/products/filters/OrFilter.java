@@ -0,0 +1,50 @@
+package Shop.products.filters;
+
+import Shop.products.Product;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class OrFilter implements ProductFilter {
+    private final List<ProductFilter> filters;
+    // Каноническая форма для equals/hashCode: вложенные OrFilter раскрыты, порядок и повторы не важны -
+    // (a ИЛИ b) ИЛИ c, c ИЛИ (b ИЛИ a) дают один и тот же ключ кэша и один и тот же набор товаров
+    private final Set<ProductFilter> operands;
+
+    public OrFilter(List<ProductFilter> filters) {
+        this.filters = List.copyOf(filters);
+        this.operands = new HashSet<>();
+        for (ProductFilter filter : this.filters) {
+            if (filter instanceof OrFilter nested) {
+                operands.addAll(nested.operands);
+            } else {
+                operands.add(filter);
+            }
+        }
+    }
+
+    @Override
+    public boolean matches(Product product) {
+        for (ProductFilter filter : filters) {
+            if (filter.matches(product)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<ProductFilter> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof OrFilter other && operands.equals(other.operands);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * "or".hashCode() + operands.hashCode();
+    }
+}
@@ -1,18 +1,38 @@
-package Shop.products.filters;
-
-import Shop.products.Product;
-
-public class PriceRangeFilter implements ProductFilter {
-    private final double minPrice;
-    private final double maxPrice;
-
-    public PriceRangeFilter(double minPrice, double maxPrice) {
-        this.minPrice = minPrice;
-        this.maxPrice = maxPrice;
-    }
-
-    @Override
-    public boolean matches(Product product) {
-        return product.getPrice() >= minPrice && product.getPrice() <= maxPrice;
-    }
+package Shop.products.filters;
+
+import Shop.products.Product;
+
+public class PriceRangeFilter implements ProductFilter {
+    private final double minPrice;
+    private final double maxPrice;
+
+    public PriceRangeFilter(double minPrice, double maxPrice) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    @Override
+    public boolean matches(Product product) {
+        return product.getPrice() >= minPrice && product.getPrice() <= maxPrice;
+    }
+
+    public double getMinPrice() {
+        return minPrice;
+    }
+
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PriceRangeFilter other
+                && Double.compare(minPrice, other.minPrice) == 0
+                && Double.compare(maxPrice, other.maxPrice) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(minPrice) + Double.hashCode(maxPrice);
+    }
 }
\ No newline at end of file
@@ -1,7 +1,25 @@
-package Shop.products.filters;
-
-import Shop.products.Product;
-
-public interface ProductFilter {
-    boolean matches(Product product);
+package Shop.products.filters;
+
+import Shop.products.Product;
+
+import java.util.List;
+
+// Встроенные фильтры и их комбинации служат ключами кэша результатов поиска, поэтому определяют equals/hashCode
+// по условию. Произвольный фильтр (например, лямбда) не кэшируется и вычисляется при каждом поиске.
+// hashCode должен быть одинаков между запусками: он проверяется в токене продолжения постраничного поиска
+public interface ProductFilter {
+    boolean matches(Product product);
+
+    // Комбинаторы - позволяют собирать составные запросы, например: Tech И 5000..50000 И "ноутбук"
+    default ProductFilter and(ProductFilter other) {
+        return new AndFilter(List.of(this, other));
+    }
+
+    default ProductFilter or(ProductFilter other) {
+        return new OrFilter(List.of(this, other));
+    }
+
+    default ProductFilter negate() {
+        return new NotFilter(this);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package Shop.products.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Индекс по словарному столбцу: id значения (производителя, категории) -> сжатый bitmap товаров.
+// Различных значений на порядки меньше, чем товаров, поэтому подстроку ищем по словарю.
+// Те же bitmap'ы дают фасетные счетчики: мощность пересечения с результатом поиска
+public class DictionaryIndex {
+    private final StringDictionary dictionary;
+    private final List<RoaringBitmap> postings;
+
+    public DictionaryIndex(StringDictionary dictionary) {
+        this(dictionary, new ArrayList<>());
+    }
+
+    private DictionaryIndex(StringDictionary dictionary, List<RoaringBitmap> postings) {
+        this.dictionary = dictionary;
+        this.postings = postings;
+    }
+
+    // Изменения для следующей версии каталога над ее копией словаря; bitmap'ы значений, которых
+    // изменения не коснулись, общие с текущей версией
+    public Editor edit(StringDictionary nextDictionary) {
+        return new Editor(nextDictionary);
+    }
+
+    public class Editor {
+        private final StringDictionary nextDictionary;
+        private final Map<Integer, IntList> removed = new HashMap<>();
+        private final Map<Integer, IntList> added = new HashMap<>();
+
+        private Editor(StringDictionary nextDictionary) {
+            this.nextDictionary = nextDictionary;
+        }
+
+        public void remove(int ordinal, int valueId) {
+            removed.computeIfAbsent(valueId, id -> new IntList()).add(ordinal);
+        }
+
+        public void add(int ordinal, int valueId) {
+            added.computeIfAbsent(valueId, id -> new IntList()).add(ordinal);
+        }
+
+        public DictionaryIndex build() {
+            List<RoaringBitmap> next = new ArrayList<>(postings);
+            Set<Integer> valueIds = new HashSet<>(removed.keySet());
+            valueIds.addAll(added.keySet());
+            for (int valueId : valueIds) {
+                while (next.size() <= valueId) {
+                    next.add(new RoaringBitmap());
+                }
+                int[] merged = next.get(valueId).toArray();
+                IntList removals = removed.get(valueId);
+                IntList additions = added.get(valueId);
+                if (removals != null) {
+                    merged = Postings.difference(merged, Postings.sortedDistinct(removals.toArray()));
+                }
+                if (additions != null) {
+                    merged = Postings.union(merged, Postings.sortedDistinct(additions.toArray()));
+                }
+                next.set(valueId, RoaringBitmap.of(merged));
+            }
+            return new DictionaryIndex(nextDictionary, next);
+        }
+    }
+
+    // Отсортированные порядковые номера товаров, значение которых содержит substring
+    public int[] search(String substring) {
+        int[] result = new int[0];
+        for (int id = 0; id < postings.size(); id++) {
+            if (dictionary.decode(id).contains(substring)) {
+                int[] ordinals = postings.get(id).toArray();
+                result = result.length == 0 ? ordinals : Postings.union(result, ordinals);
+            }
+        }
+        return result;
+    }
+
+    // Точное совпадение значения
+    public int[] exact(String value) {
+        int id = dictionary.lookup(value);
+        return id < 0 || id >= postings.size() ? new int[0] : postings.get(id).toArray();
+    }
+
+    public int count(String substring) {
+        int count = 0;
+        for (int id = 0; id < postings.size(); id++) {
+            if (dictionary.decode(id).contains(substring)) {
+                count += postings.get(id).cardinality();
+            }
+        }
+        return count;
+    }
+
+    public int exactCount(String value) {
+        int id = dictionary.lookup(value);
+        return id < 0 || id >= postings.size() ? 0 : postings.get(id).cardinality();
+    }
+
+    // Значение -> число товаров из результата с этим значением; значения без совпадений не включаются.
+    // Порядок - по убыванию числа товаров
+    public Map<String, Integer> facetCounts(RoaringBitmap result) {
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (int id = 0; id < postings.size(); id++) {
+            int count = postings.get(id).andCardinality(result);
+            if (count > 0) {
+                counts.add(Map.entry(dictionary.decode(id), count));
+            }
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+
+        Map<String, Integer> facets = new LinkedHashMap<>();
+        counts.forEach(entry -> facets.put(entry.getKey(), entry.getValue()));
+        return facets;
+    }
+}
@@ -0,0 +1,97 @@
+package Shop.products.index;
+
+import Shop.products.Product;
+
+import java.util.List;
+
+// Строки версии каталога в куче: товары, колонки и индексы, собранные CatalogVersion
+public class HeapRows implements IndexedRows {
+    private final List<Product> products;
+    private final ProductColumns columns;
+    private final KeywordIndex keywordIndex;
+    private final PriceIndex priceIndex;
+    private final DictionaryIndex manufacturerIndex;
+    private final DictionaryIndex categoryIndex;
+
+    public HeapRows(List<Product> products, ProductColumns columns, KeywordIndex keywordIndex,
+                    PriceIndex priceIndex, DictionaryIndex manufacturerIndex, DictionaryIndex categoryIndex) {
+        this.products = products;
+        this.columns = columns;
+        this.keywordIndex = keywordIndex;
+        this.priceIndex = priceIndex;
+        this.manufacturerIndex = manufacturerIndex;
+        this.categoryIndex = categoryIndex;
+    }
+
+    @Override
+    public int size() {
+        return products.size();
+    }
+
+    // Удаленный товар сохраняет свою строку (в списке на его месте null)
+    @Override
+    public boolean isLive(int row) {
+        return products.get(row) != null;
+    }
+
+    @Override
+    public Product product(int row) {
+        return products.get(row);
+    }
+
+    @Override
+    public double price(int row) {
+        return columns.price(row);
+    }
+
+    @Override
+    public boolean manufacturerContains(int row, String substring) {
+        return columns.getManufacturers().decode(columns.manufacturerId(row)).contains(substring);
+    }
+
+    @Override
+    public boolean hasCategory(int row, String category) {
+        int categoryId = columns.getCategories().lookup(category);
+        return categoryId >= 0 && columns.hasCategory(row, categoryId);
+    }
+
+    @Override
+    public int[] keywordSearch(String[] terms) {
+        return keywordIndex.search(terms);
+    }
+
+    @Override
+    public int keywordEstimate(String[] terms) {
+        return keywordIndex.estimate(terms);
+    }
+
+    @Override
+    public int[] manufacturerSearch(String substring) {
+        return manufacturerIndex.search(substring);
+    }
+
+    @Override
+    public int manufacturerCount(String substring) {
+        return manufacturerIndex.count(substring);
+    }
+
+    @Override
+    public int[] categorySearch(String category) {
+        return categoryIndex.exact(category);
+    }
+
+    @Override
+    public int categoryCount(String category) {
+        return categoryIndex.exactCount(category);
+    }
+
+    @Override
+    public int[] priceRange(double minPrice, double maxPrice) {
+        return priceIndex.range(minPrice, maxPrice);
+    }
+
+    @Override
+    public int priceCount(double minPrice, double maxPrice) {
+        return priceIndex.count(minPrice, maxPrice);
+    }
+}
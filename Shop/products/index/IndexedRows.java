@@ -0,0 +1,40 @@
+package Shop.products.index;
+
+import Shop.products.Product;
+
+// Строки каталога и индексы над ними в собственной нумерации строк: версия в куче или отображенный снапшот.
+// Планировщик запросов работает с любым источником одинаково. Индексы отдают только живые строки
+public interface IndexedRows {
+    // Число строк, включая удаленные
+    int size();
+
+    boolean isLive(int row);
+
+    // null - строка удалена
+    Product product(int row);
+
+    double price(int row);
+
+    // Нормализованный производитель строки содержит substring
+    boolean manufacturerContains(int row, String substring);
+
+    boolean hasCategory(int row, String category);
+
+    // Отсортированные номера строк, в полях которых есть каждый терм
+    int[] keywordSearch(String[] terms);
+
+    int keywordEstimate(String[] terms);
+
+    int[] manufacturerSearch(String substring);
+
+    int manufacturerCount(String substring);
+
+    int[] categorySearch(String category);
+
+    int categoryCount(String category);
+
+    // Строки с ценой в [minPrice, maxPrice] в порядке цены
+    int[] priceRange(double minPrice, double maxPrice);
+
+    int priceCount(double minPrice, double maxPrice);
+}
@@ -0,0 +1,55 @@
+package Shop.products.index;
+
+import java.util.Arrays;
+
+// Растущий массив примитивных int - posting list без упаковки в Integer
+public class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this.values = new int[4];
+    }
+
+    // Оборачивает готовый массив без копирования
+    public IntList(int[] values) {
+        this.values = values;
+        this.size = values.length;
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size * 2));
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int last() {
+        return values[size - 1];
+    }
+
+    public boolean isStrictlyAscending() {
+        for (int i = 1; i < size; i++) {
+            if (values[i - 1] >= values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
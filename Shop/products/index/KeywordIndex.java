@@ -0,0 +1,178 @@
+package Shop.products.index;
+
+import Shop.products.Product;
+import Shop.products.text.SearchText;
+
+import java.util.*;
+
+// Инвертированный индекс по n-граммам: n-грамма -> posting list порядковых номеров товаров.
+// Позволяет искать подстроку в названии, производителе, категориях и их латинской записи без полного перебора каталога
+public class KeywordIndex {
+    private static final int GRAM_LENGTH = 3;
+
+    private final Map<String, IntList> postings;
+    // Нормализованные поля товара - общие с самим товаром; у удаленных товаров пусто
+    private final List<SearchText> fields;
+
+    public KeywordIndex() {
+        this(new HashMap<>(), new ArrayList<>());
+    }
+
+    private KeywordIndex(Map<String, IntList> postings, List<SearchText> fields) {
+        this.postings = postings;
+        this.fields = fields;
+    }
+
+    // Изменения копятся в редакторе и применяются одним проходом в build(); сам индекс не меняется,
+    // новая версия делит с ним все posting list'ы, которых изменения не коснулись
+    public Editor edit() {
+        return new Editor();
+    }
+
+    public class Editor {
+        private final List<SearchText> editedFields = new ArrayList<>(fields);
+        private final Map<String, IntList> removed = new HashMap<>();
+        private final Map<String, IntList> added = new HashMap<>();
+
+        public void remove(int ordinal) {
+            collectGrams(editedFields.get(ordinal), ordinal, removed);
+            editedFields.set(ordinal, SearchText.EMPTY);
+        }
+
+        // Новый товар (ordinal равен числу строк) или новые значения существующей строки
+        public void put(int ordinal, Product product) {
+            if (ordinal < editedFields.size()) {
+                remove(ordinal);
+                editedFields.set(ordinal, product.getSearchText());
+            } else {
+                editedFields.add(product.getSearchText());
+            }
+            collectGrams(editedFields.get(ordinal), ordinal, added);
+        }
+
+        public KeywordIndex build() {
+            Map<String, IntList> next = new HashMap<>(postings);
+            Set<String> grams = new HashSet<>(removed.keySet());
+            grams.addAll(added.keySet());
+            for (String gram : grams) {
+                IntList previous = postings.get(gram);
+                IntList removals = removed.get(gram);
+                IntList additions = added.get(gram);
+                // Новая n-грамма при добавлении товаров по порядку - список уже готов
+                if (previous == null && removals == null && additions.isStrictlyAscending()) {
+                    next.put(gram, additions);
+                    continue;
+                }
+                int[] merged = previous == null ? new int[0] : previous.toArray();
+                if (removals != null) {
+                    merged = Postings.difference(merged, Postings.sortedDistinct(removals.toArray()));
+                }
+                if (additions != null) {
+                    merged = Postings.union(merged, Postings.sortedDistinct(additions.toArray()));
+                }
+                if (merged.length == 0) {
+                    next.remove(gram);
+                } else {
+                    next.put(gram, new IntList(merged));
+                }
+            }
+            return new KeywordIndex(next, editedFields);
+        }
+    }
+
+    private static void collectGrams(SearchText text, int ordinal, Map<String, IntList> target) {
+        for (int f = 0; f < text.fieldCount(); f++) {
+            String field = text.field(f);
+            for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+                IntList list = target.computeIfAbsent(field.substring(i, i + GRAM_LENGTH), g -> new IntList());
+                // Одна и та же n-грамма может встретиться в товаре несколько раз
+                if (list.size() == 0 || list.last() != ordinal) {
+                    list.add(ordinal);
+                }
+            }
+        }
+    }
+
+    // Возвращает отсортированные порядковые номера товаров, в полях которых есть каждый терм (см. TextNormalizer.terms)
+    public int[] search(String[] terms) {
+        List<IntList> lists = new ArrayList<>();
+        for (String term : terms) {
+            for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+                IntList list = postings.get(term.substring(i, i + GRAM_LENGTH));
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+        }
+        // Все термы короче n-граммы - индекс не помогает
+        if (lists.isEmpty()) {
+            return scan(terms);
+        }
+        // Начинаем пересечение с самого короткого списка
+        lists.sort(Comparator.comparingInt(IntList::size));
+
+        int[] candidates = lists.get(0).toArray();
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = intersect(candidates, count, lists.get(i));
+        }
+
+        // n-граммы могут совпасть в разных местах строки или в разных полях - проверяем кандидатов точно
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            if (fields.get(candidates[i]).containsAll(terms)) {
+                candidates[matched++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matched);
+    }
+
+    // Верхняя оценка числа совпадений - длина самого короткого posting list'а
+    public int estimate(String[] terms) {
+        int estimate = fields.size();
+        for (String term : terms) {
+            for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+                IntList list = postings.get(term.substring(i, i + GRAM_LENGTH));
+                if (list == null) {
+                    return 0;
+                }
+                estimate = Math.min(estimate, list.size());
+            }
+        }
+        return estimate;
+    }
+
+    public int size() {
+        return fields.size();
+    }
+
+    // Короткие запросы не покрываются n-граммами - перебираем заранее нормализованные поля.
+    // Удаленные строки пропускаем: пустому запросу подошла бы и пустая SearchText.EMPTY
+    private int[] scan(String[] terms) {
+        IntList result = new IntList();
+        for (int ordinal = 0; ordinal < fields.size(); ordinal++) {
+            SearchText text = fields.get(ordinal);
+            if (text != SearchText.EMPTY && text.containsAll(terms)) {
+                result.add(ordinal);
+            }
+        }
+        return result.toArray();
+    }
+
+    // Пересечение на месте: оставляет в candidates только элементы, присутствующие в list
+    private static int intersect(int[] candidates, int count, IntList list) {
+        int result = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < list.size(); i++) {
+            int value = candidates[i];
+            while (j < list.size() && list.get(j) < value) {
+                j++;
+            }
+            if (j < list.size() && list.get(j) == value) {
+                candidates[result++] = value;
+            }
+        }
+        return result;
+    }
+}
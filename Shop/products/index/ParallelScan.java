@@ -0,0 +1,132 @@
+package Shop.products.index;
+
+import Shop.products.filters.ProductFilter;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+// Перебор каталога для фильтров без индекса. Диапазон номеров режется на куски по CHUNK_SIZE,
+// куски проверяются параллельно на отдельном пуле, результаты склеиваются в порядке номеров.
+// Пул свой, чтобы долгий перебор не занимал общий ForkJoinPool и потоки HTTP-сервера
+final class ParallelScan {
+    // Меньше этого числа товаров параллелить невыгодно: накладные расходы пула дороже самого перебора
+    static final int THRESHOLD = 65_536;
+    // 4096 номеров - 16 КБ колонки int: кусок целиком помещается в L1/L2 одного ядра
+    private static final int CHUNK_SIZE = 4096;
+    private static final int PARALLELISM = Integer.getInteger("shop.scan.parallelism",
+            Runtime.getRuntime().availableProcessors());
+    private static final ForkJoinPool POOL = PARALLELISM > 1 ? new ForkJoinPool(PARALLELISM, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("catalog-scan-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false) : null;
+    // Поиск с лимитом идет волнами: первая волна - один кусок, дальше волна удваивается до этого числа кусков
+    private static final int MAX_WAVE_CHUNKS = Math.max(1, PARALLELISM * 4);
+
+    private ParallelScan() {
+    }
+
+    // Все подходящие номера: из диапазона [0, count) или из первых count кандидатов
+    static int[] scan(QueryPlanner planner, ProductFilter filter, int[] candidates, int count) {
+        if (POOL == null || count < THRESHOLD) {
+            return scanRange(planner, filter, candidates, 0, count);
+        }
+        return concat(invoke(planner, filter, candidates, 0, count));
+    }
+
+    // Первые out.length номеров из [from, to), подходящих под фильтр. Перебор останавливается,
+    // как только набрано достаточно: при частых совпадениях хватает первого куска, при редких
+    // волны растут и занимают весь пул
+    static int scanFrom(QueryPlanner planner, ProductFilter filter, int from, int to, int[] out) {
+        int found = 0;
+        int waveChunks = 1;
+        int position = from;
+        while (position < to && found < out.length) {
+            int waveEnd = (int) Math.min(to, position + (long) waveChunks * CHUNK_SIZE);
+            int[][] chunks = POOL == null || waveChunks == 1
+                    ? new int[][]{scanRange(planner, filter, null, position, waveEnd)}
+                    : invoke(planner, filter, null, position, waveEnd);
+            for (int[] chunk : chunks) {
+                int take = Math.min(chunk.length, out.length - found);
+                System.arraycopy(chunk, 0, out, found, take);
+                found += take;
+            }
+            position = waveEnd;
+            waveChunks = Math.min(waveChunks * 2, MAX_WAVE_CHUNKS);
+        }
+        return found;
+    }
+
+    private static int[][] invoke(QueryPlanner planner, ProductFilter filter, int[] candidates, int from, int to) {
+        int[][] chunks = new int[(to - from + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        POOL.invoke(new ScanTask(planner, filter, candidates, from, chunks, 0, chunks.length, to));
+        return chunks;
+    }
+
+    private static int[] scanRange(QueryPlanner planner, ProductFilter filter, int[] candidates, int from, int to) {
+        IntList result = new IntList();
+        for (int i = from; i < to; i++) {
+            int ordinal = candidates == null ? i : candidates[i];
+            // Кандидаты приходят из индексов и всегда живые; при полном переборе пропускаем удаленные товары
+            if ((candidates != null || planner.isLive(ordinal)) && planner.matches(filter, ordinal)) {
+                result.add(ordinal);
+            }
+        }
+        return result.toArray();
+    }
+
+    private static int[] concat(int[][] chunks) {
+        int total = 0;
+        for (int[] chunk : chunks) {
+            total += chunk.length;
+        }
+        int[] result = new int[total];
+        int position = 0;
+        for (int[] chunk : chunks) {
+            System.arraycopy(chunk, 0, result, position, chunk.length);
+            position += chunk.length;
+        }
+        return result;
+    }
+
+    // Делит отрезок кусков пополам, пока не останется один кусок; каждый кусок пишет результат в свою ячейку,
+    // поэтому порядок сохраняется без слияний на каждом уровне
+    private static final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final QueryPlanner planner;
+        private final ProductFilter filter;
+        private final int[] candidates;
+        private final int base;
+        private final int[][] chunks;
+        private final int firstChunk;
+        private final int lastChunk;
+        private final int end;
+
+        ScanTask(QueryPlanner planner, ProductFilter filter, int[] candidates, int base,
+                 int[][] chunks, int firstChunk, int lastChunk, int end) {
+            this.planner = planner;
+            this.filter = filter;
+            this.candidates = candidates;
+            this.base = base;
+            this.chunks = chunks;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastChunk - firstChunk == 1) {
+                int from = base + firstChunk * CHUNK_SIZE;
+                chunks[firstChunk] = scanRange(planner, filter, candidates, from, Math.min(end, from + CHUNK_SIZE));
+                return;
+            }
+            int middle = (firstChunk + lastChunk) >>> 1;
+            invokeAll(new ScanTask(planner, filter, candidates, base, chunks, firstChunk, middle, end),
+                    new ScanTask(planner, filter, candidates, base, chunks, middle, lastChunk, end));
+        }
+    }
+}
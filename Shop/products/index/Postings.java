@@ -0,0 +1,97 @@
+package Shop.products.index;
+
+import java.util.Arrays;
+
+// Операции над отсортированными posting list'ами порядковых номеров
+public final class Postings {
+    private Postings() {
+    }
+
+    public static int[] intersect(int[] left, int[] right) {
+        int[] result = new int[Math.min(left.length, right.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[size++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public static int[] union(int[] left, int[] right) {
+        int[] result = new int[left.length + right.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length || j < right.length) {
+            if (j == right.length || (i < left.length && left[i] < right[j])) {
+                result[size++] = left[i++];
+            } else if (i == left.length || left[i] > right[j]) {
+                result[size++] = right[j++];
+            } else {
+                result[size++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // Элементы left, которых нет в right
+    public static int[] difference(int[] left, int[] right) {
+        int[] result = new int[left.length];
+        int size = 0;
+        int j = 0;
+        for (int value : left) {
+            while (j < right.length && right[j] < value) {
+                j++;
+            }
+            if (j == right.length || right[j] != value) {
+                result[size++] = value;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // Сортирует и убирает повторы; уже упорядоченный массив возвращается как есть
+    public static int[] sortedDistinct(int[] values) {
+        boolean sorted = true;
+        for (int i = 1; i < values.length && sorted; i++) {
+            sorted = values[i - 1] < values[i];
+        }
+        if (sorted) {
+            return values;
+        }
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (size == 0 || values[size - 1] != values[i]) {
+                values[size++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    // Все порядковые номера из [0, universe), которых нет в excluded
+    public static int[] complement(int[] excluded, int universe) {
+        int[] result = new int[universe - excluded.length];
+        int size = 0;
+        int j = 0;
+        for (int ordinal = 0; ordinal < universe; ordinal++) {
+            if (j < excluded.length && excluded[j] == ordinal) {
+                j++;
+            } else {
+                result[size++] = ordinal;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+package Shop.products.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Отсортированная колонка цен: double[] цен по возрастанию и перестановка порядковых номеров товаров.
+// Порядок полный - по цене, при равной цене по номеру. Поиск по диапазону цен - два бинарных поиска и срез массива
+public class PriceIndex {
+    private final double[] prices;
+    private final int[] ordinals;
+    private final int size;
+
+    public PriceIndex() {
+        this(new double[0], new int[0], 0);
+    }
+
+    private PriceIndex(double[] prices, int[] ordinals, int size) {
+        this.prices = prices;
+        this.ordinals = ordinals;
+        this.size = size;
+    }
+
+    // Следующая версия индекса собирается слиянием текущей колонки с отсортированными изменениями
+    public Editor edit() {
+        return new Editor();
+    }
+
+    public class Editor {
+        private final BitSet removed = new BitSet();
+        private int[] addedOrdinals = new int[16];
+        private double[] addedPrices = new double[16];
+        private int addedCount;
+
+        public void remove(int ordinal) {
+            removed.set(ordinal);
+        }
+
+        // Товары, добавленные уже по порядку (например, из снапшота), не сортируются повторно
+        public void add(int ordinal, double price) {
+            if (addedCount == addedOrdinals.length) {
+                addedOrdinals = Arrays.copyOf(addedOrdinals, addedCount * 2);
+                addedPrices = Arrays.copyOf(addedPrices, addedCount * 2);
+            }
+            addedOrdinals[addedCount] = ordinal;
+            addedPrices[addedCount++] = price;
+        }
+
+        public PriceIndex build() {
+            sortAdded();
+            int capacity = size + addedCount;
+            double[] nextPrices = new double[capacity];
+            int[] nextOrdinals = new int[capacity];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < addedCount) {
+                if (i < size && removed.get(ordinals[i])) {
+                    i++;
+                } else if (j == addedCount || (i < size && compare(prices[i], ordinals[i], addedPrices[j], addedOrdinals[j]) < 0)) {
+                    nextPrices[count] = prices[i];
+                    nextOrdinals[count++] = ordinals[i++];
+                } else {
+                    nextPrices[count] = addedPrices[j];
+                    nextOrdinals[count++] = addedOrdinals[j++];
+                }
+            }
+            return new PriceIndex(nextPrices, nextOrdinals, count);
+        }
+
+        private void sortAdded() {
+            boolean sorted = true;
+            for (int k = 1; k < addedCount && sorted; k++) {
+                sorted = compare(addedPrices[k - 1], addedOrdinals[k - 1], addedPrices[k], addedOrdinals[k]) < 0;
+            }
+            if (sorted) {
+                return;
+            }
+            Integer[] order = new Integer[addedCount];
+            for (int k = 0; k < addedCount; k++) {
+                order[k] = k;
+            }
+            Arrays.sort(order, (left, right) ->
+                    compare(addedPrices[left], addedOrdinals[left], addedPrices[right], addedOrdinals[right]));
+            int[] sortedOrdinals = new int[addedCount];
+            double[] sortedPrices = new double[addedCount];
+            for (int k = 0; k < addedCount; k++) {
+                sortedOrdinals[k] = addedOrdinals[order[k]];
+                sortedPrices[k] = addedPrices[order[k]];
+            }
+            addedOrdinals = sortedOrdinals;
+            addedPrices = sortedPrices;
+        }
+    }
+
+    private static int compare(double leftPrice, int leftOrdinal, double rightPrice, int rightOrdinal) {
+        int byPrice = Double.compare(leftPrice, rightPrice);
+        return byPrice != 0 ? byPrice : Integer.compare(leftOrdinal, rightOrdinal);
+    }
+
+    // Порядковые номера товаров с ценой в [minPrice, maxPrice], упорядоченные по цене
+    public int[] range(double minPrice, double maxPrice) {
+        int from = lowerBound(minPrice);
+        int to = upperBound(maxPrice);
+        return from < to ? Arrays.copyOfRange(ordinals, from, to) : new int[0];
+    }
+
+    // Количество товаров в диапазоне без копирования - оценка селективности
+    public int count(double minPrice, double maxPrice) {
+        return Math.max(0, upperBound(maxPrice) - lowerBound(minPrice));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double priceAt(int position) {
+        return prices[position];
+    }
+
+    public int ordinalAt(int position) {
+        return ordinals[position];
+    }
+
+    // Первая позиция с ключом (цена, номер) > (price, ordinal)
+    public int positionAfter(double price, int ordinal) {
+        return tieBound(price, ordinal, true);
+    }
+
+    // Первая позиция с ключом (цена, номер) >= (price, ordinal)
+    public int positionOf(double price, int ordinal) {
+        return tieBound(price, ordinal, false);
+    }
+
+    private int tieBound(double price, int ordinal, boolean strict) {
+        int low = lowerBound(price);
+        int high = upperBound(price);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ordinals[mid] < ordinal || (strict && ordinals[mid] == ordinal)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Первая позиция с ценой >= price
+    public int lowerBound(double price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Первая позиция с ценой > price
+    public int upperBound(double price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] <= price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
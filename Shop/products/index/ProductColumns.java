@@ -0,0 +1,152 @@
+package Shop.products.index;
+
+import Shop.products.Product;
+import Shop.products.text.SearchText;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// Колоночное хранилище каталога: примитивные массивы по порядковому номеру товара.
+// Производители и категории закодированы словарями, категории товара лежат отрезком [start, end) общего массива ids.
+// Каждая версия каталога владеет своей копией колонок: опубликованная копия больше не меняется.
+// Колонки дополняют объекты Product, а не заменяют их: товары в корзинах, заказах и ответах API остаются объектами.
+// Ради памяти из товара вынесено только то, что было тяжелым: оценки лежат в RatingColumns, а не в паре счетчиков
+// на каждый товар; цена в копейках считается на лету
+public class ProductColumns {
+    private final StringDictionary manufacturers;
+    private final StringDictionary categories;
+
+    private double[] prices;
+    private int[] manufacturerIds;
+    private int[] categoryStarts;
+    private int[] categoryEnds;
+    private int[] categoryIds;
+    private int size;
+    private int categoryCount;
+
+    public ProductColumns() {
+        this(new StringDictionary(), new StringDictionary());
+    }
+
+    // Словари с заранее известными значениями - например, из снапшота: id значений совпадут с его id
+    public ProductColumns(StringDictionary manufacturers, StringDictionary categories) {
+        this.manufacturers = manufacturers;
+        this.categories = categories;
+        this.prices = new double[16];
+        this.manufacturerIds = new int[16];
+        this.categoryStarts = new int[16];
+        this.categoryEnds = new int[16];
+        this.categoryIds = new int[32];
+    }
+
+    private ProductColumns(ProductColumns source) {
+        this.manufacturers = source.manufacturers.copy();
+        this.categories = source.categories.copy();
+        this.prices = source.prices.clone();
+        this.manufacturerIds = source.manufacturerIds.clone();
+        this.categoryStarts = source.categoryStarts.clone();
+        this.categoryEnds = source.categoryEnds.clone();
+        this.categoryIds = source.categoryIds.clone();
+        this.size = source.size;
+        this.categoryCount = source.categoryCount;
+    }
+
+    // Копия для следующей версии каталога. Категории, брошенные обновлениями строк, при копировании
+    // вычищаются, если их стало больше, чем используемых
+    public ProductColumns copy() {
+        ProductColumns copy = new ProductColumns(this);
+        int used = 0;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            used += categoryEnds[ordinal] - categoryStarts[ordinal];
+        }
+        if (categoryCount - used > used) {
+            copy.compactCategories(used);
+        }
+        return copy;
+    }
+
+    // Добавляет строку и возвращает ее порядковый номер
+    public int append(Product product) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            manufacturerIds = Arrays.copyOf(manufacturerIds, size * 2);
+            categoryStarts = Arrays.copyOf(categoryStarts, size * 2);
+            categoryEnds = Arrays.copyOf(categoryEnds, size * 2);
+        }
+        write(size, product);
+        return size++;
+    }
+
+    // Перезаписывает строку обновленного товара; прежние категории строки остаются мусором до уплотнения
+    public void set(int ordinal, Product product) {
+        Objects.checkIndex(ordinal, size);
+        write(ordinal, product);
+    }
+
+    private void write(int ordinal, Product product) {
+        prices[ordinal] = product.getPrice();
+        // Словари хранят уже нормализованные значения - те же, с которыми сравнивают фильтры
+        SearchText text = product.getSearchText();
+        manufacturerIds[ordinal] = manufacturers.encode(text.manufacturer());
+
+        if (categoryCount + text.categoryCount() > categoryIds.length) {
+            categoryIds = Arrays.copyOf(categoryIds, Math.max(categoryIds.length * 2, categoryCount + text.categoryCount()));
+        }
+        categoryStarts[ordinal] = categoryCount;
+        for (int i = 0; i < text.categoryCount(); i++) {
+            categoryIds[categoryCount++] = categories.encode(text.category(i));
+        }
+        categoryEnds[ordinal] = categoryCount;
+    }
+
+    private void compactCategories(int used) {
+        int[] compacted = new int[Math.max(32, used)];
+        int position = 0;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int length = categoryEnds[ordinal] - categoryStarts[ordinal];
+            System.arraycopy(categoryIds, categoryStarts[ordinal], compacted, position, length);
+            categoryStarts[ordinal] = position;
+            position += length;
+            categoryEnds[ordinal] = position;
+        }
+        categoryIds = compacted;
+        categoryCount = position;
+    }
+
+    public double price(int ordinal) {
+        return prices[ordinal];
+    }
+
+    public int manufacturerId(int ordinal) {
+        return manufacturerIds[ordinal];
+    }
+
+    public boolean hasCategory(int ordinal, int categoryId) {
+        for (int i = categoryStarts[ordinal]; i < categoryEnds[ordinal]; i++) {
+            if (categoryIds[i] == categoryId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int categoryCount(int ordinal) {
+        return categoryEnds[ordinal] - categoryStarts[ordinal];
+    }
+
+    public int categoryId(int ordinal, int index) {
+        return categoryIds[categoryStarts[ordinal] + index];
+    }
+
+    public StringDictionary getManufacturers() {
+        return manufacturers;
+    }
+
+    public StringDictionary getCategories() {
+        return categories;
+    }
+
+    public int size() {
+        return size;
+    }
+}
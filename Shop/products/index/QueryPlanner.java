@@ -0,0 +1,175 @@
+package Shop.products.index;
+
+import Shop.products.filters.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Планировщик запросов: знает, за какими фильтрами стоят индексы и насколько они селективны.
+// Пересекает posting list'ы начиная с самого селективного, а остаточные условия проверяет через matches.
+// Номера - строки своего источника: версии в куче или снапшота
+public class QueryPlanner {
+    private final IndexedRows rows;
+
+    public QueryPlanner(IndexedRows rows) {
+        this.rows = rows;
+    }
+
+    // Отсортированные порядковые номера товаров, подходящих под фильтр
+    public int[] evaluate(ProductFilter filter) {
+        if (!isIndexed(filter)) {
+            return scan(filter, null);
+        }
+        if (filter instanceof KeywordFilter keywordFilter) {
+            return rows.keywordSearch(keywordFilter.getTerms());
+        }
+        if (filter instanceof ManufacturerFilter manufacturerFilter) {
+            return rows.manufacturerSearch(manufacturerFilter.getManufacturer());
+        }
+        if (filter instanceof CategoryFilter categoryFilter) {
+            return rows.categorySearch(categoryFilter.getCategory());
+        }
+        if (filter instanceof PriceRangeFilter priceFilter) {
+            // Индекс цен отдает товары в порядке цены - возвращаем к порядку номеров для пересечений
+            int[] ordinals = rows.priceRange(priceFilter.getMinPrice(), priceFilter.getMaxPrice());
+            Arrays.sort(ordinals);
+            return ordinals;
+        }
+        if (filter instanceof AndFilter andFilter) {
+            return evaluateAnd(andFilter.getFilters());
+        }
+        if (filter instanceof OrFilter orFilter) {
+            int[] result = new int[0];
+            for (ProductFilter child : orFilter.getFilters()) {
+                result = Postings.union(result, evaluate(child));
+            }
+            return result;
+        }
+        NotFilter notFilter = (NotFilter) filter;
+        return retainLive(Postings.complement(evaluate(notFilter.getFilter()), rows.size()));
+    }
+
+    // Удаленный товар сохраняет свой номер, но в результаты не попадает
+    public boolean isLive(int ordinal) {
+        return rows.isLive(ordinal);
+    }
+
+    private int[] retainLive(int[] ordinals) {
+        int size = 0;
+        for (int ordinal : ordinals) {
+            if (isLive(ordinal)) {
+                ordinals[size++] = ordinal;
+            }
+        }
+        return size == ordinals.length ? ordinals : Arrays.copyOf(ordinals, size);
+    }
+
+    // Оценка количества товаров, которые пройдут фильтр
+    public int estimate(ProductFilter filter) {
+        if (filter instanceof KeywordFilter keywordFilter) {
+            return rows.keywordEstimate(keywordFilter.getTerms());
+        }
+        if (filter instanceof ManufacturerFilter manufacturerFilter) {
+            return rows.manufacturerCount(manufacturerFilter.getManufacturer());
+        }
+        if (filter instanceof CategoryFilter categoryFilter) {
+            return rows.categoryCount(categoryFilter.getCategory());
+        }
+        if (filter instanceof PriceRangeFilter priceFilter) {
+            return rows.priceCount(priceFilter.getMinPrice(), priceFilter.getMaxPrice());
+        }
+        if (filter instanceof AndFilter andFilter) {
+            return andFilter.getFilters().stream().mapToInt(this::estimate).min().orElse(rows.size());
+        }
+        if (filter instanceof OrFilter orFilter) {
+            long sum = orFilter.getFilters().stream().mapToLong(this::estimate).sum();
+            return (int) Math.min(sum, rows.size());
+        }
+        return rows.size();
+    }
+
+    public boolean isIndexed(ProductFilter filter) {
+        if (filter instanceof KeywordFilter || filter instanceof ManufacturerFilter
+                || filter instanceof CategoryFilter || filter instanceof PriceRangeFilter) {
+            return true;
+        }
+        if (filter instanceof AndFilter andFilter) {
+            return andFilter.getFilters().stream().anyMatch(this::isIndexed);
+        }
+        if (filter instanceof OrFilter orFilter) {
+            return orFilter.getFilters().stream().allMatch(this::isIndexed);
+        }
+        if (filter instanceof NotFilter notFilter) {
+            return isIndexed(notFilter.getFilter());
+        }
+        return false;
+    }
+
+    private int[] evaluateAnd(List<ProductFilter> filters) {
+        List<ProductFilter> indexed = new ArrayList<>();
+        List<ProductFilter> residual = new ArrayList<>();
+        for (ProductFilter filter : filters) {
+            (isIndexed(filter) ? indexed : residual).add(filter);
+        }
+        indexed.sort(Comparator.comparingInt(this::estimate));
+
+        int[] candidates = evaluate(indexed.get(0));
+        for (int i = 1; i < indexed.size() && candidates.length > 0; i++) {
+            ProductFilter next = indexed.get(i);
+            // Если кандидатов меньше, чем вернет индекс, дешевле проверить их напрямую
+            if (candidates.length < estimate(next)) {
+                residual.add(next);
+            } else {
+                candidates = Postings.intersect(candidates, evaluate(next));
+            }
+        }
+        return residual.isEmpty() ? candidates : scan(new AndFilter(residual), candidates);
+    }
+
+    // Перебор по всем товарам или только по кандидатам; на больших каталогах - параллельно
+    private int[] scan(ProductFilter filter, int[] candidates) {
+        int count = candidates == null ? rows.size() : candidates.length;
+        return ParallelScan.scan(this, filter, candidates, count);
+    }
+
+    // Первые out.length товаров с номером >= from, подходящих под фильтр; возвращает, сколько найдено
+    public int scanFrom(ProductFilter filter, int from, int[] out) {
+        return ParallelScan.scanFrom(this, filter, from, rows.size(), out);
+    }
+
+    // Известные фильтры проверяем прямо по колонкам, остальные - через matches
+    public boolean matches(ProductFilter filter, int ordinal) {
+        if (filter instanceof PriceRangeFilter priceFilter) {
+            double price = rows.price(ordinal);
+            return price >= priceFilter.getMinPrice() && price <= priceFilter.getMaxPrice();
+        }
+        if (filter instanceof ManufacturerFilter manufacturerFilter) {
+            return rows.manufacturerContains(ordinal, manufacturerFilter.getManufacturer());
+        }
+        if (filter instanceof CategoryFilter categoryFilter) {
+            return rows.hasCategory(ordinal, categoryFilter.getCategory());
+        }
+        if (filter instanceof AndFilter andFilter) {
+            for (ProductFilter child : andFilter.getFilters()) {
+                if (!matches(child, ordinal)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (filter instanceof OrFilter orFilter) {
+            for (ProductFilter child : orFilter.getFilters()) {
+                if (matches(child, ordinal)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (filter instanceof NotFilter notFilter) {
+            return !matches(notFilter.getFilter(), ordinal);
+        }
+        return filter.matches(rows.product(ordinal));
+    }
+}
@@ -0,0 +1,107 @@
+package Shop.products.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.DoubleSupplier;
+
+// Поддерживаемый рейтинг товаров (по оценке, цене, продажам) - глобально и внутри каждой категории.
+// Ключ skip list'а - счет (double, без потери точности для счетчиков продаж) и порядковый номер,
+// поэтому top-K - это первые K элементов без сортировки всего каталога. Обновление счета переставляет товар за O(log n)
+public class RankingIndex {
+    private final Comparator<Key> order;
+    private final NavigableSet<Key> global;
+    private final Map<Integer, NavigableSet<Key>> byCategory;
+    // Текущее положение товара в рейтинге
+    private final Map<Integer, Ranked> ranked;
+
+    // descending = true - первыми идут товары с наибольшим счетом
+    public RankingIndex(boolean descending) {
+        // При равном счете - по порядковому номеру, чтобы ключи разных товаров не совпадали
+        Comparator<Key> byScore = Comparator.comparingDouble(Key::score);
+        this.order = (descending ? byScore.reversed() : byScore).thenComparingInt(Key::ordinal);
+        this.global = new ConcurrentSkipListSet<>(order);
+        this.byCategory = new ConcurrentHashMap<>();
+        this.ranked = new ConcurrentHashMap<>();
+    }
+
+    public void set(int ordinal, int[] categoryIds, double score) {
+        ranked.compute(ordinal, (key, previous) -> move(ordinal, categoryIds, previous, score));
+    }
+
+    // Счет вычисляется под блокировкой товара - при параллельных обновлениях последним записывается актуальный
+    public void set(int ordinal, int[] categoryIds, DoubleSupplier score) {
+        ranked.compute(ordinal, (key, previous) -> move(ordinal, categoryIds, previous, score.getAsDouble()));
+    }
+
+    public void increment(int ordinal, int[] categoryIds, double delta) {
+        ranked.compute(ordinal, (key, previous) ->
+                move(ordinal, categoryIds, previous, previous == null ? delta : previous.score() + delta));
+    }
+
+    // Товар удален из каталога
+    public void remove(int ordinal) {
+        ranked.computeIfPresent(ordinal, (key, previous) -> {
+            unlink(previous);
+            return null;
+        });
+    }
+
+    // У обновленного товара сменились категории - счет остается прежним
+    public void recategorize(int ordinal, int[] categoryIds) {
+        ranked.computeIfPresent(ordinal, (key, previous) -> move(ordinal, categoryIds, previous, previous.score()));
+    }
+
+    public int[] top(int k) {
+        return take(global, k);
+    }
+
+    public int[] top(int categoryId, int k) {
+        NavigableSet<Key> category = byCategory.get(categoryId);
+        return category == null ? new int[0] : take(category, k);
+    }
+
+    // Выполняется под блокировкой ключа ConcurrentHashMap.compute - обновления одного товара не пересекаются
+    private Ranked move(int ordinal, int[] categoryIds, Ranked previous, double score) {
+        if (previous != null) {
+            unlink(previous);
+        }
+        Key key = new Key(score, ordinal);
+        global.add(key);
+        for (int categoryId : categoryIds) {
+            byCategory.computeIfAbsent(categoryId, id -> new ConcurrentSkipListSet<>(order)).add(key);
+        }
+        return new Ranked(key, categoryIds);
+    }
+
+    private void unlink(Ranked previous) {
+        global.remove(previous.key);
+        for (int categoryId : previous.categoryIds) {
+            byCategory.get(categoryId).remove(previous.key);
+        }
+    }
+
+    private static int[] take(NavigableSet<Key> set, int k) {
+        int[] result = new int[k];
+        int size = 0;
+        for (Key key : set) {
+            if (size == k) {
+                break;
+            }
+            result[size++] = key.ordinal();
+        }
+        return size == k ? result : Arrays.copyOf(result, size);
+    }
+
+    private record Key(double score, int ordinal) {
+    }
+
+    private record Ranked(Key key, int[] categoryIds) {
+        double score() {
+            return key.score();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package Shop.products.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Агрегаты оценок по порядковому номеру товара: количество и сумма в миллионных долях балла.
+// Сумма целочисленная, поэтому изменение оценки туда и обратно не накапливает ошибку double.
+// Колонки общие для всех версий каталога (номер закреплен за ID навсегда) и растут блоками:
+// выделенный блок не копируется и не переезжает, запись - один getAndAdd без блокировок.
+// Блок выделяется при первой оценке одного из его товаров: каталог из снапшота без оценок не занимает здесь памяти
+public class RatingColumns {
+    private static final int BLOCK_BITS = 12;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final long SCALE = 1_000_000;
+
+    // Счетчик и сумма товара лежат рядом - в одной строке кэша. null - в блоке еще никого не оценивали.
+    // Массив блоков заменяется целиком под блокировкой, читатели берут его одним volatile-чтением
+    private volatile AtomicLongArray[] blocks = new AtomicLongArray[0];
+
+    // Готовит место под номер; вызывается писателем каталога до публикации версии с этим номером
+    public synchronized void ensureCapacity(int ordinal) {
+        int needed = (ordinal >> BLOCK_BITS) + 1;
+        if (needed > blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(needed, blocks.length * 2));
+        }
+    }
+
+    private synchronized AtomicLongArray allocate(int index) {
+        AtomicLongArray[] current = blocks;
+        if (current[index] == null) {
+            AtomicLongArray[] next = current.clone();
+            next[index] = new AtomicLongArray(2 * BLOCK_SIZE);
+            blocks = next;
+            return next[index];
+        }
+        return current[index];
+    }
+
+    public void add(int ordinal, double rating) {
+        AtomicLongArray block = writableBlock(ordinal);
+        int slot = slot(ordinal);
+        block.getAndAdd(slot + 1, toMicros(rating));
+        block.getAndIncrement(slot);
+    }
+
+    // Пользователь изменил свою оценку - количество оценок не меняется
+    public void change(int ordinal, double oldRating, double newRating) {
+        writableBlock(ordinal).getAndAdd(slot(ordinal) + 1, toMicros(newRating) - toMicros(oldRating));
+    }
+
+    public long count(int ordinal) {
+        AtomicLongArray block = blocks[ordinal >> BLOCK_BITS];
+        return block == null ? 0 : block.get(slot(ordinal));
+    }
+
+    public double sum(int ordinal) {
+        AtomicLongArray block = blocks[ordinal >> BLOCK_BITS];
+        return block == null ? 0 : (double) block.get(slot(ordinal) + 1) / SCALE;
+    }
+
+    private AtomicLongArray writableBlock(int ordinal) {
+        AtomicLongArray block = blocks[ordinal >> BLOCK_BITS];
+        return block != null ? block : allocate(ordinal >> BLOCK_BITS);
+    }
+
+    private static int slot(int ordinal) {
+        return 2 * (ordinal & (BLOCK_SIZE - 1));
+    }
+
+    private static long toMicros(double rating) {
+        return Math.round(rating * SCALE);
+    }
+}
@@ -0,0 +1,185 @@
+package Shop.products.index;
+
+import java.util.Arrays;
+
+// Сжатый bitmap порядковых номеров в стиле Roaring: номера делятся на блоки по старшим 16 битам,
+// разреженный блок хранится отсортированным массивом char, плотный (> 4096 значений) - битовой картой на 65536 бит
+public class RoaringBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public RoaringBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    public static RoaringBitmap of(int[] sortedValues) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : sortedValues) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        int index = find(key);
+        if (index < 0) {
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(containers, index, containers, index + 1, size - index);
+            keys[index] = key;
+            containers[index] = new Container();
+            size++;
+        }
+        containers[index].add((char) value);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    // Мощность пересечения без построения результата - основа подсчета фасетов
+    public int andCardinality(RoaringBitmap other) {
+        int result = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public int[] toArray() {
+        int[] result = new int[cardinality()];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            position = containers[i].copyTo(result, position, keys[i] << 16);
+        }
+        return result;
+    }
+
+    private int find(char key) {
+        // Номера добавляются в основном по возрастанию - сначала проверяем последний блок
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private static class Container {
+        private char[] array = new char[4];
+        private long[] bitmap;
+        private int cardinality;
+
+        void add(char low) {
+            if (bitmap != null) {
+                long mask = 1L << low;
+                if ((bitmap[low >>> 6] & mask) == 0) {
+                    bitmap[low >>> 6] |= mask;
+                    cardinality++;
+                }
+                return;
+            }
+            int index = cardinality > 0 && array[cardinality - 1] < low
+                    ? -cardinality - 1
+                    : Arrays.binarySearch(array, 0, cardinality, low);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (cardinality == ARRAY_LIMIT) {
+                toBitmap();
+                add(low);
+                return;
+            }
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(array, index, array, index + 1, cardinality - index);
+            array[index] = low;
+            cardinality++;
+        }
+
+        int andCardinality(Container other) {
+            if (bitmap != null && other.bitmap != null) {
+                int result = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result += Long.bitCount(bitmap[i] & other.bitmap[i]);
+                }
+                return result;
+            }
+            if (bitmap != null) {
+                return other.andCardinality(this);
+            }
+            int result = 0;
+            if (other.bitmap != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if ((other.bitmap[array[i] >>> 6] & (1L << array[i])) != 0) {
+                        result++;
+                    }
+                }
+                return result;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < other.cardinality) {
+                if (array[i] < other.array[j]) {
+                    i++;
+                } else if (array[i] > other.array[j]) {
+                    j++;
+                } else {
+                    result++;
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        int copyTo(int[] target, int position, int high) {
+            if (bitmap == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    target[position++] = high | array[i];
+                }
+                return position;
+            }
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                long bits = bitmap[word];
+                while (bits != 0) {
+                    target[position++] = high | (word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+            return position;
+        }
+
+        private void toBitmap() {
+            bitmap = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bitmap[array[i] >>> 6] |= 1L << array[i];
+            }
+            array = null;
+        }
+    }
+}
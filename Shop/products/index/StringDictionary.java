@@ -0,0 +1,50 @@
+package Shop.products.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Словарное кодирование строк: каждое различное значение хранится один раз и получает int-идентификатор
+public class StringDictionary {
+    private final Map<String, Integer> ids;
+    private final List<String> values;
+
+    public StringDictionary() {
+        this.ids = new HashMap<>();
+        this.values = new ArrayList<>();
+    }
+
+    private StringDictionary(Map<String, Integer> ids, List<String> values) {
+        this.ids = ids;
+        this.values = values;
+    }
+
+    // Независимая копия: идентификаторы сохраняются, новые значения в копии не видны оригиналу
+    public StringDictionary copy() {
+        return new StringDictionary(new HashMap<>(ids), new ArrayList<>(values));
+    }
+
+    public int encode(String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    // -1, если значения нет в словаре
+    public int lookup(String value) {
+        return ids.getOrDefault(value, -1);
+    }
+
+    public String decode(int id) {
+        return values.get(id);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,79 @@
+package Shop.products.recommendations;
+
+import java.util.Arrays;
+
+// Разреженная строка матрицы совместных встречаемостей: int -> int с открытой адресацией, без упаковки
+public class IntIntMap {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntMap() {
+        this.keys = new int[8];
+        this.values = new int[8];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    // key должен быть неотрицательным
+    public void increment(int key) {
+        int slot = find(keys, key);
+        if (keys[slot] == key) {
+            values[slot]++;
+            return;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize();
+            slot = find(keys, key);
+        }
+        keys[slot] = key;
+        values[slot] = 1;
+        size++;
+    }
+
+    public int get(int key) {
+        int slot = find(keys, key);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Копирует пары в переданные массивы (длиной не меньше size) и возвращает их количество
+    public int copyTo(int[] keysOut, int[] valuesOut) {
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                keysOut[count] = keys[i];
+                valuesOut[count++] = values[i];
+            }
+        }
+        return count;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int find(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int slot = (key * 0x9E3779B9) >>> 1 & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,29 @@
+package Shop.products.recommendations;
+
+// Множество int без упаковки - товары, с которыми взаимодействовал пользователь
+public class IntSet {
+    private final IntIntMap map;
+
+    public IntSet() {
+        this.map = new IntIntMap();
+    }
+
+    // true, если значение добавлено впервые
+    public boolean add(int value) {
+        if (map.get(value) != 0) {
+            return false;
+        }
+        map.increment(value);
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return map.get(value) != 0;
+    }
+
+    public int[] toArray() {
+        int[] keys = new int[map.size()];
+        map.copyTo(keys, new int[keys.length]);
+        return keys;
+    }
+}
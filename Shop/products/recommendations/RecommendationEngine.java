@@ -0,0 +1,272 @@
+package Shop.products.recommendations;
+
+import Shop.products.index.IntList;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Item-item коллаборативная фильтрация. Взаимодействия (оценки, покупки) пополняют разреженную матрицу
+// совместных встречаемостей; для каждого товара хранится готовый список top-K соседей по косинусной мере.
+// Списки соседей пересчитываются только для затронутых товаров, параллельно в общем или переданном ForkJoinPool:
+// своих рабочих потоков движок не держит. Выдача рекомендаций - чтение готовых списков и их слияние, без пересчета
+public class RecommendationEngine implements AutoCloseable {
+    private static final int NEIGHBORS = 20;
+    private static final int SEQUENTIAL_THRESHOLD = 64;
+
+    // Товары, с которыми взаимодействовал пользователь
+    private final Map<String, IntSet> interactions;
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService scheduler;
+    private final IntList dirty;
+    private volatile Row[] rows;
+
+    public RecommendationEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    // Пул принадлежит вызывающему: close() его не останавливает
+    public RecommendationEngine(ForkJoinPool pool) {
+        this.interactions = new ConcurrentHashMap<>();
+        this.pool = pool;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recommendations-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dirty = new IntList();
+        this.rows = new Row[16];
+        scheduler.scheduleWithFixedDelay(this::refresh, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // Пользователь оценил или купил товар
+    public void recordInteraction(String userId, int product) {
+        IntSet seen = interactions.computeIfAbsent(userId, id -> new IntSet());
+        int[] others;
+        synchronized (seen) {
+            if (!seen.add(product)) {
+                return;
+            }
+            others = seen.toArray();
+        }
+
+        Row row = row(product);
+        synchronized (row) {
+            row.itemCount++;
+        }
+        markDirty(product, row);
+        for (int other : others) {
+            if (other == product) {
+                continue;
+            }
+            synchronized (row) {
+                row.coCounts.increment(other);
+            }
+            Row otherRow = row(other);
+            synchronized (otherRow) {
+                otherRow.coCounts.increment(product);
+            }
+            markDirty(other, otherRow);
+        }
+    }
+
+    // Рекомендации пользователю: сумма сходств соседей всех товаров, с которыми он взаимодействовал,
+    // без уже известных ему товаров. Возвращает порядковые номера товаров
+    public int[] recommend(String userId, int limit) {
+        IntSet seen = interactions.get(userId);
+        if (seen == null) {
+            return new int[0];
+        }
+        int[] known;
+        synchronized (seen) {
+            known = seen.toArray();
+        }
+        Arrays.sort(known);
+
+        Map<Integer, Float> scores = new HashMap<>();
+        Row[] current = rows;
+        for (int product : known) {
+            Neighbors neighbors = product < current.length && current[product] != null ? current[product].neighbors : null;
+            if (neighbors == null) {
+                continue;
+            }
+            for (int i = 0; i < neighbors.products.length; i++) {
+                if (Arrays.binarySearch(known, neighbors.products[i]) < 0) {
+                    scores.merge(neighbors.products[i], neighbors.scores[i], Float::sum);
+                }
+            }
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Float>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+    }
+
+    // Пересчитывает соседей для товаров, затронутых с прошлого обновления
+    public void refresh() {
+        int[] pending;
+        synchronized (dirty) {
+            pending = dirty.toArray();
+            dirty.clear();
+        }
+        if (pending.length > 0) {
+            pool.invoke(new RefreshTask(pending, 0, pending.length));
+        }
+    }
+
+    // Останавливает фоновый пересчет; уже посчитанные соседи остаются доступны
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void markDirty(int product, Row row) {
+        if (!row.dirty) {
+            row.dirty = true;
+            synchronized (dirty) {
+                dirty.add(product);
+            }
+        }
+    }
+
+    private Row row(int product) {
+        Row[] current = rows;
+        if (product < current.length && current[product] != null) {
+            return current[product];
+        }
+        synchronized (this) {
+            current = rows;
+            if (product >= current.length) {
+                Row[] grown = new Row[Math.max(product + 1, current.length * 2)];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[product] == null) {
+                current[product] = new Row();
+            }
+            rows = current;
+            return current[product];
+        }
+    }
+
+    // Top-K соседей товара по косинусной мере co(i, j) / sqrt(n(i) * n(j))
+    private void computeNeighbors(int product) {
+        Row row = row(product);
+        int[] others;
+        int[] counts;
+        int size;
+        int itemCount;
+        synchronized (row) {
+            row.dirty = false;
+            others = new int[row.coCounts.size()];
+            counts = new int[others.length];
+            size = row.coCounts.copyTo(others, counts);
+            itemCount = row.itemCount;
+        }
+
+        // Минимальная куча размера K на примитивных массивах
+        int k = Math.min(NEIGHBORS, size);
+        int[] heapProducts = new int[k];
+        float[] heapScores = new float[k];
+        int heapSize = 0;
+        for (int i = 0; i < size; i++) {
+            float score = (float) (counts[i] / Math.sqrt((double) itemCount * row(others[i]).itemCount));
+            if (heapSize < k) {
+                heapProducts[heapSize] = others[i];
+                heapScores[heapSize] = score;
+                siftUp(heapProducts, heapScores, heapSize++);
+            } else if (score > heapScores[0]) {
+                heapProducts[0] = others[i];
+                heapScores[0] = score;
+                siftDown(heapProducts, heapScores, heapSize);
+            }
+        }
+        row.neighbors = new Neighbors(heapProducts, heapScores);
+    }
+
+    private static void siftUp(int[] products, float[] scores, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(products, scores, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] products, float[] scores, int size) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            if (right < size && scores[right] < scores[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(products, scores, smallest, index);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] products, float[] scores, int i, int j) {
+        int product = products[i];
+        products[i] = products[j];
+        products[j] = product;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private class RefreshTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] products;
+        private final int from;
+        private final int to;
+
+        RefreshTask(int[] products, int from, int to) {
+            this.products = products;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    computeNeighbors(products[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RefreshTask(products, from, middle), new RefreshTask(products, middle, to));
+        }
+    }
+
+    // Строка матрицы: совместные встречаемости с другими товарами и готовые соседи
+    private static class Row {
+        private final IntIntMap coCounts = new IntIntMap();
+        private volatile int itemCount;
+        private volatile boolean dirty;
+        private volatile Neighbors neighbors;
+    }
+
+    private record Neighbors(int[] products, float[] scores) {
+    }
+}
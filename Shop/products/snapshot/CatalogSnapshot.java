@@ -0,0 +1,423 @@
+package Shop.products.snapshot;
+
+import Shop.products.index.IntList;
+import Shop.products.index.Postings;
+import Shop.products.index.StringDictionary;
+import Shop.products.text.SearchText;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Бинарный снапшот каталога, открываемый через FileChannel.map. Каталог обслуживает запросы прямо из отображения:
+// товар собирается в куче только тогда, когда его отдают наружу, а индексы читаются готовыми из файла.
+// В куче при открытии оказываются только словари производителей и категорий - их на порядки меньше, чем товаров.
+// Формат (little-endian, каждая секция выровнена по 8 байтам, смещения - long):
+//   заголовок: magic, version, счетчики и смещения секций (см. HEADER_SIZE)
+//   текст: байты UTF-8 ID и названия каждого товара подряд
+//   строки товаров по ROW_SIZE байт: смещение текста, цена, начало категорий, длины ID и названия,
+//     производитель и число категорий (ссылки на словари)
+//   категории товаров: int-ссылки на словарь категорий
+//   словари: производители и категории как есть и в нормализованном виде (по ним ищут фильтры)
+//   индекс цен: номера товаров по возрастанию (цена, номер)
+//   хэш-таблица ID: открытая адресация, в ячейке номер товара + 1
+//   n-граммы: отсортированные ключи, начала posting list'ов и сами списки номеров
+//   фасеты: для каждого нормализованного производителя и категории - отсортированный список номеров
+// Номер товара в снапшоте - его порядковый номер в каталоге
+public class CatalogSnapshot {
+    static final int MAGIC = 0x53484F50; // "SHOP"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 112;
+    static final int ROW_SIZE = 40;
+    static final int GRAM_LENGTH = 3;
+
+    private final MappedRegions data;
+    private final int productCount;
+    private final int gramCount;
+    private final int hashCapacity;
+    private final long textStart;
+    private final long rowsStart;
+    private final long categoryRefsStart;
+    private final long priceOrderStart;
+    private final long idHashStart;
+    private final long gramKeysStart;
+    private final long gramStartsStart;
+    private final long gramPostingsStart;
+    private final long manufacturerPostingsStart;
+    private final long categoryPostingsStart;
+
+    // Словари - единственное, что читается в кучу целиком
+    private final String[] manufacturers;
+    private final int[] manufacturerFolded;
+    private final String[] categories;
+    private final int[] categoryFolded;
+    private final StringDictionary foldedManufacturers;
+    private final StringDictionary foldedCategories;
+
+    private CatalogSnapshot(MappedRegions data) {
+        this.data = data;
+        if (data.size() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Файл не является снапшотом каталога версии " + VERSION);
+        }
+        this.productCount = data.getInt(8);
+        int manufacturerCount = data.getInt(12);
+        int categoryCount = data.getInt(16);
+        int foldedManufacturerCount = data.getInt(20);
+        int foldedCategoryCount = data.getInt(24);
+        this.gramCount = data.getInt(28);
+        this.hashCapacity = data.getInt(32);
+        this.textStart = data.getLong(40);
+        this.rowsStart = data.getLong(48);
+        this.categoryRefsStart = data.getLong(56);
+        long dictionaryStart = data.getLong(64);
+        this.priceOrderStart = data.getLong(72);
+        this.idHashStart = data.getLong(80);
+        this.gramKeysStart = data.getLong(88);
+        this.gramStartsStart = gramKeysStart + 8L * gramCount;
+        this.gramPostingsStart = gramStartsStart + 8L * (gramCount + 1);
+        this.manufacturerPostingsStart = data.getLong(96);
+        this.categoryPostingsStart = data.getLong(104);
+
+        long[] position = {dictionaryStart};
+        this.manufacturers = new String[manufacturerCount];
+        this.manufacturerFolded = new int[manufacturerCount];
+        readDisplay(position, manufacturers, manufacturerFolded);
+        this.foldedManufacturers = readFolded(position, foldedManufacturerCount);
+        this.categories = new String[categoryCount];
+        this.categoryFolded = new int[categoryCount];
+        readDisplay(position, categories, categoryFolded);
+        this.foldedCategories = readFolded(position, foldedCategoryCount);
+    }
+
+    public static CatalogSnapshot open(Path path) throws IOException {
+        return open(path, MappedRegions.DEFAULT_REGION_BITS);
+    }
+
+    // Размер области задается для проверки файлов, которые не помещаются в одну область
+    static CatalogSnapshot open(Path path, int regionBits) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Отображение остается валидным и после закрытия канала
+            return new CatalogSnapshot(MappedRegions.map(channel, regionBits));
+        }
+    }
+
+    // Значения словаря: ссылка на нормализованное значение, длина и байты, выровненные по 4
+    private void readDisplay(long[] position, String[] values, int[] folded) {
+        for (int i = 0; i < values.length; i++) {
+            folded[i] = data.getInt(position[0]);
+            position[0] += 4;
+            // Производителей и категорий немного - одна копия строки на значение, как и у товаров в куче
+            values[i] = readString(position).intern();
+        }
+    }
+
+    private StringDictionary readFolded(long[] position, int count) {
+        StringDictionary dictionary = new StringDictionary();
+        for (int i = 0; i < count; i++) {
+            dictionary.encode(readString(position).intern());
+        }
+        return dictionary;
+    }
+
+    private String readString(long[] position) {
+        int length = data.getInt(position[0]);
+        String value = string(position[0] + 4, length);
+        position[0] += 4 + align(length, 4);
+        return value;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    private long row(int row) {
+        return rowsStart + (long) ROW_SIZE * row;
+    }
+
+    public String id(int row) {
+        long at = row(row);
+        return string(textStart + data.getLong(at), data.getInt(at + 24));
+    }
+
+    public String name(int row) {
+        long at = row(row);
+        return string(textStart + data.getLong(at) + data.getInt(at + 24), data.getInt(at + 28));
+    }
+
+    public double price(int row) {
+        return data.getDouble(row(row) + 8);
+    }
+
+    public String manufacturer(int row) {
+        return manufacturers[data.getInt(row(row) + 32)];
+    }
+
+    // Категории товара в исходном виде; массив новый на каждый вызов, строки - общие со словарем
+    public String[] categoryNames(int row) {
+        long at = row(row);
+        long from = categoryRefsStart + 4 * data.getLong(at + 16);
+        String[] names = new String[data.getInt(at + 36)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = categories[data.getInt(from + 4L * i)];
+        }
+        return names;
+    }
+
+    public List<String> categories(int row) {
+        return Arrays.asList(categoryNames(row));
+    }
+
+    // Нормализованные поля товара - для точной проверки поиска по словам
+    public SearchText searchText(int row) {
+        return SearchText.of(name(row), manufacturer(row), categories(row));
+    }
+
+    // Нормализованные словари - те же значения, с которыми сравнивают фильтры. Не изменять
+    public StringDictionary getManufacturers() {
+        return foldedManufacturers;
+    }
+
+    public StringDictionary getCategories() {
+        return foldedCategories;
+    }
+
+    public int foldedManufacturerId(int row) {
+        return manufacturerFolded[data.getInt(row(row) + 32)];
+    }
+
+    public int categoryCount(int row) {
+        return data.getInt(row(row) + 36);
+    }
+
+    public int foldedCategoryId(int row, int index) {
+        return categoryFolded[data.getInt(categoryRefsStart + 4 * (data.getLong(row(row) + 16) + index))];
+    }
+
+    public boolean hasCategory(int row, int foldedCategoryId) {
+        for (int i = 0; i < categoryCount(row); i++) {
+            if (foldedCategoryId(row, i) == foldedCategoryId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Номер товара по ID или -1: один-два обращения к хэш-таблице и сравнение байтов ID без декодирования строки
+    public int findRow(String id) {
+        if (hashCapacity == 0) {
+            return -1;
+        }
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int mask = hashCapacity - 1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            int stored = data.getInt(idHashStart + 4L * slot);
+            if (stored == 0) {
+                return -1;
+            }
+            if (idEquals(stored - 1, key)) {
+                return stored - 1;
+            }
+        }
+    }
+
+    static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private boolean idEquals(int row, byte[] key) {
+        long at = row(row);
+        if (data.getInt(at + 24) != key.length) {
+            return false;
+        }
+        long from = textStart + data.getLong(at);
+        for (int i = 0; i < key.length; i++) {
+            if (data.getByte(from + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Индекс цен: позиция -> номер товара; порядок полный - по цене, при равной цене по номеру
+    public int priceOrderAt(int position) {
+        return data.getInt(priceOrderStart + 4L * position);
+    }
+
+    private double priceAt(int position) {
+        return price(priceOrderAt(position));
+    }
+
+    // Первая позиция с ценой >= price
+    public int lowerBound(double price) {
+        int low = 0;
+        int high = productCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (priceAt(mid) < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Первая позиция с ценой > price
+    public int upperBound(double price) {
+        int low = 0;
+        int high = productCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (priceAt(mid) <= price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Первая позиция с ключом (цена, номер) > (price, row) или >= при strict = false
+    public int positionAfter(double price, int row, boolean strict) {
+        int low = lowerBound(price);
+        int high = upperBound(price);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int ordinal = priceOrderAt(mid);
+            if (ordinal < row || (strict && ordinal == row)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Кандидаты поиска по словам: пересечение posting list'ов всех n-грамм запроса, от самого короткого.
+    // Совпадение n-грамм не гарантирует совпадения терма - результат проверяется по полям товара
+    public int[] keywordSearch(String[] terms) {
+        List<long[]> lists = new ArrayList<>();
+        for (String term : terms) {
+            for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+                int gram = findGram(gramKey(term, i));
+                if (gram < 0) {
+                    return new int[0];
+                }
+                lists.add(new long[]{data.getLong(gramStartsStart + 8L * gram), data.getLong(gramStartsStart + 8L * (gram + 1))});
+            }
+        }
+        // Все термы короче n-граммы - индекс не помогает, проверяем каждый товар
+        if (lists.isEmpty()) {
+            IntList result = new IntList();
+            for (int row = 0; row < productCount; row++) {
+                if (searchText(row).containsAll(terms)) {
+                    result.add(row);
+                }
+            }
+            return result.toArray();
+        }
+        lists.sort(Comparator.comparingLong(range -> range[1] - range[0]));
+        int[] candidates = postings(gramPostingsStart, lists.get(0)[0], lists.get(0)[1]);
+        for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+            candidates = Postings.intersect(candidates, postings(gramPostingsStart, lists.get(i)[0], lists.get(i)[1]));
+        }
+        int matched = 0;
+        for (int row : candidates) {
+            if (searchText(row).containsAll(terms)) {
+                candidates[matched++] = row;
+            }
+        }
+        return Arrays.copyOf(candidates, matched);
+    }
+
+    // Верхняя оценка числа совпадений - длина самого короткого posting list'а
+    public int keywordEstimate(String[] terms) {
+        long estimate = productCount;
+        for (String term : terms) {
+            for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+                int gram = findGram(gramKey(term, i));
+                if (gram < 0) {
+                    return 0;
+                }
+                estimate = Math.min(estimate,
+                        data.getLong(gramStartsStart + 8L * (gram + 1)) - data.getLong(gramStartsStart + 8L * gram));
+            }
+        }
+        return (int) estimate;
+    }
+
+    // Три символа n-граммы в одном long - ключи сравниваются числами
+    static long gramKey(String text, int from) {
+        return ((long) text.charAt(from) << 32) | ((long) text.charAt(from + 1) << 16) | text.charAt(from + 2);
+    }
+
+    private int findGram(long key) {
+        int low = 0;
+        int high = gramCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = data.getLong(gramKeysStart + 8L * mid);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Товары с нормализованным производителем или категорией с данным id, по возрастанию номера
+    public int[] manufacturerPostings(int foldedId) {
+        return facetPostings(manufacturerPostingsStart, foldedManufacturers.size(), foldedId);
+    }
+
+    public int manufacturerPostingsCount(int foldedId) {
+        return facetCount(manufacturerPostingsStart, foldedId);
+    }
+
+    public int[] categoryPostings(int foldedId) {
+        return facetPostings(categoryPostingsStart, foldedCategories.size(), foldedId);
+    }
+
+    public int categoryPostingsCount(int foldedId) {
+        return facetCount(categoryPostingsStart, foldedId);
+    }
+
+    // Секция фасета: начала списков (значений + 1), затем сами списки
+    private int[] facetPostings(long start, int valueCount, int foldedId) {
+        long from = data.getLong(start + 8L * foldedId);
+        long to = data.getLong(start + 8L * (foldedId + 1));
+        return postings(start + 8L * (valueCount + 1), from, to);
+    }
+
+    private int facetCount(long start, int foldedId) {
+        return (int) (data.getLong(start + 8L * (foldedId + 1)) - data.getLong(start + 8L * foldedId));
+    }
+
+    private int[] postings(long listsStart, long from, long to) {
+        int[] rows = new int[(int) (to - from)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = data.getInt(listsStart + 4 * (from + i));
+        }
+        return rows;
+    }
+
+    private String string(long position, int length) {
+        byte[] bytes = new byte[length];
+        data.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static long align(long value, int alignment) {
+        return (value + alignment - 1) & -alignment;
+    }
+}
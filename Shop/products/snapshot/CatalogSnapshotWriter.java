@@ -0,0 +1,406 @@
+package Shop.products.snapshot;
+
+import Shop.products.Product;
+import Shop.products.index.IntList;
+import Shop.products.text.SearchText;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntFunction;
+
+// Компилирует каталог в бинарный снапшот (формат описан в CatalogSnapshot).
+// Запуск: java Shop.products.snapshot.CatalogSnapshotWriter products.csv|products.json catalog.bin
+// Строка CSV: id;название;цена;производитель;категория1|категория2
+// JSON: массив объектов {"id", "name", "price", "manufacturer", "categories": [...]}
+public class CatalogSnapshotWriter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Использование: CatalogSnapshotWriter <products.csv|products.json> <catalog.bin>");
+            return;
+        }
+        Path source = Path.of(args[0]);
+        List<Product> products = source.getFileName().toString().endsWith(".json") ? readJson(source) : readCsv(source);
+        write(products, Path.of(args[1]));
+        System.out.println("Записано товаров: " + products.size());
+    }
+
+    public static List<Product> readCsv(Path csv) throws IOException {
+        List<Product> products = new ArrayList<>();
+        for (String line : Files.readAllLines(csv, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split(";", -1);
+            if (columns.length != 5) {
+                throw new IllegalArgumentException("Некорректная строка CSV: " + line);
+            }
+            List<String> categories = columns[4].isEmpty()
+                    ? List.of()
+                    : Arrays.asList(columns[4].split("\\|"));
+            products.add(new Product(columns[0], columns[1], Double.parseDouble(columns[2]), columns[3], categories));
+        }
+        return products;
+    }
+
+    public static List<Product> readJson(Path json) throws IOException {
+        try (Reader reader = Files.newBufferedReader(json, StandardCharsets.UTF_8)) {
+            return new JsonProductReader(reader).readAll();
+        }
+    }
+
+    public static void write(List<Product> products, Path target) throws IOException {
+        int n = products.size();
+        Layout layout = new Layout(products);
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChunkedWriter out = new ChunkedWriter(channel);
+            out.putInt(CatalogSnapshot.MAGIC);
+            out.putInt(CatalogSnapshot.VERSION);
+            out.putInt(n);
+            out.putInt(layout.manufacturers.size());
+            out.putInt(layout.categories.size());
+            out.putInt(layout.foldedManufacturers.size());
+            out.putInt(layout.foldedCategories.size());
+            out.putInt(layout.gramKeys.length);
+            out.putInt(layout.idHash.length);
+            out.putInt(0);
+            out.putLong(layout.textStart);
+            out.putLong(layout.rowsStart);
+            out.putLong(layout.categoryRefsStart);
+            out.putLong(layout.dictionaryStart);
+            out.putLong(layout.priceOrderStart);
+            out.putLong(layout.idHashStart);
+            out.putLong(layout.gramsStart);
+            out.putLong(layout.manufacturerPostingsStart);
+            out.putLong(layout.categoryPostingsStart);
+
+            out.padTo(layout.textStart);
+            for (int i = 0; i < n; i++) {
+                out.put(layout.ids[i]);
+                out.put(layout.names[i]);
+            }
+
+            out.padTo(layout.rowsStart);
+            long textOffset = 0;
+            long categoryStart = 0;
+            for (int i = 0; i < n; i++) {
+                Product product = products.get(i);
+                out.putLong(textOffset);
+                out.putDouble(product.getPrice());
+                out.putLong(categoryStart);
+                out.putInt(layout.ids[i].length);
+                out.putInt(layout.names[i].length);
+                out.putInt(layout.manufacturers.get(product.getManufacturer()));
+                out.putInt(product.getCategories().size());
+                textOffset += layout.ids[i].length + layout.names[i].length;
+                categoryStart += product.getCategories().size();
+            }
+
+            out.padTo(layout.categoryRefsStart);
+            for (Product product : products) {
+                for (String category : product.getCategories()) {
+                    out.putInt(layout.categories.get(category));
+                }
+            }
+
+            out.padTo(layout.dictionaryStart);
+            writeDisplay(out, layout.manufacturers, layout.manufacturerFolded);
+            writeFolded(out, layout.foldedManufacturers);
+            writeDisplay(out, layout.categories, layout.categoryFolded);
+            writeFolded(out, layout.foldedCategories);
+
+            out.padTo(layout.priceOrderStart);
+            for (int ordinal : layout.priceOrder) {
+                out.putInt(ordinal);
+            }
+
+            out.padTo(layout.idHashStart);
+            for (int slot : layout.idHash) {
+                out.putInt(slot);
+            }
+
+            out.padTo(layout.gramsStart);
+            for (long key : layout.gramKeys) {
+                out.putLong(key);
+            }
+            writePostings(out, layout.gramKeys.length, index -> layout.grams.get(layout.gramKeys[index]));
+
+            out.padTo(layout.manufacturerPostingsStart);
+            writePostings(out, layout.manufacturerPostings.size(), layout.manufacturerPostings::get);
+            out.padTo(layout.categoryPostingsStart);
+            writePostings(out, layout.categoryPostings.size(), layout.categoryPostings::get);
+            out.flush();
+            if (out.position != layout.size) {
+                throw new IllegalStateException("Размер снапшота не сошелся с разметкой: " + out.position + " != " + layout.size);
+            }
+        }
+    }
+
+    private static void writeDisplay(ChunkedWriter out, Map<String, Integer> values, Map<String, Integer> folded) throws IOException {
+        for (String value : values.keySet()) {
+            out.putInt(folded.get(value));
+            writeString(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeFolded(ChunkedWriter out, Map<String, Integer> values) throws IOException {
+        for (String value : values.keySet()) {
+            writeString(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeString(ChunkedWriter out, byte[] bytes) throws IOException {
+        out.putInt(bytes.length);
+        out.put(bytes);
+        out.padTo(CatalogSnapshot.align(out.position, 4));
+    }
+
+    // Начала списков (число списков + 1 значение), затем сами списки подряд
+    private static void writePostings(ChunkedWriter out, int count, IntFunction<IntList> lists) throws IOException {
+        long start = 0;
+        for (int i = 0; i < count; i++) {
+            out.putLong(start);
+            start += lists.apply(i).size();
+        }
+        out.putLong(start);
+        for (int i = 0; i < count; i++) {
+            IntList list = lists.apply(i);
+            for (int j = 0; j < list.size(); j++) {
+                out.putInt(list.get(j));
+            }
+        }
+    }
+
+    // Все, что нужно знать до записи: словари, индексы и смещения секций
+    private static final class Layout {
+        final byte[][] ids;
+        final byte[][] names;
+        final Map<String, Integer> manufacturers = new LinkedHashMap<>();
+        final Map<String, Integer> manufacturerFolded = new HashMap<>();
+        final Map<String, Integer> foldedManufacturers = new LinkedHashMap<>();
+        final Map<String, Integer> categories = new LinkedHashMap<>();
+        final Map<String, Integer> categoryFolded = new HashMap<>();
+        final Map<String, Integer> foldedCategories = new LinkedHashMap<>();
+        final List<IntList> manufacturerPostings = new ArrayList<>();
+        final List<IntList> categoryPostings = new ArrayList<>();
+        final Map<Long, IntList> grams = new HashMap<>();
+        final long[] gramKeys;
+        final int[] priceOrder;
+        final int[] idHash;
+
+        final long textStart;
+        final long rowsStart;
+        final long categoryRefsStart;
+        final long dictionaryStart;
+        final long priceOrderStart;
+        final long idHashStart;
+        final long gramsStart;
+        final long manufacturerPostingsStart;
+        final long categoryPostingsStart;
+        final long size;
+
+        Layout(List<Product> products) {
+            int n = products.size();
+            ids = new byte[n][];
+            names = new byte[n][];
+            long textBytes = 0;
+            long categoryRefs = 0;
+            for (int row = 0; row < n; row++) {
+                Product product = products.get(row);
+                ids[row] = product.getId().getBytes(StandardCharsets.UTF_8);
+                names[row] = product.getName().getBytes(StandardCharsets.UTF_8);
+                textBytes += ids[row].length + names[row].length;
+                categoryRefs += product.getCategories().size();
+
+                // Нормализованные значения - те же, что кладет в колонки и индексы каталог в куче
+                SearchText text = product.getSearchText();
+                int manufacturer = encode(foldedManufacturers, manufacturerPostings, text.manufacturer());
+                add(manufacturerPostings.get(manufacturer), row);
+                manufacturers.putIfAbsent(product.getManufacturer(), manufacturers.size());
+                manufacturerFolded.putIfAbsent(product.getManufacturer(), manufacturer);
+                List<String> productCategories = product.getCategories();
+                for (int i = 0; i < productCategories.size(); i++) {
+                    int category = encode(foldedCategories, categoryPostings, text.category(i));
+                    add(categoryPostings.get(category), row);
+                    categories.putIfAbsent(productCategories.get(i), categories.size());
+                    categoryFolded.putIfAbsent(productCategories.get(i), category);
+                }
+                for (int f = 0; f < text.fieldCount(); f++) {
+                    String field = text.field(f);
+                    for (int i = 0; i + CatalogSnapshot.GRAM_LENGTH <= field.length(); i++) {
+                        add(grams.computeIfAbsent(CatalogSnapshot.gramKey(field, i), key -> new IntList()), row);
+                    }
+                }
+            }
+            gramKeys = grams.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            priceOrder = priceOrder(products);
+            idHash = idHash(products);
+
+            long gramPostings = total(grams.values());
+            textStart = CatalogSnapshot.HEADER_SIZE;
+            rowsStart = CatalogSnapshot.align(textStart + textBytes, 8);
+            categoryRefsStart = rowsStart + (long) CatalogSnapshot.ROW_SIZE * n;
+            dictionaryStart = CatalogSnapshot.align(categoryRefsStart + 4 * categoryRefs, 8);
+            long dictionaryBytes = displaySize(manufacturers) + foldedSize(foldedManufacturers)
+                    + displaySize(categories) + foldedSize(foldedCategories);
+            priceOrderStart = CatalogSnapshot.align(dictionaryStart + dictionaryBytes, 8);
+            idHashStart = CatalogSnapshot.align(priceOrderStart + 4L * n, 8);
+            gramsStart = CatalogSnapshot.align(idHashStart + 4L * idHash.length, 8);
+            manufacturerPostingsStart = CatalogSnapshot.align(
+                    gramsStart + 8L * gramKeys.length + 8L * (gramKeys.length + 1) + 4 * gramPostings, 8);
+            categoryPostingsStart = CatalogSnapshot.align(manufacturerPostingsStart
+                    + 8L * (manufacturerPostings.size() + 1) + 4L * n, 8);
+            size = categoryPostingsStart + 8L * (categoryPostings.size() + 1) + 4 * total(categoryPostings);
+        }
+
+        private static long total(Collection<IntList> lists) {
+            long total = 0;
+            for (IntList list : lists) {
+                total += list.size();
+            }
+            return total;
+        }
+
+        private static int encode(Map<String, Integer> dictionary, List<IntList> postings, String value) {
+            Integer id = dictionary.get(value);
+            if (id == null) {
+                id = dictionary.size();
+                dictionary.put(value, id);
+                postings.add(new IntList());
+            }
+            return id;
+        }
+
+        // Одно значение может встретиться в товаре несколько раз - номер в списке один
+        private static void add(IntList list, int row) {
+            if (list.size() == 0 || list.last() != row) {
+                list.add(row);
+            }
+        }
+
+        private static long displaySize(Map<String, Integer> values) {
+            return 4L * values.size() + foldedSize(values);
+        }
+
+        private static long foldedSize(Map<String, Integer> values) {
+            long size = 0;
+            for (String value : values.keySet()) {
+                size += 4 + CatalogSnapshot.align(value.getBytes(StandardCharsets.UTF_8).length, 4);
+            }
+            return size;
+        }
+
+        // Готовый индекс цен: порядковые номера товаров, отсортированные по (цена, номер)
+        private static int[] priceOrder(List<Product> products) {
+            Integer[] order = new Integer[products.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> products.get(i).getPrice())
+                    .thenComparingInt(i -> i));
+            int[] result = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                result[i] = order[i];
+            }
+            return result;
+        }
+
+        // Заполненность не выше половины - поиск по ID в среднем укладывается в одно-два обращения
+        private static int[] idHash(List<Product> products) {
+            int capacity = products.isEmpty() ? 0 : Integer.highestOneBit(Math.max(2, products.size()) * 2 - 1) * 2;
+            int[] table = new int[capacity];
+            int mask = capacity - 1;
+            for (int row = 0; row < products.size(); row++) {
+                String id = products.get(row).getId();
+                int slot = CatalogSnapshot.hash(id) & mask;
+                while (table[slot] != 0) {
+                    if (products.get(table[slot] - 1).getId().equals(id)) {
+                        throw new IllegalArgumentException("Товар " + id + " встречается в снапшоте дважды");
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = row + 1;
+            }
+            return table;
+        }
+    }
+
+    // Файл пишется порциями через один буфер: в памяти никогда нет копии всего снапшота
+    private static final class ChunkedWriter {
+        private static final int CHUNK_SIZE = 1 << 20;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        ChunkedWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+            position += Double.BYTES;
+        }
+
+        // Длинная строка может не поместиться в буфер - пишем ее по частям
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+            position += bytes.length;
+        }
+
+        // Нули до начала следующей секции; смещения секций посчитаны заранее и должны сойтись с записанным
+        void padTo(long target) throws IOException {
+            if (target < position) {
+                throw new IllegalStateException("Секция снапшота началась раньше конца предыдущей: " + target + " < " + position);
+            }
+            while (position < target) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package Shop.products.snapshot;
+
+import Shop.products.Product;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Потоковый разбор JSON-выгрузки товаров: массив объектов {"id", "name", "price", "manufacturer", "categories": [...]}.
+// Читает по символу из буферизованного Reader, поэтому файл целиком в память не попадает. Неизвестные поля пропускаются
+final class JsonProductReader {
+    private final Reader reader;
+    private int peeked = -2;
+    private long position;
+
+    JsonProductReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    List<Product> readAll() throws IOException {
+        List<Product> products = new ArrayList<>();
+        expect('[');
+        if (peekToken() == ']') {
+            next();
+            return products;
+        }
+        while (true) {
+            products.add(readProduct());
+            char c = nextToken();
+            if (c == ']') {
+                break;
+            }
+            if (c != ',') {
+                throw error("ожидалась ',' или ']'");
+            }
+        }
+        if (peekToken() != -1) {
+            throw error("лишние данные после массива");
+        }
+        return products;
+    }
+
+    private Product readProduct() throws IOException {
+        String id = null;
+        String name = null;
+        Double price = null;
+        String manufacturer = null;
+        List<String> categories = List.of();
+        expect('{');
+        if (peekToken() == '}') {
+            next();
+        } else {
+            while (true) {
+                String field = readString();
+                expect(':');
+                switch (field) {
+                    case "id" -> id = readScalar();
+                    case "name" -> name = readString();
+                    case "price" -> price = parsePrice(readScalar());
+                    case "manufacturer" -> manufacturer = readString();
+                    case "categories" -> categories = readStrings();
+                    default -> skipValue();
+                }
+                char c = nextToken();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw error("ожидалась ',' или '}'");
+                }
+            }
+        }
+        if (id == null || name == null || price == null || manufacturer == null) {
+            throw error("у товара должны быть id, name, price и manufacturer");
+        }
+        return new Product(id, name, price, manufacturer, categories);
+    }
+
+    private Double parsePrice(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw error("цена должна быть числом: " + value);
+        }
+    }
+
+    private List<String> readStrings() throws IOException {
+        List<String> values = new ArrayList<>();
+        expect('[');
+        if (peekToken() == ']') {
+            next();
+            return values;
+        }
+        while (true) {
+            values.add(readString());
+            char c = nextToken();
+            if (c == ']') {
+                return values;
+            }
+            if (c != ',') {
+                throw error("ожидалась ',' или ']'");
+            }
+        }
+    }
+
+    // ID может быть записан и строкой, и числом
+    private String readScalar() throws IOException {
+        if (peekToken() == '"') {
+            return readString();
+        }
+        StringBuilder value = new StringBuilder();
+        while (peek() != -1 && ",}] \t\r\n".indexOf(peek()) < 0) {
+            value.append(next());
+        }
+        if (value.isEmpty()) {
+            throw error("ожидалось значение");
+        }
+        return value.toString();
+    }
+
+    private void skipValue() throws IOException {
+        int c = peekToken();
+        if (c == '"') {
+            readString();
+        } else if (c == '[' || c == '{') {
+            // Вложенные массивы и объекты пропускаем по балансу скобок, не заходя внутрь строк
+            int depth = 0;
+            do {
+                char token = nextToken();
+                if (token == '"') {
+                    peeked = '"';
+                    position--;
+                    readString();
+                } else if (token == '[' || token == '{') {
+                    depth++;
+                } else if (token == ']' || token == '}') {
+                    depth--;
+                }
+            } while (depth > 0);
+        } else {
+            readScalar();
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = next();
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    char[] hex = {next(), next(), next(), next()};
+                    try {
+                        value.append((char) Integer.parseInt(new String(hex), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("неверная escape-последовательность");
+                    }
+                }
+                default -> value.append(escaped);
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextToken() != expected) {
+            throw error("ожидался '" + expected + "'");
+        }
+    }
+
+    // Следующий значимый символ без пробелов; -1 - конец файла
+    private int peekToken() throws IOException {
+        while (peek() != -1 && Character.isWhitespace(peek())) {
+            next();
+        }
+        return peek();
+    }
+
+    private char nextToken() throws IOException {
+        peekToken();
+        return next();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+
+    private char next() throws IOException {
+        int c = peek();
+        if (c == -1) {
+            throw error("неожиданный конец");
+        }
+        peeked = -2;
+        position++;
+        return (char) c;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Некорректный JSON (позиция " + position + "): " + message);
+    }
+}
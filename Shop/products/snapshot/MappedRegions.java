@@ -0,0 +1,72 @@
+package Shop.products.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Файл, отображенный в память несколькими областями: один MappedByteBuffer адресуется int'ом и не покрывает больше 2 ГБ.
+// Размер области - степень двойки, кратная 8, а писатель выравнивает числа по их размеру,
+// поэтому int, long и double никогда не пересекают границу областей; байты строк могут - их читаем по частям
+final class MappedRegions {
+    static final int DEFAULT_REGION_BITS = 30;
+
+    private final ByteBuffer[] regions;
+    private final int regionBits;
+    private final long regionMask;
+    private final long size;
+
+    private MappedRegions(ByteBuffer[] regions, int regionBits, long size) {
+        this.regions = regions;
+        this.regionBits = regionBits;
+        this.regionMask = (1L << regionBits) - 1;
+        this.size = size;
+    }
+
+    static MappedRegions map(FileChannel channel, int regionBits) throws IOException {
+        if (regionBits < 3 || regionBits > 30) {
+            throw new IllegalArgumentException("Размер области должен быть от 2^3 до 2^30 байт: 2^" + regionBits);
+        }
+        long size = channel.size();
+        long regionSize = 1L << regionBits;
+        ByteBuffer[] regions = new ByteBuffer[(int) ((size + regionSize - 1) >>> regionBits)];
+        for (int i = 0; i < regions.length; i++) {
+            long offset = (long) i << regionBits;
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(regionSize, size - offset))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new MappedRegions(regions, regionBits, size);
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte getByte(long position) {
+        return regions[(int) (position >>> regionBits)].get((int) (position & regionMask));
+    }
+
+    int getInt(long position) {
+        return regions[(int) (position >>> regionBits)].getInt((int) (position & regionMask));
+    }
+
+    long getLong(long position) {
+        return regions[(int) (position >>> regionBits)].getLong((int) (position & regionMask));
+    }
+
+    double getDouble(long position) {
+        return regions[(int) (position >>> regionBits)].getDouble((int) (position & regionMask));
+    }
+
+    void get(long position, byte[] target) {
+        int copied = 0;
+        while (copied < target.length) {
+            long at = position + copied;
+            ByteBuffer region = regions[(int) (at >>> regionBits)];
+            int offset = (int) (at & regionMask);
+            int length = Math.min(target.length - copied, region.limit() - offset);
+            region.get(offset, target, copied, length);
+            copied += length;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package Shop.products.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Нормализованные поля товара для поиска - считаются один раз при создании товара.
+// Фильтры и индексы сравнивают с ними уже нормализованные запросы: на каждый товар ни toLowerCase, ни выделений памяти
+public final class SearchText {
+    public static final SearchText EMPTY = new SearchText("", new String[0], new String[0]);
+
+    private final String manufacturer;
+    private final String[] categories;
+    // Название, производитель, категории и латинская запись тех из них, что на кириллице
+    private final String[] fields;
+
+    private SearchText(String manufacturer, String[] categories, String[] fields) {
+        this.manufacturer = manufacturer;
+        this.categories = categories;
+        this.fields = fields;
+    }
+
+    public static SearchText of(String name, String manufacturer, List<String> categories) {
+        String[] foldedCategories = new String[categories.size()];
+        List<String> fields = new ArrayList<>(2 * (categories.size() + 2));
+        addField(fields, TextNormalizer.fold(name));
+        // Нормализованные производитель и категории повторяются у тысяч товаров - храним по одной копии
+        String foldedManufacturer = TextNormalizer.fold(manufacturer).intern();
+        addField(fields, foldedManufacturer);
+        for (int i = 0; i < foldedCategories.length; i++) {
+            foldedCategories[i] = TextNormalizer.fold(categories.get(i)).intern();
+            addField(fields, foldedCategories[i]);
+        }
+        return new SearchText(foldedManufacturer, foldedCategories, fields.toArray(new String[0]));
+    }
+
+    private static void addField(List<String> fields, String folded) {
+        fields.add(folded);
+        String latin = TextNormalizer.transliterate(folded);
+        if (latin != null) {
+            fields.add(latin);
+        }
+    }
+
+    public String manufacturer() {
+        return manufacturer;
+    }
+
+    public int categoryCount() {
+        return categories.length;
+    }
+
+    public String category(int index) {
+        return categories[index];
+    }
+
+    public boolean hasCategory(String folded) {
+        for (String category : categories) {
+            if (category.equals(folded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int fieldCount() {
+        return fields.length;
+    }
+
+    public String field(int index) {
+        return fields[index];
+    }
+
+    public boolean contains(String term) {
+        for (String field : fields) {
+            if (field.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Каждый терм запроса (см. TextNormalizer.terms) встречается хотя бы в одном поле
+    public boolean containsAll(String[] terms) {
+        for (String term : terms) {
+            if (!contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,146 @@
+package Shop.products.text;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Нормализация текста для поиска по каталогу: нижний регистр, ё -> е, транслитерация и простой стемминг.
+// Поля товара нормализуются один раз при индексации (см. SearchText), запрос - один раз при создании фильтра
+public final class TextNormalizer {
+    // Транслитерация кириллицы латиницей, как ее набирают покупатели: "ноутбук" -> "noutbuk", "наушники" -> "naushniki"
+    private static final String[] TRANSLIT = {
+            "a", "b", "v", "g", "d", "e", "zh", "z", "i", "y", "k", "l", "m", "n", "o", "p",
+            "r", "s", "t", "u", "f", "h", "ts", "ch", "sh", "sch", "", "y", "", "e", "yu", "ya"
+    };
+    // Окончания прилагательных, существительных и глаголов; из подходящих отбрасывается самое длинное
+    private static final String[] RUSSIAN_ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ией", "ием", "иях",
+            "ать", "ять", "ить", "еть", "ают", "яют", "ует", "ает",
+            "ая", "яя", "ое", "ее", "ые", "ие", "ый", "ий", "ой", "ую", "юю", "ых", "их", "ым", "им",
+            "ом", "ем", "ей", "ов", "ев", "ах", "ях", "ам", "ям", "ия", "ию", "ье", "ья",
+            "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й"
+    };
+    // Русские окончания в латинской записи - для запросов вроде "noutbuki"
+    private static final String[] TRANSLIT_ENDINGS = {
+            "yami", "ami", "ogo", "ego", "ymi", "imi",
+            "ov", "ev", "ah", "yah", "am", "yam", "om", "em", "ye", "ie", "yy", "iy", "oy", "yh", "ih",
+            "a", "ya", "o", "e", "y", "i", "u", "yu"
+    };
+    // Основа короче не обрезается: иначе запрос теряет смысл и не покрывается n-граммами индекса
+    private static final int MIN_CYRILLIC_STEM = 3;
+    private static final int MIN_LATIN_STEM = 4;
+
+    private TextNormalizer() {
+    }
+
+    // Нижний регистр и ё -> е. Уже нормализованная строка возвращается как есть, без копирования
+    public static String fold(String text) {
+        int i = 0;
+        while (i < text.length() && fold(text.charAt(i)) == text.charAt(i)) {
+            i++;
+        }
+        if (i == text.length()) {
+            return text;
+        }
+        char[] chars = text.toCharArray();
+        for (; i < chars.length; i++) {
+            chars[i] = fold(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    // Латинская запись нормализованной строки или null, если в ней нет кириллицы
+    public static String transliterate(String folded) {
+        StringBuilder result = null;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (c >= 'а' && c <= 'я') {
+                if (result == null) {
+                    result = new StringBuilder(folded.length() + 8).append(folded, 0, i);
+                }
+                result.append(TRANSLIT[c - 'а']);
+            } else if (result != null) {
+                result.append(c);
+            }
+        }
+        return result == null ? null : result.toString();
+    }
+
+    // Термы запроса: слова, нормализованные и с отброшенным окончанием, без повторов.
+    // Товар подходит, если каждый терм - подстрока какого-нибудь его поля, поэтому "Ноутбуки" находит "Ноутбук"
+    public static String[] terms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : words(fold(query))) {
+            terms.add(stem(word));
+        }
+        return terms.toArray(new String[0]);
+    }
+
+    private static List<String> words(String folded) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean letter = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // Отбрасывает одно окончание. Терм ищется как подстрока, поэтому основа, общая для всех форм слова,
+    // находит любую из них; словаря форм не нужно
+    static String stem(String word) {
+        char last = word.charAt(word.length() - 1);
+        if (last >= 'а' && last <= 'я') {
+            return stripEnding(word, RUSSIAN_ENDINGS, MIN_CYRILLIC_STEM);
+        }
+        if (last >= 'a' && last <= 'z') {
+            return stripEnding(stemEnglish(word), TRANSLIT_ENDINGS, MIN_LATIN_STEM);
+        }
+        return word;
+    }
+
+    // Множественное число и -ing/-ed: "batteries" -> "battery", "cases" -> "case", "charging" -> "charg"
+    private static String stemEnglish(String word) {
+        int length = word.length();
+        if (word.endsWith("ies") && length > 4) {
+            return word.substring(0, length - 3) + "y";
+        }
+        if (word.endsWith("sses")) {
+            return word.substring(0, length - 2);
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && length > MIN_LATIN_STEM) {
+            return word.substring(0, length - 1);
+        }
+        if (word.endsWith("ing") && length - 3 >= MIN_LATIN_STEM) {
+            return word.substring(0, length - 3);
+        }
+        if (word.endsWith("ed") && length - 2 >= MIN_LATIN_STEM) {
+            return word.substring(0, length - 2);
+        }
+        return word;
+    }
+
+    private static String stripEnding(String word, String[] endings, int minStem) {
+        String longest = "";
+        for (String ending : endings) {
+            if (ending.length() > longest.length() && word.endsWith(ending) && word.length() - ending.length() >= minStem) {
+                longest = ending;
+            }
+        }
+        return word.substring(0, word.length() - longest.length());
+    }
+}
@@ -0,0 +1,301 @@
+package Shop;
+
+import Shop.ids.BlockIdGenerator;
+import Shop.ids.IdGenerator;
+import Shop.ids.SnowflakeIdGenerator;
+import Shop.orders.Order;
+import Shop.orders.OrderStatus;
+import Shop.persistence.EventLog;
+import Shop.persistence.EventType;
+import Shop.persistence.FsyncPolicy;
+import Shop.persistence.Journal;
+import Shop.persistence.ShopEvent;
+import Shop.products.CatalogUpdate;
+import Shop.products.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalRecoveryTest {
+    @TempDir
+    Path dataDir;
+
+    private final List<Journal> journals = new ArrayList<>();
+    private final List<ShopSystem> shops = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() {
+        shops.forEach(ShopSystem::close);
+        journals.forEach(Journal::close);
+    }
+
+    private ShopSystem start() throws IOException {
+        return start(new SnowflakeIdGenerator(1));
+    }
+
+    private ShopSystem start(IdGenerator idGenerator) throws IOException {
+        Journal journal = new Journal(dataDir, FsyncPolicy.EVERY_BATCH);
+        journals.add(journal);
+        ShopSystem shop = new ShopSystem(idGenerator, journal);
+        shops.add(shop);
+        return shop;
+    }
+
+    private Journal journal() {
+        return journals.get(journals.size() - 1);
+    }
+
+    private void stop() {
+        journal().close();
+    }
+
+    @Test
+    void restoresStateFromSnapshotAndLaterSegments() throws IOException {
+        ShopSystem shop = start();
+        shop.registerUser("alice", "alice-secret");
+        shop.registerUser("bob", "bob-secret");
+        Session alice = shop.login("alice", "alice-secret").orElseThrow();
+        Session bob = shop.login("bob", "bob-secret").orElseThrow();
+
+        shop.addToCart(alice, product(shop, "3"), 2);
+        shop.placeOrder(alice);
+        Order order = shop.getUserOrders(alice).get(0);
+        shop.updateOrderStatus(order, OrderStatus.SHIPPED);
+        shop.addToCart(alice, product(shop, "1"), 2);
+        shop.addToCart(alice, product(shop, "2"), 3);
+        shop.removeFromCart(alice, product(shop, "2"), 1);
+        shop.setStock(product(shop, "4"), 7);
+        shop.rateProduct(alice, product(shop, "1"), 4);
+        shop.rateProduct(bob, product(shop, "2"), 5);
+        shop.rateProduct(bob, product(shop, "2"), 3);
+        shop.changeUsername(bob, "robert");
+        shop.changePassword(bob, "robert-secret");
+
+        journal().snapshot(StateCompactor::new);
+
+        shop.addToCart(bob, product(shop, "5"), 1);
+        shop.rateProduct(alice, product(shop, "1"), 2);
+        Map<String, Object> expected = state(shop);
+        stop();
+
+        ShopSystem recovered = start();
+        assertEquals(expected, state(recovered));
+        assertTrue(recovered.login("robert", "robert-secret").isPresent());
+        assertFalse(recovered.login("bob", "bob-secret").isPresent());
+        assertEquals(98, recovered.getInventory().getStock(product(recovered, "3")));
+
+        // Снапшот поверх предыдущего снапшота дает то же состояние
+        journal().snapshot(StateCompactor::new);
+        stop();
+        assertEquals(expected, state(start()));
+    }
+
+    // Часы после перезапуска отстают от тех, что выдали сохраненные ID: новые ID все равно идут выше них
+    @Test
+    void generatedIdsStayAboveRecoveredOnes() throws IOException {
+        SnowflakeIdGenerator ahead = new SnowflakeIdGenerator(1);
+        ahead.advancePast(1L << 62);
+        ShopSystem shop = start(ahead);
+        shop.registerUser("hank", "hank-secret");
+        Session hank = shop.login("hank", "hank-secret").orElseThrow();
+        shop.addToCart(hank, product(shop, "4"), 1);
+        shop.placeOrder(hank);
+        long recoveredUser = idNumber(hank.getUser().getUserId(), "user");
+        long recoveredOrder = idNumber(shop.getUserOrders(hank).get(0).getOrderId(), "order");
+        stop();
+
+        ShopSystem restarted = start(new BlockIdGenerator(new SnowflakeIdGenerator(1), 64));
+        restarted.registerUser("ivy", "ivy-secret");
+        Session ivy = restarted.login("ivy", "ivy-secret").orElseThrow();
+        restarted.addToCart(ivy, product(restarted, "4"), 1);
+        restarted.placeOrder(ivy);
+        assertTrue(idNumber(ivy.getUser().getUserId(), "user") > Math.max(recoveredUser, recoveredOrder));
+        assertTrue(idNumber(restarted.getUserOrders(ivy).get(0).getOrderId(), "order") > recoveredOrder);
+    }
+
+    private static long idNumber(String id, String prefix) {
+        assertTrue(id.startsWith(prefix), id);
+        return Long.parseLong(id.substring(prefix.length()));
+    }
+
+    @Test
+    void catalogChangesSurviveRestart() throws IOException {
+        ShopSystem shop = start();
+        shop.registerUser("erin", "erin-secret");
+        Session erin = shop.login("erin", "erin-secret").orElseThrow();
+
+        shop.putProduct(new Product("6", "Планшет", 30000, "Tech", List.of("электроника")));
+        shop.addToCart(erin, product(shop, "6"), 1);
+        shop.addToCart(erin, product(shop, "1"), 1);
+        shop.placeOrder(erin);
+        long orderTotal = shop.getUserOrders(erin).get(0).getTotalPriceMinor();
+        // Новая цена не меняет итог уже оформленного заказа - ни сейчас, ни после перезапуска
+        shop.putProduct(new Product("1", "Смартфон", 45000, "Tech", List.of("электроника", "телефоны")));
+        shop.putProduct(new Product("1", "Смартфон", 44000, "Tech", List.of("электроника", "телефоны")));
+        shop.setStock(product(shop, "6"), 5);
+        shop.rateProduct(erin, product(shop, "6"), 4);
+        journal().snapshot(StateCompactor::new);
+
+        shop.addToCart(erin, product(shop, "2"), 1);
+        shop.rateProduct(erin, product(shop, "2"), 5);
+        assertTrue(shop.removeProduct("2"));
+        assertFalse(shop.removeProduct("2"));
+        Map<String, Object> expected = state(shop);
+        stop();
+
+        ShopSystem recovered = start();
+        assertEquals(expected, state(recovered));
+        assertEquals(orderTotal, recovered.getAllOrders().get(0).getTotalPriceMinor());
+        assertEquals(44000, product(recovered, "1").getPrice());
+        assertEquals(null, product(recovered, "2"));
+        assertEquals(5, recovered.getInventory().getStock(product(recovered, "6")));
+
+        journal().snapshot(StateCompactor::new);
+        stop();
+        assertEquals(expected, state(start()));
+    }
+
+    @Test
+    void catalogBatchesSurviveRestartAndReplayAsFewVersions() throws IOException {
+        ShopSystem shop = start();
+        shop.registerUser("gina", "gina-secret");
+        Session gina = shop.login("gina", "gina-secret").orElseThrow();
+
+        CatalogUpdate update = new CatalogUpdate().remove("4");
+        for (int i = 0; i < 500; i++) {
+            update.put(new Product("bulk" + i, "Товар " + i, 100 + i, "Bulk", List.of("пакет", "c" + (i % 3))));
+        }
+        shop.applyCatalogUpdate(update);
+        for (int i = 0; i < 500; i++) {
+            shop.putProduct(new Product("single" + i, "Одиночный " + i, 10 + i, "Single", List.of()));
+        }
+        shop.addToCart(gina, product(shop, "bulk7"), 2);
+        shop.addToCart(gina, product(shop, "single9"), 1);
+        Map<String, Object> expected = state(shop);
+        stop();
+
+        ShopSystem recovered = start();
+        assertEquals(expected, state(recovered));
+        assertEquals(null, product(recovered, "4"));
+        // Каждый товар своей версией - это 1000 версий; пакетами - несколько
+        assertTrue(recovered.getProductCatalog().getVersion() < 10, "версий: " + recovered.getProductCatalog().getVersion());
+
+        journal().snapshot(StateCompactor::new);
+        stop();
+        assertEquals(expected, state(start()));
+    }
+
+    // Журнал, записанный, когда изменения каталога в него еще не попадали, ссылается на неизвестные товары
+    @Test
+    void skipsEventsForUnknownProducts() throws IOException {
+        try (EventLog log = new EventLog(dataDir, FsyncPolicy.EVERY_BATCH)) {
+            log.start();
+            log.append(ShopEvent.of(EventType.USER_REGISTERED, "user1", "frank", "frank-secret"));
+            log.append(ShopEvent.of(EventType.CART_ADDED, "user1", "999", "1"));
+            log.append(ShopEvent.of(EventType.PRODUCT_RATED, "user1", "999", "5"));
+            log.append(ShopEvent.of(EventType.ORDER_PLACED, "order1", "user1", "999", "2", "4", "1"));
+            log.append(ShopEvent.of(EventType.ORDER_PLACED, "order2", "user1", "999", "1"));
+            log.append(ShopEvent.of(EventType.ORDER_STATUS_CHANGED, "order2", "SHIPPED"));
+            log.append(ShopEvent.of(EventType.STOCK_CHANGED, "999", "3"));
+            log.awaitDurable(log.append(ShopEvent.of(EventType.CART_ADDED, "user2", "1", "1")));
+        }
+
+        ShopSystem shop = start();
+        User frank = shop.login("frank", "frank-secret").orElseThrow().getUser();
+        assertTrue(frank.getShoppingCart().getItems().isEmpty());
+        assertTrue(frank.getRatings().isEmpty());
+        assertEquals(1, shop.getAllOrders().size());
+        assertEquals(Map.of("4", 1), ids(shop.getAllOrders().get(0).getItems()));
+
+        Map<String, Object> expected = state(shop);
+        journal().snapshot(StateCompactor::new);
+        stop();
+        assertEquals(expected, state(start()));
+    }
+
+    @Test
+    void storesOnlyPasswordHashes() throws IOException {
+        ShopSystem shop = start();
+        shop.registerUser("carol", "carol-password-1");
+        Session carol = shop.login("carol", "carol-password-1").orElseThrow();
+        shop.changePassword(carol, "carol-password-2");
+        journal().snapshot(StateCompactor::new);
+        shop.changePassword(carol, "carol-password-3");
+        stop();
+
+        assertFalse(filesContain("carol-password"));
+        assertTrue(start().login("carol", "carol-password-3").isPresent());
+    }
+
+    @Test
+    void hashesPlaintextPasswordsFromOlderJournals() throws IOException {
+        try (EventLog log = new EventLog(dataDir, FsyncPolicy.EVERY_BATCH)) {
+            log.start();
+            log.awaitDurable(log.append(ShopEvent.of(EventType.USER_REGISTERED, "user1", "dave", "dave-legacy-password")));
+        }
+
+        ShopSystem shop = start();
+        assertTrue(shop.login("dave", "dave-legacy-password").isPresent());
+        journal().snapshot(StateCompactor::new);
+        stop();
+
+        assertFalse(filesContain("dave-legacy-password"));
+        assertTrue(start().login("dave", "dave-legacy-password").isPresent());
+    }
+
+    private static Product product(ShopSystem shop, String id) {
+        return shop.getProductCatalog().getProductById(id);
+    }
+
+    // Состояние, которое должно пережить перезапуск, в сравнимом виде
+    private static Map<String, Object> state(ShopSystem shop) {
+        Map<String, Object> state = new TreeMap<>();
+        for (User user : shop.getAllUsers()) {
+            state.put("user " + user.getUserId(), user.getUsername());
+            state.put("cart " + user.getUserId(), ids(user.getShoppingCart().getItems()));
+            state.put("cartTotal " + user.getUserId(), user.getShoppingCart().getTotalPriceMinor());
+            state.put("ratings " + user.getUserId(), ids(user.getRatings()));
+        }
+        for (Order order : shop.getAllOrders()) {
+            state.put("order " + order.getOrderId(), order.getUserId() + " " + order.getStatus() + " "
+                    + order.getTotalPriceMinor() + " " + ids(order.getItems()) + " " + order.getOrderDate().getTime());
+        }
+        state.put("stock", new TreeMap<>(shop.getInventory().getAll()));
+        for (Product product : shop.getProductCatalog().getAllProducts()) {
+            state.put("rating " + product.getId(), product.getRatingCount() + " " + product.getAverageRating());
+        }
+        return state;
+    }
+
+    private static <V> Map<String, V> ids(Map<Product, V> items) {
+        Map<String, V> result = new TreeMap<>();
+        items.forEach((product, value) -> result.put(product.getId(), value));
+        return result;
+    }
+
+    // Журнал и снапшоты двоичные, но строковые поля в них - обычный UTF-8
+    private boolean filesContain(String text) throws IOException {
+        try (Stream<Path> files = Files.list(dataDir)) {
+            for (Path file : files.toList()) {
+                if (new String(Files.readAllBytes(file), StandardCharsets.UTF_8).contains(text)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
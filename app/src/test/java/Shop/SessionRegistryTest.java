@@ -0,0 +1,65 @@
+package Shop;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SessionRegistryTest {
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final SessionRegistry registry = new SessionRegistry(100, 1_000, now::get);
+    private final User user = new User("u1", "alice", "secret");
+
+    @Test
+    void idleSessionExpiresAndAccessExtendsIt() {
+        Session session = registry.open(user);
+
+        now.addAndGet(90);
+        assertSame(session, registry.get(session.getSessionId()));
+        now.addAndGet(90);
+        assertSame(session, registry.get(session.getSessionId()));
+        now.addAndGet(100);
+        assertNull(registry.get(session.getSessionId()));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void activeSessionStillExpiresAfterMaxAge() {
+        Session session = registry.open(user);
+        for (int i = 0; i < 10; i++) {
+            now.addAndGet(99);
+            assertSame(session, registry.get(session.getSessionId()));
+        }
+        now.addAndGet(10);
+        assertNull(registry.get(session.getSessionId()));
+    }
+
+    @Test
+    void evictionRemovesOnlyExpiredSessions() {
+        Session stale = registry.open(user);
+        now.addAndGet(60);
+        Session fresh = registry.open(user);
+        now.addAndGet(60);
+
+        assertEquals(1, registry.evictExpired());
+        assertEquals(1, registry.size());
+        assertNull(registry.get(stale.getSessionId()));
+        assertSame(fresh, registry.get(fresh.getSessionId()));
+    }
+
+    @Test
+    void closedSessionIsGone() {
+        Session session = registry.open(user);
+        registry.close(session);
+        assertNull(registry.get(session.getSessionId()));
+    }
+
+    @Test
+    void rejectsNonPositiveTimeouts() {
+        assertThrows(IllegalArgumentException.class, () -> new SessionRegistry(0, 1_000, now::get));
+    }
+}
@@ -0,0 +1,133 @@
+package Shop;
+
+import Shop.ids.SnowflakeIdGenerator;
+import Shop.orders.CheckoutResult;
+import Shop.products.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShopSystemTest {
+    private final ShopSystem shop = new ShopSystem(new SnowflakeIdGenerator(1));
+
+    @AfterEach
+    void closeShop() {
+        shop.close();
+    }
+
+    // После close() от магазина не остается ни одного фонового потока
+    @Test
+    void closeStopsBackgroundThreads() throws InterruptedException {
+        shop.close();
+        ShopSystem other = new ShopSystem(new SnowflakeIdGenerator(2));
+        other.getProductCatalog().getRecommendationEngine().refresh();
+        assertFalse(backgroundThreads().isEmpty());
+
+        other.close();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!backgroundThreads().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(), backgroundThreads());
+    }
+
+    private static List<String> backgroundThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(Thread::isAlive)
+                .map(Thread::getName)
+                .filter(name -> name.startsWith("checkout-") || name.startsWith("session-evictor")
+                        || name.startsWith("recommendations-refresh") || name.startsWith("catalog-loader"))
+                .sorted()
+                .toList();
+    }
+
+    @Test
+    void adminRightsFollowAccountNotUsername() {
+        assertTrue(shop.registerUser("alice", "secret"));
+        Session alice = shop.login("alice", "secret").orElseThrow();
+        Session admin = shop.login("admin", "admin").orElseThrow();
+
+        assertTrue(shop.changeUsername(admin, "root"));
+        assertTrue(shop.changeUsername(alice, "admin"));
+
+        assertTrue(shop.isAdmin(admin));
+        assertFalse(shop.isAdmin(alice));
+        assertFalse(shop.isAdmin(shop.login("admin", "secret").orElseThrow()));
+    }
+
+    @Test
+    void ratingOutsideRangeIsRejectedBeforeAnyChange() {
+        shop.registerUser("bob", "secret");
+        Session bob = shop.login("bob", "secret").orElseThrow();
+        Product product = shop.getProductCatalog().getProductById("1");
+
+        assertThrows(IllegalArgumentException.class, () -> shop.rateProduct(bob, product, 0));
+        assertThrows(IllegalArgumentException.class, () -> shop.rateProduct(bob, product, 5.5));
+        assertNull(bob.getUser().getRatings().get(product));
+        assertEquals(0, product.getRatingCount());
+
+        shop.rateProduct(bob, product, Product.MIN_RATING);
+        shop.rateProduct(bob, product, Product.MAX_RATING);
+        assertEquals(1, product.getRatingCount());
+        assertEquals(5.0, product.getAverageRating());
+    }
+
+    @Test
+    void ratingsStayWithProductAcrossCatalogUpdates() {
+        shop.registerUser("carol", "secret");
+        Session carol = shop.login("carol", "secret").orElseThrow();
+        Product before = shop.getProductCatalog().getProductById("1");
+        shop.rateProduct(carol, before, 4.0);
+
+        shop.putProduct(new Product("1", before.getName(), before.getPrice() - 1, before.getManufacturer(), before.getCategories()));
+        Product after = shop.getProductCatalog().getProductById("1");
+        // Смена оценки туда и обратно не оставляет ошибки округления в сумме
+        for (int i = 0; i < 1000; i++) {
+            shop.rateProduct(carol, i % 2 == 0 ? before : after, i % 2 == 0 ? 4.1 : 4.0);
+        }
+
+        assertEquals(before.getPrice() - 1, after.getPrice());
+        assertEquals(1, after.getRatingCount());
+        assertEquals(4.0, after.getAverageRating());
+        assertEquals(4.0, before.getAverageRating());
+        assertThrows(IllegalStateException.class, () -> new Product("x", "Вне каталога", 1, "Tech", List.of()).updateRating(3.0));
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversellStock() {
+        Product product = shop.getProductCatalog().getProductById("2");
+        shop.setStock(product, 5);
+        List<Session> buyers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            shop.registerUser("buyer" + i, "secret");
+            Session buyer = shop.login("buyer" + i, "secret").orElseThrow();
+            shop.addToCart(buyer, product, 1);
+            buyers.add(buyer);
+        }
+
+        List<CompletableFuture<CheckoutResult>> results = buyers.stream().map(shop::submitOrder).toList();
+        Map<CheckoutResult.Status, Long> statuses = results.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.groupingBy(CheckoutResult::status, Collectors.counting()));
+
+        assertEquals(Map.of(CheckoutResult.Status.PLACED, 5L, CheckoutResult.Status.OUT_OF_STOCK, 15L), statuses);
+        assertEquals(0, shop.getInventory().getStock(product));
+        assertEquals(5, shop.getAllOrders().size());
+        // Отказ не трогает корзину - покупатель может повторить попытку
+        long keptCarts = buyers.stream().filter(buyer -> !buyer.getUser().getShoppingCart().getItems().isEmpty()).count();
+        assertEquals(15, keptCarts);
+        Session served = buyers.stream().filter(buyer -> buyer.getUser().getShoppingCart().getItems().isEmpty()).findFirst().orElseThrow();
+        assertEquals(CheckoutResult.Status.EMPTY_CART, shop.placeOrder(served).status());
+    }
+}
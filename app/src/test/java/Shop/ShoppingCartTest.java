@@ -0,0 +1,80 @@
+package Shop;
+
+import Shop.orders.Order;
+import Shop.products.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShoppingCartTest {
+
+    private static Product product(String id, double price) {
+        return new Product(id, "Товар " + id, price, "Tech", List.of("электроника"));
+    }
+
+    // Итог совпадает с итогом заказа, который пересчитывается по ключам корзины
+    private static void assertMatchesOrder(ShoppingCart cart) {
+        Order order = new Order("order", "user", cart.getItems());
+        assertEquals(order.getTotalPriceMinor(), cart.getTotalPriceMinor());
+    }
+
+    @Test
+    void totalIsKeptInMinorUnits() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.addProduct(product("1", 0.1), 2);
+        cart.addProduct(product("2", 0.2), 1);
+        assertEquals(40, cart.getTotalPriceMinor());
+        assertEquals(0.4, cart.getTotalPrice());
+        assertMatchesOrder(cart);
+    }
+
+    @Test
+    void addingNewVersionOfProductRepricesLine() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.addProduct(product("1", 100), 2);
+        Product repriced = product("1", 150);
+        cart.addProduct(repriced, 1);
+
+        assertEquals(Map.of(repriced, 3), cart.getItems());
+        assertEquals(150, cart.getItems().keySet().iterator().next().getPrice());
+        assertEquals(45_000, cart.getTotalPriceMinor());
+        assertMatchesOrder(cart);
+    }
+
+    @Test
+    void removingUsesPriceOfStoredVersion() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.addProduct(product("1", 100), 3);
+        cart.removeProduct(product("1", 150), 1);
+
+        assertEquals(2, cart.getItems().get(product("1", 0)));
+        assertEquals(20_000, cart.getTotalPriceMinor());
+        assertMatchesOrder(cart);
+
+        cart.removeProduct(product("1", 150), 5);
+        assertTrue(cart.getItems().isEmpty());
+        assertEquals(0, cart.getTotalPriceMinor());
+    }
+
+    @Test
+    void removingMissingProductIsNoOp() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.addProduct(product("1", 10), 1);
+        cart.removeProduct(product("2", 10), 1);
+        assertEquals(1_000, cart.getTotalPriceMinor());
+    }
+
+    @Test
+    void drainEmptiesCart() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.addProduct(product("1", 10), 1);
+        Map<Product, Integer> drained = cart.drain();
+        assertEquals(1, drained.size());
+        assertTrue(cart.getItems().isEmpty());
+        assertEquals(0, cart.getTotalPriceMinor());
+    }
+}
@@ -0,0 +1,64 @@
+package Shop.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketEstimateStaysWithinRelativeError() {
+        for (long value = 1; value < (1L << 43); value = value * 3 / 2 + 1) {
+            long estimate = LatencyHistogram.valueOf(LatencyHistogram.bucketOf(value));
+            assertTrue(Math.abs(estimate - value) <= value / 16 + 1, value + " -> " + estimate);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.bucketOf(-5));
+    }
+
+    @Test
+    void quantilesOfUniformLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(50_005_000_000L, snapshot.getSum());
+        assertClose(5_000_000, snapshot.getValueAtQuantile(0.5));
+        assertClose(9_900_000, snapshot.getValueAtQuantile(0.99));
+        assertClose(10_000_000, snapshot.getMax());
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtQuantile(0.5));
+    }
+
+    @Test
+    void concurrentRecordsAreNotLost() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(100);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(80_000, snapshot.getCount());
+        assertEquals(8_000_000, snapshot.getSum());
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue(Math.abs(expected - actual) <= expected / 16, expected + " ~ " + actual);
+    }
+}
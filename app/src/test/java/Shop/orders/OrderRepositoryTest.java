@@ -0,0 +1,108 @@
+package Shop.orders;
+
+import Shop.products.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderRepositoryTest {
+    private static final Product PRODUCT = new Product("1", "Книга", 100, "Book", List.of("книги"));
+
+    private static Order order(String orderId, String userId, long time) {
+        return new Order(orderId, userId, Map.of(PRODUCT, 1), new Date(time), OrderStatus.NEW);
+    }
+
+    @Test
+    void findsByStatusUserAndDateNewestFirst() {
+        OrderRepository repository = new OrderRepository();
+        repository.save(order("a", "u1", 1_000));
+        repository.save(order("b", "u2", 2_000));
+        repository.save(order("c", "u1", 3_000));
+        // Та же миллисекунда, что у "c" - заказы не перетирают друг друга
+        repository.save(order("d", "u2", 3_000));
+
+        assertEquals(4, repository.size());
+        assertEquals(List.of("a", "c"), ids(repository.findByUser("u1")));
+        assertEquals(2, repository.countByUser("u2"));
+        assertEquals(List.of("d", "c", "b", "a"), ids(repository.find(null, null, null, null, 10)));
+        List<Order> firstPage = repository.find(null, null, null, null, 2);
+        assertEquals(List.of("d", "c"), ids(firstPage));
+        assertEquals(List.of("b", "a"), ids(repository.find(null, null, null, firstPage.get(1), 2)));
+        // Продолжение - по ключу, а не по смещению: новый заказ не сдвигает следующую страницу
+        repository.save(order("e", "u1", 4_000));
+        assertEquals(List.of("b", "a"), ids(repository.find(null, null, null, firstPage.get(1), 2)));
+        assertEquals(List.of("a"), ids(repository.find(null, null, null, repository.findById("b"), 2)));
+        assertEquals(List.of("b"), ids(repository.find(null, new Date(1_500), new Date(2_999), null, 10)));
+
+        repository.updateStatus(repository.findById("b"), OrderStatus.SHIPPED);
+        assertEquals(List.of("b"), ids(repository.find(OrderStatus.SHIPPED, null, null, null, 10)));
+        assertEquals(List.of("e", "d", "c", "a"), ids(repository.find(OrderStatus.NEW, null, null, null, 10)));
+    }
+
+    @Test
+    void rejectsInvalidTransitionsAndKeepsIndexes() {
+        OrderRepository repository = new OrderRepository();
+        Order order = order("a", "u1", 1_000);
+        repository.save(order);
+
+        assertThrows(IllegalArgumentException.class, () -> repository.updateStatus(order, OrderStatus.RETURNED));
+        assertEquals(OrderStatus.NEW, order.getStatus());
+
+        repository.updateStatus(order, OrderStatus.SHIPPED);
+        repository.updateStatus(order, OrderStatus.DELIVERED);
+        repository.updateStatus(order, OrderStatus.RETURNED);
+        assertTrue(order.getStatus().isFinal());
+        assertThrows(IllegalArgumentException.class, () -> repository.updateStatus(order, OrderStatus.CANCELLED));
+        assertEquals(List.of("a"), ids(repository.find(OrderStatus.RETURNED, null, null, null, 10)));
+        assertTrue(repository.find(OrderStatus.NEW, null, null, null, 10).isEmpty());
+    }
+
+    @Test
+    void deliversStatusChangesToSubscribersInOrder() throws InterruptedException {
+        OrderRepository repository = new OrderRepository();
+        Order order = order("a", "u1", 1_000);
+        repository.save(order);
+        List<OrderStatus> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch delivered = new CountDownLatch(2);
+        try (OrderEventBus.Subscription subscription = repository.getEventBus().subscribe("test", changes ->
+                changes.forEach(change -> {
+                    received.add(change.newStatus());
+                    delivered.countDown();
+                }))) {
+            repository.updateStatus(order, OrderStatus.SHIPPED);
+            repository.updateStatus(order, OrderStatus.CANCELLED);
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(OrderStatus.SHIPPED, OrderStatus.CANCELLED), received);
+            assertEquals(0, subscription.getDropped());
+        }
+    }
+
+    @Test
+    void restoringStatusDoesNotPublish() throws InterruptedException {
+        OrderRepository repository = new OrderRepository();
+        Order order = order("a", "u1", 1_000);
+        repository.save(order);
+        CountDownLatch delivered = new CountDownLatch(1);
+        try (OrderEventBus.Subscription ignored = repository.getEventBus().subscribe("test",
+                changes -> delivered.countDown())) {
+            repository.restoreStatus(order, OrderStatus.DELIVERED);
+            assertFalse(delivered.await(200, TimeUnit.MILLISECONDS));
+            assertEquals(List.of("a"), ids(repository.find(OrderStatus.DELIVERED, null, null, null, 10)));
+        }
+    }
+
+    private static List<String> ids(List<Order> orders) {
+        return orders.stream().map(Order::getOrderId).toList();
+    }
+}
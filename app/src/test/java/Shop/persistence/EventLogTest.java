@@ -0,0 +1,48 @@
+package Shop.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class EventLogTest {
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void appendAfterCloseFailsInsteadOfHanging() throws IOException {
+        EventLog log = new EventLog(dataDir, FsyncPolicy.EVERY_BATCH);
+        log.start();
+        log.awaitDurable(log.append(ShopEvent.of(EventType.STOCK_CHANGED, "1", "5")));
+        log.close();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThrows(UncheckedIOException.class, () -> log.append(ShopEvent.of(EventType.STOCK_CHANGED, "1", "6")));
+            assertThrows(UncheckedIOException.class, log::rotate);
+        });
+
+        List<ShopEvent> replayed = new ArrayList<>();
+        try (EventLog reopened = new EventLog(dataDir, FsyncPolicy.EVERY_BATCH)) {
+            reopened.replay(0, replayed::add);
+        }
+        assertEquals(1, replayed.size());
+    }
+
+    @Test
+    void closeWithoutStartAlsoRejectsWrites() throws IOException {
+        EventLog log = new EventLog(dataDir, FsyncPolicy.EVERY_BATCH);
+        log.close();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(UncheckedIOException.class, () -> log.append(ShopEvent.of(EventType.STOCK_CHANGED, "1", "6"))));
+    }
+}
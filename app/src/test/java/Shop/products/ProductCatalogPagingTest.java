@@ -0,0 +1,119 @@
+package Shop.products;
+
+import Shop.products.filters.ManufacturerFilter;
+import Shop.products.filters.PriceRangeFilter;
+import Shop.products.filters.ProductFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductCatalogPagingTest {
+    private ProductCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ProductCatalog();
+        // Цены повторяются: порядок при равной цене задает только порядок добавления
+        for (int i = 0; i < 100; i++) {
+            catalog.addProduct(new Product("p" + i, "Товар " + i, (i % 7) * 100, "m" + (i % 3), List.of("c" + (i % 5))));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalog.close();
+    }
+
+    @Test
+    void pagesCoverEveryMatchOnceInOrder() {
+        ProductFilter filter = new ManufacturerFilter("m1");
+        for (SortOrder order : SortOrder.values()) {
+            List<Product> expected = new ArrayList<>(catalog.filterProducts(filter));
+            if (order == SortOrder.PRICE_ASC) {
+                expected.sort(Comparator.comparingDouble(Product::getPrice));
+            } else if (order == SortOrder.PRICE_DESC) {
+                // Обратный порядок целиком: при равной цене позже добавленные идут первыми
+                Collections.reverse(expected);
+                expected.sort(Comparator.comparingDouble(Product::getPrice).reversed());
+            }
+            assertEquals(ids(expected), ids(readAll(filter, order, 4)), order.name());
+        }
+    }
+
+    @Test
+    void concurrentAdditionsNeitherRepeatNorHideShownProducts() {
+        ProductFilter filter = new PriceRangeFilter(150, 400);
+        Page first = catalog.search(filter, SortOrder.PRICE_ASC, 10, null);
+        Set<String> seen = new HashSet<>(ids(first.getItems()));
+        double lastPrice = first.getItems().get(first.getItems().size() - 1).getPrice();
+
+        // Дешевле курсора - в эту выдачу уже не попадет, дороже - должен появиться на следующих страницах
+        catalog.addProduct(new Product("cheap", "Новый", 150, "m0", List.of("c0")));
+        catalog.addProduct(new Product("pricey", "Новый", 400, "m0", List.of("c0")));
+
+        List<String> rest = new ArrayList<>();
+        String token = first.getNextToken();
+        while (token != null) {
+            Page page = catalog.search(filter, SortOrder.PRICE_ASC, 10, token);
+            page.getItems().forEach(product -> rest.add(product.getId()));
+            token = page.getNextToken();
+        }
+        assertTrue(lastPrice < 400);
+        assertFalse(rest.contains("cheap"));
+        assertTrue(rest.contains("pricey"));
+        for (String id : rest) {
+            assertTrue(seen.add(id), id);
+        }
+    }
+
+    @Test
+    void streamIsLazyAndMatchesPages() {
+        ProductFilter filter = new ManufacturerFilter("m2");
+        assertEquals(ids(readAll(filter, SortOrder.PRICE_DESC, 5)),
+                ids(catalog.stream(filter, SortOrder.PRICE_DESC).toList()));
+        assertEquals(ids(readAll(filter, SortOrder.CATALOG, 3)).subList(0, 2),
+                ids(catalog.stream(filter, SortOrder.CATALOG).limit(2).toList()));
+    }
+
+    @Test
+    void rejectsTokenFromAnotherQuery() {
+        String token = catalog.search(new ManufacturerFilter("m0"), SortOrder.CATALOG, 5, null).getNextToken();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> catalog.search(new ManufacturerFilter("m1"), SortOrder.CATALOG, 5, token));
+        assertThrows(IllegalArgumentException.class,
+                () -> catalog.search(new ManufacturerFilter("m0"), SortOrder.PRICE_ASC, 5, token));
+        assertThrows(IllegalArgumentException.class,
+                () -> catalog.search(new ManufacturerFilter("m0"), SortOrder.CATALOG, 5, "не токен"));
+        assertThrows(IllegalArgumentException.class,
+                () -> catalog.search(null, SortOrder.CATALOG, 0, null));
+    }
+
+    private List<Product> readAll(ProductFilter filter, SortOrder order, int pageSize) {
+        List<Product> all = new ArrayList<>();
+        String token = null;
+        do {
+            Page page = catalog.search(filter, order, pageSize, token);
+            assertTrue(page.getItems().size() <= pageSize);
+            all.addAll(page.getItems());
+            token = page.getNextToken();
+        } while (token != null);
+        return all;
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+}
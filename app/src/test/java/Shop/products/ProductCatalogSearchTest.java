@@ -0,0 +1,64 @@
+package Shop.products;
+
+import Shop.products.filters.AndFilter;
+import Shop.products.filters.KeywordFilter;
+import Shop.products.filters.ProductFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductCatalogSearchTest {
+    private ProductCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ProductCatalog();
+        catalog.addProduct(new Product("1", "Ноутбук", 139000, "Tech", List.of("электроника", "компьютеры")));
+        catalog.addProduct(new Product("2", "Наушники", 19999, "Audio", List.of("электроника", "аудио")));
+        catalog.addProduct(new Product("3", "Ёлочная игрушка", 300, "Decor", List.of("праздник")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalog.close();
+    }
+
+    @Test
+    void findsByInflectedAndTransliteratedQueries() {
+        assertEquals(List.of("1"), ids(catalog.filterProducts(new KeywordFilter("Ноутбуки"))));
+        assertEquals(List.of("1"), ids(catalog.filterProducts(new KeywordFilter("noutbuk"))));
+        assertEquals(List.of("2"), ids(catalog.filterProducts(new KeywordFilter("naushniki"))));
+        assertEquals(List.of("3"), ids(catalog.filterProducts(new KeywordFilter("елочная"))));
+    }
+
+    @Test
+    void emptyQueryMatchesOnlyLiveProducts() {
+        catalog.removeProduct("2");
+
+        KeywordFilter empty = new KeywordFilter(" - ");
+        assertEquals(List.of("1", "3"), ids(catalog.filterProducts(empty)));
+
+        SearchResult result = catalog.searchWithFacets(empty);
+        assertEquals(List.of("1", "3"), ids(result.getProducts()));
+        assertEquals(1, result.getCategoryCounts().get("электроника"));
+        assertEquals(null, result.getCategoryCounts().get("аудио"));
+        assertEquals(Map.of("tech", 1, "decor", 1), result.getManufacturerCounts());
+    }
+
+    @Test
+    void customFiltersNeverSeeRemovedProducts() {
+        catalog.removeProduct("1");
+        ProductFilter custom = product -> product.getPrice() > 100;
+
+        assertEquals(List.of("2", "3"), ids(catalog.filterProducts(new AndFilter(List.of(new KeywordFilter(""), custom)))));
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+}
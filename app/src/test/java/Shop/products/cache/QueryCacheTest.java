@@ -0,0 +1,81 @@
+package Shop.products.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryCacheTest {
+
+    @Test
+    void frequentKeysSurviveOneOffScan() {
+        QueryCache<String, String> cache = new QueryCache<>(100, 100, value -> 1);
+        for (int i = 0; i < 100; i++) {
+            put(cache, "hot" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100; i++) {
+                cache.get("hot" + i);
+            }
+        }
+        // Поток разовых запросов не должен вытеснить постоянно повторяющиеся
+        for (int i = 0; i < 1000; i++) {
+            cache.get("once" + i);
+            put(cache, "once" + i);
+        }
+
+        int survived = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("hot" + i) != null) {
+                survived++;
+            }
+        }
+        // Обычный LRU не сохранил бы ни одного
+        assertTrue(survived >= 80, "выжило " + survived);
+    }
+
+    @Test
+    void respectsEntryAndWeightLimits() {
+        QueryCache<Integer, List<Integer>> cache = new QueryCache<>(50, 200, List::size);
+        for (int i = 0; i < 500; i++) {
+            cache.put(i, List.of(i, i, i, i, i, i, i, i, i, i), cache.version());
+        }
+        CacheStats stats = cache.stats();
+        assertTrue(stats.size() <= 50);
+        assertTrue(stats.weight() <= 200);
+        assertTrue(stats.evictions() > 0);
+
+        // Значение тяжелее всего кэша не сохраняется
+        cache.put(-1, Collections.nCopies(201, 0), cache.version());
+        assertNull(cache.get(-1));
+    }
+
+    @Test
+    void dropsPutComputedBeforeInvalidation() {
+        QueryCache<String, String> cache = new QueryCache<>(10, 10, value -> 1);
+        put(cache, "a");
+        put(cache, "b");
+
+        long stale = cache.version();
+        cache.invalidateIf(key -> key.equals("a"));
+        cache.put("c", "c", stale);
+
+        assertNull(cache.get("a"));
+        assertEquals("b", cache.get("b"));
+        assertNull(cache.get("c"));
+
+        cache.invalidateAll();
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.stats().weight());
+        assertThrows(IllegalArgumentException.class, () -> new QueryCache<String, String>(0, 1, value -> 1));
+    }
+
+    private static void put(QueryCache<String, String> cache, String key) {
+        cache.put(key, key, cache.version());
+    }
+}
@@ -0,0 +1,61 @@
+package Shop.products.index;
+
+import Shop.products.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductColumnsTest {
+
+    @Test
+    void encodesManufacturersAndCategoriesOnce() {
+        ProductColumns columns = new ProductColumns();
+        for (int i = 0; i < 100; i++) {
+            columns.append(new Product(String.valueOf(i), "Товар " + i, i, i % 2 == 0 ? "Tech" : "Audio",
+                    List.of("Электроника", i % 3 == 0 ? "Аудио" : "Компьютеры")));
+        }
+
+        assertEquals(100, columns.size());
+        assertEquals(2, columns.getManufacturers().size());
+        assertEquals(3, columns.getCategories().size());
+        assertEquals(42.0, columns.price(42));
+        assertEquals("audio", columns.getManufacturers().decode(columns.manufacturerId(41)));
+        int audio = columns.getCategories().lookup("аудио");
+        assertTrue(columns.hasCategory(3, audio));
+        assertFalse(columns.hasCategory(4, audio));
+    }
+
+    @Test
+    void copyIsIndependentAndCompactsAbandonedCategories() {
+        ProductColumns columns = new ProductColumns();
+        columns.append(new Product("1", "Мышь", 10, "Tech", List.of("а", "б")));
+        for (int i = 0; i < 10; i++) {
+            columns.set(0, new Product("1", "Мышь", 10 + i, "Tech", List.of("в")));
+        }
+
+        ProductColumns copy = columns.copy();
+        copy.set(0, new Product("1", "Мышь", 99, "Tech", List.of("г")));
+
+        assertEquals(19.0, columns.price(0));
+        assertEquals("в", columns.getCategories().decode(columns.categoryId(0, 0)));
+        assertEquals(99.0, copy.price(0));
+        assertEquals(1, copy.categoryCount(0));
+        assertEquals("г", copy.getCategories().decode(copy.categoryId(0, 0)));
+        assertEquals(-1, columns.getCategories().lookup("г"));
+    }
+
+    @Test
+    void productsShareManufacturerAndCategoryStrings() {
+        Product first = new Product("1", "Мышь", 10, new String("Tech"), List.of(new String("Электроника")));
+        Product second = new Product("2", "Клавиатура", 20, new String("Tech"), List.of(new String("Электроника")));
+
+        assertSame(first.getManufacturer(), second.getManufacturer());
+        assertSame(first.getCategories().get(0), second.getCategories().get(0));
+        assertSame(first.getSearchText().category(0), second.getSearchText().category(0));
+    }
+}
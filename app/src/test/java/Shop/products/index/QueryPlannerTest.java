@@ -0,0 +1,85 @@
+package Shop.products.index;
+
+import Shop.products.CatalogUpdate;
+import Shop.products.CatalogWriter;
+import Shop.products.Product;
+import Shop.products.ProductCatalog;
+import Shop.products.filters.CategoryFilter;
+import Shop.products.filters.KeywordFilter;
+import Shop.products.filters.ManufacturerFilter;
+import Shop.products.filters.PriceRangeFilter;
+import Shop.products.filters.ProductFilter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Индексы и планировщик должны давать ровно тот же результат, что и проверка matches по всему каталогу
+class QueryPlannerTest {
+    private static final String[] NAMES = {"Ноутбук", "Смартфон", "Наушники", "Чайник", "Кресло"};
+
+    private static ProductCatalog catalog;
+
+    @BeforeAll
+    static void setUp() {
+        // Больше порога ParallelScan, чтобы неиндексируемые фильтры проверялись параллельно
+        CatalogUpdate update = new CatalogUpdate();
+        for (int i = 0; i < ParallelScan.THRESHOLD + 5_000; i++) {
+            update.put(new Product("p" + i, NAMES[i % NAMES.length] + " " + (i % 13), (i * 37) % 10_000,
+                    "m" + (i % 11), List.of("c" + (i % 7), "c" + (i % 3 + 7))));
+        }
+        catalog = new ProductCatalog();
+        CatalogWriter writer = catalog.writer();
+        writer.apply(update);
+        writer.removeProduct("p42");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        catalog.close();
+    }
+
+    @Test
+    void indexedFiltersMatchNaiveScan() {
+        assertSameAsNaive(new PriceRangeFilter(1_000, 1_500));
+        assertSameAsNaive(new CategoryFilter("c3"));
+        assertSameAsNaive(new ManufacturerFilter("M4"));
+        assertSameAsNaive(new KeywordFilter("наушники"));
+    }
+
+    @Test
+    void combinedFiltersMatchNaiveScan() {
+        ProductFilter price = new PriceRangeFilter(2_000, 6_000);
+        ProductFilter category = new CategoryFilter("c8");
+        ProductFilter manufacturer = new ManufacturerFilter("m2");
+
+        assertSameAsNaive(price.and(category).and(manufacturer.negate()));
+        assertSameAsNaive(category.or(manufacturer).and(new KeywordFilter("чайник")));
+        assertSameAsNaive(price.negate().or(category.and(manufacturer)));
+        assertSameAsNaive(category.negate().negate());
+    }
+
+    @Test
+    void unindexedFiltersMatchNaiveScan() {
+        ProductFilter custom = product -> product.getId().endsWith("7");
+
+        assertSameAsNaive(custom);
+        assertSameAsNaive(custom.and(new CategoryFilter("c1")));
+        assertSameAsNaive(custom.or(new PriceRangeFilter(0, 100)).negate());
+    }
+
+    private static void assertSameAsNaive(ProductFilter filter) {
+        Stream<Product> naive = catalog.getAllProducts().stream().filter(filter::matches);
+        // Одиночный фильтр по цене отдается сразу в порядке цены
+        if (filter instanceof PriceRangeFilter) {
+            naive = naive.sorted(Comparator.comparingDouble(Product::getPrice));
+        }
+        List<String> expected = naive.map(Product::getId).toList();
+        assertEquals(expected, catalog.filterProducts(filter).stream().map(Product::getId).toList());
+    }
+}
@@ -0,0 +1,49 @@
+package Shop.products.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class RankingIndexTest {
+    private static final int[] NO_CATEGORIES = new int[0];
+
+    @Test
+    void distinguishesScoresBeyondFloatPrecision() {
+        RankingIndex sales = new RankingIndex(true);
+        // 2^24 и 2^24 + 1 во float совпадают
+        sales.set(0, NO_CATEGORIES, 16_777_216);
+        sales.set(1, NO_CATEGORIES, 16_777_217);
+        assertArrayEquals(new int[]{1, 0}, sales.top(2));
+
+        sales.increment(0, NO_CATEGORIES, 2);
+        assertArrayEquals(new int[]{0, 1}, sales.top(2));
+    }
+
+    @Test
+    void ordersAscendingAndBreaksTiesByOrdinal() {
+        RankingIndex price = new RankingIndex(false);
+        price.set(2, NO_CATEGORIES, 10.5);
+        price.set(0, NO_CATEGORIES, 99.99);
+        price.set(1, NO_CATEGORIES, 10.5);
+        assertArrayEquals(new int[]{1, 2, 0}, price.top(10));
+        assertArrayEquals(new int[]{1}, price.top(1));
+    }
+
+    @Test
+    void keepsCategoryRankingsInStep() {
+        RankingIndex rating = new RankingIndex(true);
+        rating.set(0, new int[]{7}, 4.5);
+        rating.set(1, new int[]{7, 8}, 4.9);
+        rating.set(2, new int[]{8}, 3.0);
+        assertArrayEquals(new int[]{1, 0}, rating.top(7, 5));
+        assertArrayEquals(new int[]{1, 2}, rating.top(8, 5));
+
+        rating.recategorize(1, new int[]{8});
+        assertArrayEquals(new int[]{0}, rating.top(7, 5));
+
+        rating.remove(1);
+        assertArrayEquals(new int[]{0, 2}, rating.top(5));
+        assertArrayEquals(new int[]{2}, rating.top(8, 5));
+        assertArrayEquals(new int[0], rating.top(9, 5));
+    }
+}
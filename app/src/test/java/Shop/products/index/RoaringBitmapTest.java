@@ -0,0 +1,55 @@
+package Shop.products.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RoaringBitmapTest {
+
+    @Test
+    void matchesBitSetAcrossArrayAndBitmapContainers() {
+        Random random = new Random(7);
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        RoaringBitmap a = new RoaringBitmap();
+        RoaringBitmap b = new RoaringBitmap();
+        // Блок 0 - плотный у обоих, блок 1 - плотный у a и разреженный у b, блок 3 - только у b
+        for (int i = 0; i < 40_000; i++) {
+            add(a, expectedA, random.nextInt(1 << 16));
+            add(b, expectedB, random.nextInt(1 << 16));
+            add(a, expectedA, (1 << 16) + random.nextInt(1 << 16));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            add(b, expectedB, (1 << 16) + random.nextInt(1 << 16));
+            add(b, expectedB, (3 << 16) + random.nextInt(1 << 16));
+        }
+
+        assertEquals(expectedA.cardinality(), a.cardinality());
+        assertArrayEquals(expectedA.stream().toArray(), a.toArray());
+        assertArrayEquals(expectedB.stream().toArray(), b.toArray());
+
+        BitSet both = (BitSet) expectedA.clone();
+        both.and(expectedB);
+        assertEquals(both.cardinality(), a.andCardinality(b));
+        assertEquals(both.cardinality(), b.andCardinality(a));
+    }
+
+    @Test
+    void sparseContainersIntersectAndIgnoreDuplicates() {
+        RoaringBitmap a = RoaringBitmap.of(new int[]{1, 5, 5, 9, 70_000, 200_000});
+        RoaringBitmap b = RoaringBitmap.of(new int[]{5, 9, 10, 200_000});
+
+        assertEquals(5, a.cardinality());
+        assertEquals(3, a.andCardinality(b));
+        assertEquals(0, a.andCardinality(new RoaringBitmap()));
+    }
+
+    private static void add(RoaringBitmap bitmap, BitSet expected, int value) {
+        bitmap.add(value);
+        expected.set(value);
+    }
+}
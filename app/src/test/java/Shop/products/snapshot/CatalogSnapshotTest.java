@@ -0,0 +1,235 @@
+package Shop.products.snapshot;
+
+import Shop.products.CatalogUpdate;
+import Shop.products.CatalogWriter;
+import Shop.products.Page;
+import Shop.products.Product;
+import Shop.products.ProductCatalog;
+import Shop.products.SearchResult;
+import Shop.products.SortOrder;
+import Shop.products.filters.AndFilter;
+import Shop.products.filters.CategoryFilter;
+import Shop.products.filters.KeywordFilter;
+import Shop.products.filters.ManufacturerFilter;
+import Shop.products.filters.NotFilter;
+import Shop.products.filters.OrFilter;
+import Shop.products.filters.PriceRangeFilter;
+import Shop.products.filters.ProductFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotTest {
+
+    @Test
+    void roundTripsCsvThroughSnapshot(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("products.csv");
+        Files.writeString(csv, """
+                # id;название;цена;производитель;категории
+                1;Ноутбук;139000;Tech;электроника|компьютеры
+                2;Книга;679.5;Book;книги
+                3;Наушники;19999;Audio;
+                """, StandardCharsets.UTF_8);
+        Path target = dir.resolve("catalog.bin");
+
+        CatalogSnapshotWriter.write(CatalogSnapshotWriter.readCsv(csv), target);
+        CatalogSnapshot snapshot = CatalogSnapshot.open(target);
+
+        assertEquals(3, snapshot.getProductCount());
+        assertEquals("Ноутбук", snapshot.name(0));
+        assertEquals("Book", snapshot.manufacturer(1));
+        assertEquals(679.5, snapshot.price(1));
+        assertEquals(List.of("электроника", "компьютеры"), snapshot.categories(0));
+        assertEquals(List.of(), snapshot.categories(2));
+        assertEquals(List.of(1, 2, 0), List.of(snapshot.priceOrderAt(0), snapshot.priceOrderAt(1), snapshot.priceOrderAt(2)));
+        assertEquals(2, snapshot.findRow("3"));
+        assertEquals(-1, snapshot.findRow("4"));
+
+        ProductCatalog catalog = new ProductCatalog();
+        catalog.writer().loadSnapshot(snapshot);
+        assertEquals(3, catalog.getProductCount());
+        assertEquals("Наушники", catalog.getProductById("3").getName());
+        catalog.close();
+    }
+
+    @Test
+    void readsJsonExport(@TempDir Path dir) throws IOException {
+        Path json = dir.resolve("products.json");
+        Files.writeString(json, """
+                [
+                  {"id": 17, "name": "Чайник \\"Лайт\\"", "price": 2490.5, "manufacturer": "Home",
+                   "categories": ["кухня", "техника"], "stock": {"warehouse": [1, 2]}},
+                  {"id": "a-2", "name": "Кружка", "price": 300, "manufacturer": "Home", "categories": []}
+                ]
+                """, StandardCharsets.UTF_8);
+        Path target = dir.resolve("catalog.bin");
+
+        CatalogSnapshotWriter.write(CatalogSnapshotWriter.readJson(json), target);
+        CatalogSnapshot snapshot = CatalogSnapshot.open(target);
+
+        assertEquals(2, snapshot.getProductCount());
+        assertEquals("17", snapshot.id(0));
+        assertEquals("Чайник \"Лайт\"", snapshot.name(0));
+        assertEquals(2490.5, snapshot.price(0));
+        assertEquals(List.of("кухня", "техника"), snapshot.categories(0));
+        assertEquals(1, snapshot.findRow("a-2"));
+
+        Files.writeString(json, "[{\"id\": 1, \"name\": \"Без цены\", \"manufacturer\": \"m\"}]", StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> CatalogSnapshotWriter.readJson(json));
+    }
+
+    // Файл больше буфера записи, одна строка длиннее самого буфера, а при маленьких регионах отображения
+    // поля товаров переходят через границы регионов
+    @Test
+    void readsAcrossChunksAndMappedRegions(@TempDir Path dir) throws IOException {
+        List<Product> products = new ArrayList<>();
+        String longName = "Ж".repeat(700_000);
+        products.add(new Product("long", longName, 1, "Tech", List.of("категория")));
+        for (int i = 0; i < 50_000; i++) {
+            products.add(new Product("p" + i, "Товар " + i, 50_000 - i, "m" + (i % 10), List.of("c" + (i % 7))));
+        }
+        Path target = dir.resolve("catalog.bin");
+        CatalogSnapshotWriter.write(products, target);
+
+        for (CatalogSnapshot snapshot : List.of(CatalogSnapshot.open(target), CatalogSnapshot.open(target, 12))) {
+            assertEquals(products.size(), snapshot.getProductCount());
+            assertEquals(longName, snapshot.name(0));
+            assertEquals("Товар 49999", snapshot.name(50_000));
+            assertEquals(List.of("c5"), snapshot.categories(50_000));
+            assertEquals(1.0, snapshot.price(snapshot.priceOrderAt(0)));
+            assertEquals(124, snapshot.findRow("p123"));
+            assertEquals(50_000 - 123, snapshot.price(124));
+            assertEquals(List.of(124), toList(snapshot.keywordSearch(new String[]{"товар", "123"})).subList(0, 1));
+        }
+    }
+
+    // Каталог поверх снапшота с последующими изменениями отвечает так же, как каталог, собранный в куче
+    @Test
+    void layeredCatalogMatchesHeapCatalog(@TempDir Path dir) throws IOException {
+        List<Product> initial = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            initial.add(product("p" + i, i, (i % 11) * 50));
+        }
+        Path target = dir.resolve("catalog.bin");
+        CatalogSnapshotWriter.write(initial, target);
+
+        ProductCatalog layered = new ProductCatalog();
+        CatalogWriter layeredWriter = layered.writer();
+        layeredWriter.loadSnapshot(CatalogSnapshot.open(target, 10));
+        ProductCatalog heap = new ProductCatalog();
+        CatalogWriter heapWriter = heap.writer();
+        CatalogUpdate load = new CatalogUpdate();
+        initial.forEach(load::put);
+        heapWriter.apply(load);
+
+        // Переоценка и смена категорий у товаров снапшота, удаления, новые товары и возврат удаленного
+        List<CatalogUpdate> updates = List.of(
+                new CatalogUpdate().put(product("p3", 1003, 275)).put(product("p40", 40, 0))
+                        .remove("p7").remove("p8").put(product("n1", 2001, 250)),
+                new CatalogUpdate().put(product("p7", 7, 125)).remove("p3").put(product("n2", 2002, 100))
+                        .remove("n1"),
+                new CatalogUpdate().put(product("p3", 3, 500)).put(product("n2", 2005, 450)));
+        for (CatalogUpdate update : updates) {
+            layeredWriter.apply(update);
+            heapWriter.apply(update);
+
+            assertEquals(heap.getProductCount(), layered.getProductCount());
+            assertEquals(new HashSet<>(ids(heap.getAllProducts())), new HashSet<>(ids(layered.getAllProducts())));
+            assertNull(layered.getProductById("p8"));
+            for (ProductFilter filter : filters()) {
+                assertSameResults(heap, layered, filter);
+            }
+            assertEquals(prices(heap.getCheapest(null, 20)), prices(layered.getCheapest(null, 20)));
+            assertEquals(prices(heap.getCheapest("c2", 7)), prices(layered.getCheapest("c2", 7)));
+        }
+        assertEquals(500, layered.getProductById("p3").getPrice());
+        assertThrows(IllegalStateException.class,
+                () -> layeredWriter.loadSnapshot(CatalogSnapshot.open(target)));
+        layered.close();
+        heap.close();
+    }
+
+    private static void assertSameResults(ProductCatalog heap, ProductCatalog layered, ProductFilter filter) {
+        Set<String> expected = new HashSet<>(ids(heap.filterProducts(filter)));
+        assertEquals(expected, new HashSet<>(ids(layered.filterProducts(filter))), filter.toString());
+        SearchResult heapFacets = heap.searchWithFacets(filter);
+        SearchResult layeredFacets = layered.searchWithFacets(filter);
+        assertEquals(heapFacets.getCategoryCounts(), layeredFacets.getCategoryCounts());
+        assertEquals(heapFacets.getManufacturerCounts(), layeredFacets.getManufacturerCounts());
+
+        for (SortOrder order : SortOrder.values()) {
+            List<Product> pages = readAll(layered, filter, order, 7);
+            assertEquals(expected.size(), pages.size(), order.name());
+            assertEquals(expected, new HashSet<>(ids(pages)), order.name());
+            for (int i = 1; i < pages.size(); i++) {
+                double previous = pages.get(i - 1).getPrice();
+                double price = pages.get(i).getPrice();
+                if (order == SortOrder.PRICE_ASC) {
+                    assertTrue(previous <= price, order.name());
+                } else if (order == SortOrder.PRICE_DESC) {
+                    assertTrue(previous >= price, order.name());
+                }
+            }
+            // Без ценового фильтра результат filterProducts идет в порядке номеров - как страницы каталога
+            if (order == SortOrder.CATALOG && !(filter instanceof PriceRangeFilter)) {
+                assertEquals(ids(layered.filterProducts(filter)), ids(pages));
+            }
+        }
+    }
+
+    private static List<ProductFilter> filters() {
+        return List.of(
+                new KeywordFilter("товар 1"),
+                new ManufacturerFilter("m2"),
+                new CategoryFilter("c2"),
+                new PriceRangeFilter(100, 300),
+                new AndFilter(List.of(new CategoryFilter("c1"), new PriceRangeFilter(0, 250))),
+                new OrFilter(List.of(new ManufacturerFilter("m1"), new KeywordFilter("2001"))),
+                new NotFilter(new CategoryFilter("c0")),
+                product -> product.getName().endsWith("3"));
+    }
+
+    private static Product product(String id, int number, double price) {
+        return new Product(id, "Товар " + number, price, "m" + (number % 4), List.of("c" + (number % 3), "все"));
+    }
+
+    private static List<Product> readAll(ProductCatalog catalog, ProductFilter filter, SortOrder order, int pageSize) {
+        List<Product> all = new ArrayList<>();
+        String token = null;
+        do {
+            Page page = catalog.search(filter, order, pageSize, token);
+            all.addAll(page.getItems());
+            token = page.getNextToken();
+        } while (token != null);
+        return all;
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+
+    private static List<Double> prices(List<Product> products) {
+        return products.stream().map(Product::getPrice).toList();
+    }
+
+    private static List<Integer> toList(int[] values) {
+        List<Integer> list = new ArrayList<>();
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
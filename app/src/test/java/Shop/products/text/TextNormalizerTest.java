@@ -0,0 +1,52 @@
+package Shop.products.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextNormalizerTest {
+
+    @Test
+    void foldsCaseAndYo() {
+        assertEquals("ёжик".replace('ё', 'е'), TextNormalizer.fold("ЁЖИК"));
+        assertEquals("iphone 15", TextNormalizer.fold("iPhone 15"));
+        String folded = "ноутбук";
+        assertSame(folded, TextNormalizer.fold(folded));
+    }
+
+    @Test
+    void transliteratesOnlyCyrillic() {
+        assertEquals("noutbuk", TextNormalizer.transliterate("ноутбук"));
+        assertEquals("naushniki", TextNormalizer.transliterate("наушники"));
+        assertEquals("chehol dlya iphone", TextNormalizer.transliterate("чехол для iphone"));
+        assertNull(TextNormalizer.transliterate("iphone"));
+    }
+
+    @Test
+    void splitsAndStemsQueryTerms() {
+        assertArrayEquals(new String[]{"ноутбук"}, TextNormalizer.terms("Ноутбуки"));
+        assertArrayEquals(new String[]{"noutbuk"}, TextNormalizer.terms("noutbuki"));
+        assertArrayEquals(new String[]{"черн", "мыш"}, TextNormalizer.terms("  Чёрная, мышь!  черная "));
+        assertArrayEquals(new String[0], TextNormalizer.terms(" ,.- "));
+    }
+
+    @Test
+    void searchTextMatchesRussianAndTransliteratedTerms() {
+        SearchText text = SearchText.of("Ноутбук Игровой", "Tech", List.of("Компьютеры"));
+
+        assertTrue(text.containsAll(TextNormalizer.terms("ноутбуки")));
+        assertTrue(text.containsAll(TextNormalizer.terms("noutbuk igrovoy")));
+        assertTrue(text.containsAll(TextNormalizer.terms("TECH компьютер")));
+        assertFalse(text.containsAll(TextNormalizer.terms("ноутбук мышь")));
+        assertTrue(SearchText.of("Battery", "Tech", List.of()).containsAll(TextNormalizer.terms("batteries")));
+        assertTrue(text.hasCategory("компьютеры"));
+        assertEquals("tech", text.manufacturer());
+    }
+}
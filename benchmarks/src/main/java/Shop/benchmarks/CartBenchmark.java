@@ -0,0 +1,49 @@
+package Shop.benchmarks;
+
+import Shop.ShoppingCart;
+import Shop.products.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Операции корзины на корзинах разного размера
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int cartSize;
+
+    private List<Product> products;
+    private ShoppingCart cart;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = SyntheticData.products(cartSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillCart() {
+        cart = new ShoppingCart();
+        for (Product product : products) {
+            cart.addProduct(product, 1);
+        }
+    }
+
+    // Повторное добавление уже лежащего в корзине товара - размер корзины не растет
+    @Benchmark
+    public void addProduct() {
+        cart.addProduct(products.get(next++ % cartSize), 1);
+    }
+
+    @Benchmark
+    public double getTotalPrice() {
+        return cart.getTotalPrice();
+    }
+}
@@ -0,0 +1,158 @@
+package Shop.benchmarks;
+
+import Shop.User;
+import Shop.products.CatalogWriter;
+import Shop.products.Page;
+import Shop.products.Product;
+import Shop.products.ProductCatalog;
+import Shop.products.SortOrder;
+import Shop.products.filters.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Поиск по каталогу каждым видом фильтра, первая страница постраничного поиска, поиск по id, обновление товара
+// и рекомендации на каталогах от 1K до 10M товаров
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Пользователи здесь только ставят оценки - полный PBKDF2 лишь замедлил бы подготовку
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Dshop.password.iterations=1"})
+public class CatalogBenchmark {
+    private static final int USERS = 10_000;
+    private static final int INTERACTIONS_PER_USER = 20;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int catalogSize;
+
+    private ProductCatalog catalog;
+    private CatalogWriter writer;
+    private User user;
+    private String[] productIds;
+    private int next;
+
+    private final ProductFilter keyword = new KeywordFilter("наушники");
+    private final ProductFilter shortKeyword = new KeywordFilter("ча");
+    private final ProductFilter priceRange = new PriceRangeFilter(1_000, 2_000);
+    private final ProductFilter manufacturer = new ManufacturerFilter("Audio");
+    private final ProductFilter category = new CategoryFilter("аудио");
+    private final ProductFilter and = new KeywordFilter("книга").and(new ManufacturerFilter("Book"));
+    private final ProductFilter or = new CategoryFilter("книги").or(new CategoryFilter("спорт"));
+    private final ProductFilter not = new ManufacturerFilter("Tech").negate().and(new PriceRangeFilter(0, 5_000));
+    // Пользовательский фильтр без индекса и без кэша - полный перебор
+    private final ProductFilter custom = product -> product.getPrice() < 500 && product.getName().length() > 10;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        writer = SyntheticData.catalog(catalogSize);
+        catalog = writer.catalog();
+
+        // История взаимодействий для рекомендаций
+        SplittableRandom random = new SplittableRandom(7);
+        for (int u = 0; u < USERS; u++) {
+            User shopper = new User("user" + u, "user" + u, "password");
+            for (int i = 0; i < INTERACTIONS_PER_USER; i++) {
+                catalog.recordInteraction(shopper, catalog.getProductById(String.valueOf(random.nextInt(catalogSize))));
+            }
+            if (u == 0) {
+                user = shopper;
+            }
+        }
+        catalog.getRecommendationEngine().refresh();
+
+        productIds = new String[1024];
+        for (int i = 0; i < productIds.length; i++) {
+            productIds[i] = String.valueOf(random.nextInt(catalogSize));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        catalog.close();
+    }
+
+    @Benchmark
+    public List<Product> filterKeyword() {
+        return catalog.filterProducts(keyword);
+    }
+
+    @Benchmark
+    public List<Product> filterShortKeyword() {
+        return catalog.filterProducts(shortKeyword);
+    }
+
+    @Benchmark
+    public List<Product> filterPriceRange() {
+        return catalog.filterProducts(priceRange);
+    }
+
+    @Benchmark
+    public List<Product> filterManufacturer() {
+        return catalog.filterProducts(manufacturer);
+    }
+
+    @Benchmark
+    public List<Product> filterCategory() {
+        return catalog.filterProducts(category);
+    }
+
+    @Benchmark
+    public List<Product> filterAnd() {
+        return catalog.filterProducts(and);
+    }
+
+    @Benchmark
+    public List<Product> filterOr() {
+        return catalog.filterProducts(or);
+    }
+
+    @Benchmark
+    public List<Product> filterNot() {
+        return catalog.filterProducts(not);
+    }
+
+    @Benchmark
+    public List<Product> filterCustom() {
+        return catalog.filterProducts(custom);
+    }
+
+    @Benchmark
+    public Page firstPageCategory() {
+        return catalog.search(category, SortOrder.CATALOG, PAGE_SIZE, null);
+    }
+
+    @Benchmark
+    public Page firstPageCheapestCategory() {
+        return catalog.search(category, SortOrder.PRICE_ASC, PAGE_SIZE, null);
+    }
+
+    @Benchmark
+    public Page firstPageNot() {
+        return catalog.search(not, SortOrder.PRICE_DESC, PAGE_SIZE, null);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Product getProductById() {
+        return catalog.getProductById(productIds[next++ & (productIds.length - 1)]);
+    }
+
+    // Публикация новой версии каталога ради одного товара: стоимость копирования колонок и затронутых индексов
+    @Benchmark
+    public long updateProduct() {
+        Product product = catalog.getProductById(productIds[next++ & (productIds.length - 1)]);
+        writer.updateProduct(new Product(product.getId(), product.getName(), product.getPrice() + 1,
+                product.getManufacturer(), product.getCategories()));
+        return catalog.getVersion();
+    }
+
+    @Benchmark
+    public List<Product> getRecommendedProducts() {
+        return catalog.getRecommendedProducts(user);
+    }
+}
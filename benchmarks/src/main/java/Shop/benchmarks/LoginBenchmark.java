@@ -0,0 +1,64 @@
+package Shop.benchmarks;
+
+import Shop.Session;
+import Shop.ShopSystem;
+import Shop.ids.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Вход при рабочем числе итераций PBKDF2 (в ShopSystemBenchmark - одна итерация, там измеряется поиск пользователя).
+// loginBurst - все потоки JMH входят одновременно: показывает предел shop.password.concurrency
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+    private static final int USERS = 64;
+
+    private ShopSystem shopSystem;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shopSystem = new ShopSystem(new SnowflakeIdGenerator(1));
+        for (int i = 0; i < USERS; i++) {
+            shopSystem.registerUser("user" + i, "password");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shopSystem.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public Optional<Session> login(Cursor cursor) {
+        return loginNext(cursor);
+    }
+
+    // Отказы по перегрузке считаются результатом, а не ошибкой: так и ответит сервер (503)
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Optional<Session> loginBurst(Cursor cursor) {
+        try {
+            return loginNext(cursor);
+        } catch (RejectedExecutionException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Session> loginNext(Cursor cursor) {
+        Optional<Session> session = shopSystem.login("user" + (cursor.next++ % USERS), "password");
+        session.ifPresent(shopSystem::logout);
+        return session;
+    }
+}
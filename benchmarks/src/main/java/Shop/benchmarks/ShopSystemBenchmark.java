@@ -0,0 +1,87 @@
+package Shop.benchmarks;
+
+import Shop.Session;
+import Shop.ShopSystem;
+import Shop.ids.SnowflakeIdGenerator;
+import Shop.orders.CheckoutResult;
+import Shop.orders.Order;
+import Shop.products.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Вход, оформление заказа и выборка всех заказов при 1K-10M зарегистрированных пользователей
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Одна итерация PBKDF2: иначе подготовка миллионов пользователей займет часы, а вход измерит только хэширование.
+// Вход с рабочим числом итераций измеряет LoginBenchmark
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Dshop.password.iterations=1"})
+public class ShopSystemBenchmark {
+    // Заказов на старте - по одному на каждого десятого пользователя
+    private static final int ORDER_RATIO = 10;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int users;
+
+    private ShopSystem shopSystem;
+    private Session buyer;
+    private Product product;
+    private String[] usernames;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Без журнала - измеряем сам магазин, а не диск
+        shopSystem = new ShopSystem(new SnowflakeIdGenerator(1));
+        product = shopSystem.getProductCatalog().getProductById("1");
+        shopSystem.getInventory().setStock(product, Integer.MAX_VALUE);
+
+        usernames = new String[1024];
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < users; i++) {
+            shopSystem.registerUser("user" + i, "password");
+        }
+        for (int i = 0; i < users; i += ORDER_RATIO) {
+            Session session = shopSystem.login("user" + i, "password").orElseThrow();
+            shopSystem.addToCart(session, product, 1);
+            shopSystem.placeOrder(session);
+            shopSystem.logout(session);
+        }
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = "user" + random.nextInt(users);
+        }
+        buyer = shopSystem.login("user0", "password").orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shopSystem.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Optional<Session> login() {
+        Optional<Session> session = shopSystem.login(usernames[next++ & (usernames.length - 1)], "password");
+        // Не копим сессии от итерации к итерации
+        session.ifPresent(shopSystem::logout);
+        return session;
+    }
+
+    // Добавление в корзину + оформление через конвейер, как в API
+    @Benchmark
+    public CheckoutResult placeOrder() {
+        shopSystem.addToCart(buyer, product, 1);
+        return shopSystem.placeOrder(buyer);
+    }
+
+    @Benchmark
+    public List<Order> getAllOrders() {
+        return shopSystem.getAllOrders();
+    }
+}
@@ -0,0 +1,55 @@
+package Shop.benchmarks;
+
+import Shop.products.CatalogWriter;
+import Shop.products.Product;
+import Shop.products.ProductCatalog;
+import Shop.products.snapshot.CatalogSnapshot;
+import Shop.products.snapshot.CatalogSnapshotWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Синтетические каталоги для бенчмарков. Генерация детерминирована (фиксированный seed),
+// поэтому прогоны на разных машинах и коммитах сравнимы
+final class SyntheticData {
+    static final String[] MANUFACTURERS = {"Tech", "Audio", "Book", "Home", "Sport", "Kids", "Garden", "Auto"};
+    static final String[] CATEGORIES = {"электроника", "телефоны", "компьютеры", "аудио", "книги", "литература",
+            "аксессуары", "дом", "спорт", "игрушки", "сад", "авто"};
+    private static final String[] WORDS = {"смартфон", "ноутбук", "наушники", "книга", "мышь", "клавиатура",
+            "монитор", "колонка", "чайник", "мяч", "самокат", "лампа", "кресло", "рюкзак", "часы", "камера"};
+
+    private SyntheticData() {
+    }
+
+    static List<Product> products(int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            double price = 100 + random.nextInt(200_000);
+            String manufacturer = MANUFACTURERS[random.nextInt(MANUFACTURERS.length)];
+            List<String> categories = List.of(CATEGORIES[random.nextInt(6)], CATEGORIES[6 + random.nextInt(6)]);
+            products.add(new Product(String.valueOf(i), name, price, manufacturer, categories));
+        }
+        return products;
+    }
+
+    // Большие каталоги загружаются так же, как в продакшене, - через бинарный снапшот
+    static CatalogWriter catalog(int count) {
+        try {
+            Path file = Files.createTempFile("bench-catalog", ".bin");
+            file.toFile().deleteOnExit();
+            CatalogSnapshotWriter.write(products(count), file);
+            CatalogWriter writer = new ProductCatalog().writer();
+            writer.loadSnapshot(CatalogSnapshot.open(file));
+            return writer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}